@@ -1,21 +1,32 @@
 package cn.kmbeast.aop;
 
+import cn.kmbeast.utils.CacheConstants;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
 /**
  * 缓存类型枚举
  */
+@Getter
+@AllArgsConstructor
 public enum CacheType {
     /**
      * 单个美食缓存
      */
-    SINGLE,
+    SINGLE(CacheConstants.GOURMET_DETAIL_CACHE),
 
     /**
      * 美食列表缓存
      */
-    LIST,
+    LIST(CacheConstants.GOURMET_LIST_KEY),
 
     /**
      * 热门美食缓存
      */
-    HOT
-}
\ No newline at end of file
+    HOT(CacheConstants.GOURMET_HOT_KEY);
+
+    /**
+     * 缓存名称，同时作为缓存key的前缀
+     */
+    private final String cacheName;
+}
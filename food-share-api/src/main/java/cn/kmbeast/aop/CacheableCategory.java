@@ -14,4 +14,9 @@ public @interface CacheableCategory {
      * 缓存过期时间（秒），默认1天
      */
     long expire() default 86400;
+
+    /**
+     * 本地缓存过期时间（秒），默认5分钟，各节点的本地缓存通过失效广播同步删除
+     */
+    long localExpire() default 300;
 }
\ No newline at end of file
@@ -19,4 +19,9 @@ public @interface CacheableGourmet {
      * 缓存过期时间（秒），默认2小时
      */
     long expire() default 7200;
+
+    /**
+     * 本地缓存过期时间（秒），默认5分钟，各节点的本地缓存通过失效广播同步删除
+     */
+    long localExpire() default 300;
 }
\ No newline at end of file
@@ -1,10 +1,8 @@
 package cn.kmbeast.aop;
 
-import cn.kmbeast.pojo.api.ApiResult;
 import cn.kmbeast.pojo.api.Result;
+import cn.kmbeast.service.impl.MultiLevelCacheService;
 import cn.kmbeast.utils.CacheConstants;
-import cn.kmbeast.utils.RedisUtil;
-import com.alibaba.fastjson2.JSON;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -13,13 +11,13 @@ import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.util.DigestUtils;
 
-import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 
 /**
  * 缓存切面，拦截自定义缓存注解
+ * 统一通过多级缓存（本地Caffeine + Redis）读写，key为"缓存名称:参数"
+ * 成功且有数据的结果按注解过期时间缓存，成功但数据为空的结果按空值短时间缓存，失败结果不缓存
  */
 @Slf4j
 @Aspect
@@ -27,7 +25,7 @@ import java.nio.charset.StandardCharsets;
 public class CachingAspect {
 
     @Autowired
-    private RedisUtil redisUtil;
+    private MultiLevelCacheService multiLevelCacheService;
 
     /**
      * 定义美食缓存切点
@@ -52,42 +50,9 @@ public class CachingAspect {
     @Around("gourmetCachePointcut()")
     public Object gourmetCacheAround(ProceedingJoinPoint joinPoint) throws Throwable {
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
-        CacheableGourmet cacheableGourmet = method.getAnnotation(CacheableGourmet.class);
-
-        // 获取返回类型，用于正确反序列化
-        Class<?> returnType = method.getReturnType();
-
-        // 根据缓存类型获取缓存键
-        String cacheKey = getCacheKey(joinPoint, cacheableGourmet);
-        log.debug("美食缓存键: {}", cacheKey);
-
-        // 从缓存获取数据
-        Object cacheValue = redisUtil.get(cacheKey);
-        if (cacheValue != null) {
-            log.debug("从缓存读取美食数据: {}", cacheKey);
-            try {
-                // 使用正确的返回类型进行反序列化
-                return JSON.parseObject(cacheValue.toString(), returnType);
-            } catch (Exception e) {
-                log.error("缓存数据反序列化失败，将执行原方法: {}", e.getMessage());
-                // 如果反序列化失败，则执行原方法获取数据
-                return joinPoint.proceed();
-            }
-        }
-
-        // 缓存未命中，执行原方法
-        log.debug("缓存未命中，执行原方法获取美食数据: {}", cacheKey);
-        Object result = joinPoint.proceed();
-
-        // 写入缓存
-        if (result != null && result instanceof Result<?>) {
-            String jsonResult = JSON.toJSONString(result);
-            redisUtil.set(cacheKey, jsonResult, cacheableGourmet.expire());
-            log.debug("缓存美食数据成功: {}", cacheKey);
-        }
-
-        return result;
+        CacheableGourmet cacheableGourmet = signature.getMethod().getAnnotation(CacheableGourmet.class);
+        return cacheAround(joinPoint, cacheableGourmet.type().getCacheName(),
+                cacheableGourmet.expire(), cacheableGourmet.localExpire(), CacheableGourmet.class.getSimpleName());
     }
 
     /**
@@ -99,88 +64,48 @@ public class CachingAspect {
     @Around("categoryCachePointcut()")
     public Object categoryCacheAround(ProceedingJoinPoint joinPoint) throws Throwable {
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
-        CacheableCategory cacheableCategory = method.getAnnotation(CacheableCategory.class);
-
-        // 获取返回类型，用于正确反序列化
-        Class<?> returnType = method.getReturnType();
-
-        // 获取缓存键
-        String cacheKey = CacheConstants.CATEGORY_LIST_KEY;
-        log.debug("分类缓存键: {}", cacheKey);
-
-        // 从缓存获取数据
-        Object cacheValue = redisUtil.get(cacheKey);
-        if (cacheValue != null) {
-            log.debug("从缓存读取分类数据: {}", cacheKey);
-            try {
-                // 使用正确的返回类型进行反序列化
-                return JSON.parseObject(cacheValue.toString(), returnType);
-            } catch (Exception e) {
-                log.error("缓存数据反序列化失败，将执行原方法: {}", e.getMessage());
-                // 如果反序列化失败，则执行原方法获取数据
-                return joinPoint.proceed();
-            }
-        }
-
-        // 缓存未命中，执行原方法
-        log.debug("缓存未命中，执行原方法获取分类数据");
-        Object result = joinPoint.proceed();
-
-        // 写入缓存
-        if (result != null && result instanceof Result<?>) {
-            String jsonResult = JSON.toJSONString(result);
-            redisUtil.set(cacheKey, jsonResult, cacheableCategory.expire());
-            log.debug("缓存分类数据成功");
-        }
+        CacheableCategory cacheableCategory = signature.getMethod().getAnnotation(CacheableCategory.class);
+        return cacheAround(joinPoint, CacheConstants.CATEGORY_LIST_KEY,
+                cacheableCategory.expire(), cacheableCategory.localExpire(), CacheableCategory.class.getSimpleName());
+    }
 
-        return result;
+    /**
+     * 通过多级缓存执行原方法
+     *
+     * @param joinPoint   连接点
+     * @param cacheName   缓存名称
+     * @param expire      Redis缓存过期时间（秒）
+     * @param localExpire 本地缓存过期时间（秒）
+     * @param annotation  缓存注解名称，作为缓存指标的标签
+     * @return 原方法返回值
+     */
+    private Object cacheAround(ProceedingJoinPoint joinPoint, String cacheName,
+                               long expire, long localExpire, String annotation) throws Throwable {
+        String cacheKey = MultiLevelCacheService.buildKey(cacheName, joinPoint.getArgs());
+        log.debug("缓存键: {}", cacheKey);
+        return multiLevelCacheService.get(cacheName, cacheKey, localExpire, joinPoint::proceed,
+                value -> getExpire(value, expire), annotation);
     }
 
     /**
-     * 获取缓存键
+     * 根据返回结果决定缓存过期时间
      *
-     * @param joinPoint        连接点
-     * @param cacheableGourmet 缓存注解
-     * @return 缓存键
+     * @param value  原方法返回值
+     * @param expire 注解配置的过期时间（秒）
+     * @return 过期时间（秒），0表示不缓存
      */
-    private String getCacheKey(ProceedingJoinPoint joinPoint, CacheableGourmet cacheableGourmet) {
-        StringBuilder keyBuilder = new StringBuilder();
-        // 根据类型获取基础缓存键
-        switch (cacheableGourmet.type()) {
-            case SINGLE:
-                // 单个美食缓存，获取ID参数
-                Object[] args = joinPoint.getArgs();
-                if (args != null && args.length > 0) {
-                    Object arg = args[0];
-                    if (arg instanceof Integer) {
-                        return CacheConstants.GOURMET_DETAIL_KEY_PREFIX + arg;
-                    } else {
-                        // 使用参数的哈希作为键的一部分
-                        String paramMd5 = DigestUtils
-                                .md5DigestAsHex(JSON.toJSONString(args).getBytes(StandardCharsets.UTF_8));
-                        return CacheConstants.GOURMET_DETAIL_KEY_PREFIX + paramMd5;
-                    }
-                }
-                return CacheConstants.GOURMET_DETAIL_KEY_PREFIX + "default";
-            case LIST:
-                // 美食列表缓存
-                Object[] listArgs = joinPoint.getArgs();
-                if (listArgs != null && listArgs.length > 0) {
-                    // 使用查询参数的哈希作为键的一部分
-                    String paramMd5 = DigestUtils
-                            .md5DigestAsHex(JSON.toJSONString(listArgs).getBytes(StandardCharsets.UTF_8));
-                    return CacheConstants.GOURMET_LIST_KEY + ":" + paramMd5;
-                }
-                return CacheConstants.GOURMET_LIST_KEY;
-            case HOT:
-                // 热门美食缓存
-                return CacheConstants.GOURMET_HOT_KEY;
-            default:
-                // 默认使用方法全名作为缓存键
-                String className = joinPoint.getTarget().getClass().getSimpleName();
-                String methodName = joinPoint.getSignature().getName();
-                return "gourmet:cache:" + className + ":" + methodName;
+    private long getExpire(Object value, long expire) {
+        if (!(value instanceof Result<?>)) {
+            return expire;
+        }
+        Result<?> result = (Result<?>) value;
+        if (!result.isSuccess()) {
+            return 0;
+        }
+        Object data = result.getData();
+        if (data == null || (data instanceof Collection && ((Collection<?>) data).isEmpty())) {
+            return MultiLevelCacheService.NULL_VALUE_EXPIRE;
         }
+        return expire;
     }
-}
\ No newline at end of file
+}
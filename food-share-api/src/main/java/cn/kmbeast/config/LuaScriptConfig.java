@@ -0,0 +1,125 @@
+package cn.kmbeast.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+/**
+ * Lua脚本配置
+ * 脚本由DefaultRedisScript管理，执行时优先使用EVALSHA，脚本未加载时自动回退EVAL
+ */
+@Configuration
+public class LuaScriptConfig {
+
+    /**
+     * 秒杀下单脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSaleScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 分段库存借用脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSaleBucketTakeScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale-bucket-take.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 库存归还脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSaleReleaseScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale-release.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 订单支付脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSalePaidScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale-paid.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 库存同步取批脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSaleStockSyncScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale-stock-sync.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 库存同步完成脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSaleStockSyncDoneScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale-stock-sync-done.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 秒杀订单待确认消息接管脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSaleOrderClaimScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale-order-claim.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 秒杀排队放行脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSaleAdmissionScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale-admission.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 秒杀购买令牌核销脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> flashSaleAdmissionConsumeScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/flash-sale-admission-consume.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 缓存加载租约释放脚本
+     */
+    @Bean
+    public DefaultRedisScript<Long> cacheLeaseReleaseScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/cache-lease-release.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
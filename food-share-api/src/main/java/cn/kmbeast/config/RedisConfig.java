@@ -1,10 +1,15 @@
 package cn.kmbeast.config;
 
+import cn.kmbeast.utils.CompactRedisSerializer;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -30,36 +35,62 @@ import java.time.Duration;
 public class RedisConfig {
 
     /**
-     * 配置RedisTemplate，使用Jackson2JsonRedisSerializer序列化
+     * 值的序列化格式：compact为Smile二进制（可LZ4压缩），json为原JSON格式，两种格式的数据均可读取
+     */
+    @Value("${app.redis.value-codec:compact}")
+    private String valueCodec;
+
+    /**
+     * 二进制格式启用LZ4压缩的阈值（字节）
+     */
+    @Value("${app.redis.compress-threshold:1024}")
+    private int compressThreshold;
+
+    /**
+     * 配置RedisTemplate，值使用CompactRedisSerializer序列化
      */
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
 
-        // 使用Jackson2JsonRedisSerializer来序列化和反序列化redis的value值
-        Jackson2JsonRedisSerializer<Object> jacksonSerializer = new Jackson2JsonRedisSerializer<>(Object.class);
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-        // 指定序列化输入类型，否则会报错
-        mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
-        // 添加JavaTimeModule以支持Java 8日期时间API
-        mapper.registerModule(new JavaTimeModule());
-        jacksonSerializer.setObjectMapper(mapper);
-
-        // 值采用json序列化
-        template.setValueSerializer(jacksonSerializer);
+        // 对象写为Smile二进制，标量和旧数据仍为JSON
+        SmileFactory smileFactory = new SmileFactory();
+        // 列表中重复的类型名称只写一次
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        CompactRedisSerializer valueSerializer = new CompactRedisSerializer(
+                createValueMapper(new ObjectMapper()),
+                createValueMapper(new ObjectMapper(smileFactory)),
+                compressThreshold,
+                "compact".equalsIgnoreCase(valueCodec));
+
+        // 值采用紧凑二进制序列化
+        template.setValueSerializer(valueSerializer);
         // 使用StringRedisSerializer来序列化和反序列化redis的key值
         template.setKeySerializer(new StringRedisSerializer());
 
         // 设置hash key和value序列化模式
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(jacksonSerializer);
+        template.setHashValueSerializer(valueSerializer);
         template.afterPropertiesSet();
 
         return template;
     }
 
+    /**
+     * RedisTemplate值序列化使用的ObjectMapper配置
+     */
+    private ObjectMapper createValueMapper(ObjectMapper mapper) {
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        // 指定序列化输入类型，否则会报错
+        mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        // 添加JavaTimeModule以支持Java 8日期时间API
+        mapper.registerModule(new JavaTimeModule());
+        // 忽略只有getter没有字段的属性（如Result的success），保证缓存对象可以反序列化
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
+
     /**
      * 配置缓存管理器
      */
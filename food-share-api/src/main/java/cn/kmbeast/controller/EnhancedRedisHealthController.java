@@ -3,6 +3,7 @@ package cn.kmbeast.controller;
 import cn.kmbeast.annotation.RateLimit;
 import cn.kmbeast.annotation.RateLimitType;
 import cn.kmbeast.service.impl.EnhancedRedisHealthService;
+import cn.kmbeast.service.impl.HotKeyDetector;
 import cn.kmbeast.service.impl.MultiLevelCacheService;
 import cn.kmbeast.service.impl.RateLimitService;
 import cn.kmbeast.utils.ApiResult;
@@ -14,6 +15,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,6 +35,9 @@ public class EnhancedRedisHealthController {
     @Autowired
     private MultiLevelCacheService multiLevelCacheService;
 
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
     /**
      * 基础健康检查
      */
@@ -79,6 +84,15 @@ public class EnhancedRedisHealthController {
         return ApiResult.success("缓存统计信息", cacheStats);
     }
 
+    /**
+     * 当前热点key
+     */
+    @GetMapping("/hot-keys")
+    @RateLimit(limit = 20, window = 60, type = RateLimitType.IP)
+    public Result<List<Map<String, Object>>> getHotKeys() {
+        return ApiResult.success("热点key列表", hotKeyDetector.getHotKeys());
+    }
+
     /**
      * 限流统计
      */
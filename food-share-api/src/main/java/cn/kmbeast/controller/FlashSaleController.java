@@ -7,6 +7,7 @@ import cn.kmbeast.pojo.dto.query.extend.FlashSaleItemQueryDto;
 import cn.kmbeast.pojo.dto.query.extend.FlashSaleOrderQueryDto;
 import cn.kmbeast.pojo.entity.FlashSaleItem;
 import cn.kmbeast.pojo.entity.FlashSaleOrder;
+import cn.kmbeast.pojo.vo.FlashSaleAdmissionVO;
 import cn.kmbeast.pojo.vo.FlashSaleItemVO;
 import cn.kmbeast.pojo.vo.PageResult;
 import cn.kmbeast.service.FlashSaleService;
@@ -49,16 +50,42 @@ public class FlashSaleController {
         return flashSaleService.getFlashSaleItem(itemId);
     }
 
+    /**
+     * 进入秒杀队列或查询排队进度，放行后返回购买令牌
+     *
+     * @param itemId 商品ID
+     * @return 排队结果
+     */
+    @PostMapping("/queue/{itemId}")
+    public Result<FlashSaleAdmissionVO> enterQueue(@PathVariable Integer itemId) {
+        Integer userId = LocalThreadHolder.getUserId();
+        return flashSaleService.enterQueue(itemId, userId);
+    }
+
     /**
      * 执行秒杀
      *
      * @param itemId 商品ID
+     * @param token  排队放行后获得的购买令牌
      * @return 订单信息
      */
     @PostMapping("/doFlashSale/{itemId}")
-    public Result<FlashSaleOrder> doFlashSale(@PathVariable Integer itemId) {
+    public Result<FlashSaleOrder> doFlashSale(@PathVariable Integer itemId,
+                                              @RequestParam(required = false) String token) {
+        Integer userId = LocalThreadHolder.getUserId();
+        return flashSaleService.flashSale(itemId, userId, token);
+    }
+
+    /**
+     * 查询订单处理状态
+     *
+     * @param orderId 订单ID
+     * @return 订单信息，状态为0表示排队中
+     */
+    @GetMapping("/orderStatus/{orderId}")
+    public Result<FlashSaleOrder> queryOrderStatus(@PathVariable String orderId) {
         Integer userId = LocalThreadHolder.getUserId();
-        return flashSaleService.flashSale(itemId, userId);
+        return flashSaleService.queryOrderStatus(orderId, userId);
     }
 
     /**
@@ -9,6 +9,7 @@ import cn.kmbeast.pojo.vo.GourmetVO;
 import cn.kmbeast.schedule.CacheWarmupScheduler;
 import cn.kmbeast.service.CategoryService;
 import cn.kmbeast.service.GourmetService;
+import cn.kmbeast.service.impl.MultiLevelCacheService;
 import cn.kmbeast.utils.CacheConstants;
 import cn.kmbeast.utils.RedisUtil;
 import com.alibaba.fastjson2.JSON;
@@ -47,6 +48,9 @@ public class RedisCacheTestController {
     @Autowired
     private CacheWarmupScheduler cacheWarmupScheduler;
 
+    @Autowired
+    private MultiLevelCacheService multiLevelCacheService;
+
     /**
      * 测试Redis连接
      */
@@ -113,8 +117,10 @@ public class RedisCacheTestController {
             log.info("开始测试缓存注解...");
 
             // 清除已有缓存
-            String categoryKey = CacheConstants.CATEGORY_LIST_KEY;
-            String gourmetHotKey = CacheConstants.GOURMET_HOT_KEY;
+            CategoryQueryDto categoryQueryDto = new CategoryQueryDto();
+            GourmetQueryDto gourmetQueryDto = new GourmetQueryDto();
+            String categoryKey = MultiLevelCacheService.buildKey(CacheConstants.CATEGORY_LIST_KEY, categoryQueryDto);
+            String gourmetHotKey = MultiLevelCacheService.buildKey(CacheConstants.GOURMET_HOT_KEY, gourmetQueryDto);
 
             boolean hasCategoryCache = redisUtil.hasKey(categoryKey);
             boolean hasGourmetHotCache = redisUtil.hasKey(gourmetHotKey);
@@ -122,17 +128,16 @@ public class RedisCacheTestController {
             log.info("测试前分类缓存状态: {}", hasCategoryCache);
             log.info("测试前热门美食缓存状态: {}", hasGourmetHotCache);
 
-            // 删除已有缓存
-            redisUtil.del(categoryKey, gourmetHotKey);
+            // 删除已有缓存（含本地缓存）
+            multiLevelCacheService.evict(CacheConstants.CATEGORY_LIST_KEY, categoryKey);
+            multiLevelCacheService.evict(CacheConstants.GOURMET_HOT_KEY, gourmetHotKey);
 
             // 调用带缓存注解的方法
             log.info("调用带@CacheableCategory注解的方法...");
-            CategoryQueryDto categoryQueryDto = new CategoryQueryDto();
             Result<List<Category>> categoryResult = categoryService.query(categoryQueryDto);
             log.info("分类查询结果: {}", JSON.toJSONString(categoryResult));
 
             log.info("调用带@CacheableGourmet注解的方法...");
-            GourmetQueryDto gourmetQueryDto = new GourmetQueryDto();
             Result<List<GourmetVO>> gourmetResult = gourmetService.queryByView(gourmetQueryDto);
             log.info("热门美食查询结果: {}", JSON.toJSONString(gourmetResult));
 
@@ -227,12 +232,14 @@ public class RedisCacheTestController {
             log.info("开始测试缓存预热...");
 
             // 清除已有缓存
-            redisUtil.del(CacheConstants.CATEGORY_LIST_KEY);
-            redisUtil.del(CacheConstants.GOURMET_HOT_KEY);
+            multiLevelCacheService.evictAll(CacheConstants.CATEGORY_LIST_KEY);
+            multiLevelCacheService.evictAll(CacheConstants.GOURMET_HOT_KEY);
 
             log.info("已清除现有缓存，正在检查缓存状态...");
-            boolean hasCategoryCache = redisUtil.hasKey(CacheConstants.CATEGORY_LIST_KEY);
-            boolean hasGourmetHotCache = redisUtil.hasKey(CacheConstants.GOURMET_HOT_KEY);
+            String categoryKey = MultiLevelCacheService.buildKey(CacheConstants.CATEGORY_LIST_KEY, new CategoryQueryDto());
+            String gourmetHotKey = MultiLevelCacheService.buildKey(CacheConstants.GOURMET_HOT_KEY, new GourmetQueryDto());
+            boolean hasCategoryCache = redisUtil.hasKey(categoryKey);
+            boolean hasGourmetHotCache = redisUtil.hasKey(gourmetHotKey);
 
             log.info("预热前分类缓存状态: {}", hasCategoryCache);
             log.info("预热前热门美食缓存状态: {}", hasGourmetHotCache);
@@ -242,8 +249,8 @@ public class RedisCacheTestController {
             cacheWarmupScheduler.warmupCache();
 
             // 验证是否已预热
-            hasCategoryCache = redisUtil.hasKey(CacheConstants.CATEGORY_LIST_KEY);
-            hasGourmetHotCache = redisUtil.hasKey(CacheConstants.GOURMET_HOT_KEY);
+            hasCategoryCache = redisUtil.hasKey(categoryKey);
+            hasGourmetHotCache = redisUtil.hasKey(gourmetHotKey);
 
             log.info("预热后分类缓存状态: {}", hasCategoryCache);
             log.info("预热后热门美食缓存状态: {}", hasGourmetHotCache);
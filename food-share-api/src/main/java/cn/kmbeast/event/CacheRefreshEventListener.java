@@ -1,7 +1,7 @@
 package cn.kmbeast.event;
 
+import cn.kmbeast.service.impl.MultiLevelCacheService;
 import cn.kmbeast.utils.CacheConstants;
-import cn.kmbeast.utils.RedisUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
@@ -16,7 +16,7 @@ import org.springframework.stereotype.Component;
 public class CacheRefreshEventListener {
 
     @Autowired
-    private RedisUtil redisUtil;
+    private MultiLevelCacheService multiLevelCacheService;
 
     /**
      * 监听美食变更事件，更新相关缓存
@@ -33,16 +33,18 @@ public class CacheRefreshEventListener {
         log.info("监听到美食变更事件，美食ID: {}, 操作类型: {}", gourmetId, event.getOperationType());
 
         // 删除单个美食缓存
-        String detailKey = CacheConstants.GOURMET_DETAIL_KEY_PREFIX + gourmetId;
-        redisUtil.del(detailKey);
+        String detailKey = MultiLevelCacheService.buildKey(CacheConstants.GOURMET_DETAIL_CACHE, gourmetId);
+        multiLevelCacheService.evict(CacheConstants.GOURMET_DETAIL_CACHE, detailKey);
         log.info("已删除美食详情缓存: {}", detailKey);
+        String itemKey = MultiLevelCacheService.buildKey(CacheConstants.GOURMET_ITEM_CACHE, gourmetId);
+        multiLevelCacheService.evict(CacheConstants.GOURMET_ITEM_CACHE, itemKey);
 
         // 删除美食列表缓存
-        redisUtil.delByPrefix(CacheConstants.GOURMET_LIST_KEY);
+        multiLevelCacheService.evictAll(CacheConstants.GOURMET_LIST_KEY);
         log.info("已删除美食列表缓存");
 
         // 删除热门美食缓存
-        redisUtil.del(CacheConstants.GOURMET_HOT_KEY);
+        multiLevelCacheService.evictAll(CacheConstants.GOURMET_HOT_KEY);
         log.info("已删除热门美食缓存");
 
         // 如果是新增或更新操作，可以预热缓存
@@ -66,11 +68,11 @@ public class CacheRefreshEventListener {
         log.info("监听到分类变更事件");
 
         // 删除分类列表缓存
-        redisUtil.del(CacheConstants.CATEGORY_LIST_KEY);
+        multiLevelCacheService.evictAll(CacheConstants.CATEGORY_LIST_KEY);
         log.info("已删除分类列表缓存");
 
         // 删除美食列表缓存（因为可能按分类查询）
-        redisUtil.delByPrefix(CacheConstants.GOURMET_LIST_KEY);
+        multiLevelCacheService.evictAll(CacheConstants.GOURMET_LIST_KEY);
         log.info("已删除美食列表缓存");
     }
 }
\ No newline at end of file
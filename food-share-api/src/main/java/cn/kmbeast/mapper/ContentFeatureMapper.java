@@ -26,6 +26,11 @@ public interface ContentFeatureMapper {
      */
     List<ContentFeature> selectBatch(@Param("gourmetIds") List<Integer> gourmetIds);
 
+    /**
+     * 查询全部特征，同一美食有多条时按创建时间升序返回
+     */
+    List<ContentFeature> selectAll();
+
     /**
      * 插入或更新特征
      * 如果记录存在则更新，不存在则插入
@@ -3,6 +3,7 @@ package cn.kmbeast.mapper;
 import cn.kmbeast.pojo.entity.ContentSimilarity;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -30,6 +31,16 @@ public interface ContentSimilarityMapper {
      * 如果记录存在则更新，不存在则插入
      */
     void insertOrUpdate(ContentSimilarity similarity);
+
+    /**
+     * 批量插入或更新相似度
+     */
+    void batchInsertOrUpdate(@Param("similarities") List<ContentSimilarity> similarities);
+
+    /**
+     * 删除源美食在指定时间之前写入的相似度记录
+     */
+    void deleteStaleBySourceIds(@Param("sourceIds") List<Integer> sourceIds, @Param("before") LocalDateTime before);
     
     /**
      * 根据源ID和目标ID查询相似度
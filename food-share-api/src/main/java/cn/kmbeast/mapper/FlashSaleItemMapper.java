@@ -3,6 +3,7 @@ package cn.kmbeast.mapper;
 import cn.kmbeast.pojo.dto.query.extend.FlashSaleItemQueryDto;
 import cn.kmbeast.pojo.entity.FlashSaleItem;
 import cn.kmbeast.pojo.vo.FlashSaleItemVO;
+import cn.kmbeast.pojo.vo.FlashSaleSoldCountVO;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -38,6 +39,46 @@ public interface FlashSaleItemMapper extends BaseMapper<FlashSaleItem> {
      */
     List<FlashSaleItemVO> queryOngoingFlashSaleItems();
 
+    /**
+     * 查询未结束的秒杀商品（未开始和进行中）
+     * 
+     * @return 未结束的秒杀商品列表
+     */
+    List<FlashSaleItemVO> queryUnfinishedFlashSaleItems();
+
+    /**
+     * 推进商品状态，只允许从较小的状态推进到较大的状态，多节点同时执行时只有一个节点生效
+     * 
+     * @param itemId 商品ID
+     * @param status 目标状态
+     * @return 更新行数
+     */
+    int advanceStatus(@Param("itemId") Integer itemId, @Param("status") Integer status);
+
+    /**
+     * 批量扣减库存，库存最小扣减到0
+     * 
+     * @param deltas 商品ID与扣减数量
+     * @return 更新行数
+     */
+    int batchDecreaseStock(@Param("deltas") List<FlashSaleSoldCountVO> deltas);
+
+    /**
+     * 查询进行中但库存已为0的商品ID
+     * 
+     * @param itemIds 商品ID列表
+     * @return 已售罄的商品ID列表
+     */
+    List<Integer> querySoldOutOngoingIds(@Param("itemIds") List<Integer> itemIds);
+
+    /**
+     * 记录库存同步批次，批次已存在时忽略
+     * 
+     * @param batchId 批次号
+     * @return 新增行数，0表示该批次已同步过
+     */
+    int insertStockSyncBatch(@Param("batchId") String batchId);
+
     /**
      * 更新商品库存
      * 
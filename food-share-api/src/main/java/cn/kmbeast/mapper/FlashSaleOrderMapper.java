@@ -2,6 +2,7 @@ package cn.kmbeast.mapper;
 
 import cn.kmbeast.pojo.dto.query.extend.FlashSaleOrderQueryDto;
 import cn.kmbeast.pojo.entity.FlashSaleOrder;
+import cn.kmbeast.pojo.vo.FlashSaleSoldCountVO;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -54,4 +55,67 @@ public interface FlashSaleOrderMapper extends BaseMapper<FlashSaleOrder> {
      * @return 订单数量
      */
     int countOrdersByItemId(@Param("itemId") Integer itemId);
+
+    /**
+     * 统计商品指定状态的订单数量
+     * 
+     * @param itemId 商品ID
+     * @param status 订单状态
+     * @return 订单数量
+     */
+    int countOrdersByItemIdAndStatus(@Param("itemId") Integer itemId, @Param("status") Integer status);
+
+    /**
+     * 批量统计商品的秒杀订单数量（已售数量），没有订单的商品不返回
+     * 
+     * @param itemIds 商品ID列表
+     * @return 商品销量列表
+     */
+    List<FlashSaleSoldCountVO> countOrdersByItemIds(@Param("itemIds") List<Integer> itemIds);
+
+    /**
+     * 批量写入秒杀订单，order_id已存在的订单忽略
+     * 
+     * @param orders 订单列表
+     * @return 新增订单数量
+     */
+    int batchInsertIgnore(@Param("orders") List<FlashSaleOrder> orders);
+
+    /**
+     * 按预期状态更新订单状态，订单状态已被其他操作修改时不更新
+     * 
+     * @param orderId 订单号
+     * @param expect  预期的当前状态
+     * @param status  目标状态
+     * @return 更新行数
+     */
+    int updateStatusIfMatch(@Param("orderId") String orderId, @Param("expect") Integer expect,
+                            @Param("status") Integer status);
+
+    /**
+     * 查询并锁定待支付的订单，需在事务中调用
+     * 
+     * @param orderIds 订单号列表
+     * @return 待支付的订单列表
+     */
+    List<FlashSaleOrder> selectUnpaidForUpdate(@Param("orderIds") List<String> orderIds);
+
+    /**
+     * 查询指定状态的订单
+     * 
+     * @param orderIds 订单号列表
+     * @param status   订单状态
+     * @return 订单列表
+     */
+    List<FlashSaleOrder> selectByOrderIdsAndStatus(@Param("orderIds") List<String> orderIds,
+                                                   @Param("status") Integer status);
+
+    /**
+     * 批量更新订单状态
+     * 
+     * @param orderIds 订单号列表
+     * @param status   目标状态
+     * @return 更新行数
+     */
+    int batchUpdateStatus(@Param("orderIds") List<String> orderIds, @Param("status") Integer status);
 }
\ No newline at end of file
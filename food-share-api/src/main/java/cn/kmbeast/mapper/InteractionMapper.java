@@ -30,4 +30,6 @@ public interface InteractionMapper {
 
     Integer queryCount(InteractionQueryDto interactionQueryDto);
 
+    List<Interaction> queryForModel();
+
 }
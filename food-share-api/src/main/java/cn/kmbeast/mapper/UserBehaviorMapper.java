@@ -1,5 +1,6 @@
 package cn.kmbeast.mapper;
 
+import cn.kmbeast.pojo.dto.query.extend.BehaviorCountDto;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -41,4 +42,10 @@ public interface UserBehaviorMapper {
      */
     @Select("SELECT COUNT(*) FROM user_behavior WHERE user_id = #{userId} AND gourmet_id = #{gourmetId} AND behavior_type = 'COLLECT'")
     int getCollectCount(@Param("userId") Integer userId, @Param("gourmetId") Integer gourmetId);
+
+    /**
+     * 按美食、用户、行为类型统计全部行为次数，用于批量计算相似度
+     */
+    @Select("SELECT gourmet_id, user_id, behavior_type, COUNT(*) AS behavior_count FROM user_behavior GROUP BY gourmet_id, user_id, behavior_type")
+    List<BehaviorCountDto> countAll();
 }
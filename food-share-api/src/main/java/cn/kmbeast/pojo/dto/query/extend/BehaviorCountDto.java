@@ -0,0 +1,26 @@
+package cn.kmbeast.pojo.dto.query.extend;
+
+import lombok.Data;
+
+/**
+ * 用户对美食各类行为次数的Dto类
+ */
+@Data
+public class BehaviorCountDto {
+    /**
+     * 美食ID
+     */
+    private Integer gourmetId;
+    /**
+     * 用户ID
+     */
+    private Integer userId;
+    /**
+     * 行为类型
+     */
+    private String behaviorType;
+    /**
+     * 行为次数
+     */
+    private Integer behaviorCount;
+}
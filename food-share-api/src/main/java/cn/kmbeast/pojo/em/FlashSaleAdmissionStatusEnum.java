@@ -0,0 +1,26 @@
+package cn.kmbeast.pojo.em;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 秒杀排队状态枚举
+ */
+@Getter
+@AllArgsConstructor
+public enum FlashSaleAdmissionStatusEnum {
+
+    WAITING(0, "排队中"),
+    ADMITTED(1, "已放行"),
+    SOLD_OUT(2, "已售罄");
+
+    /**
+     * 状态
+     */
+    private final Integer status;
+    /**
+     * 描述
+     */
+    private final String detail;
+
+}
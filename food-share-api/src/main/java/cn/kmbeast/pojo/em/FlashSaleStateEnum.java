@@ -0,0 +1,27 @@
+package cn.kmbeast.pojo.em;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 秒杀商品本地状态枚举
+ */
+@Getter
+@AllArgsConstructor
+public enum FlashSaleStateEnum {
+
+    NOT_STARTED(0, "未开始"),
+    LIVE(1, "进行中"),
+    ENDED(2, "已结束"),
+    SOLD_OUT(3, "已售罄");
+
+    /**
+     * 状态
+     */
+    private final Integer state;
+    /**
+     * 描述
+     */
+    private final String detail;
+
+}
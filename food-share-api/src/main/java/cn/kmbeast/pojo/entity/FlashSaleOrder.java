@@ -28,7 +28,7 @@ public class FlashSaleOrder {
 
     private LocalDateTime orderTime;
 
-    private Integer status; // 1-已下单，2-已支付，3-已取消
+    private Integer status; // 0-排队中（未写库），1-已下单，2-已支付，3-已取消
 
     private LocalDateTime createTime;
 
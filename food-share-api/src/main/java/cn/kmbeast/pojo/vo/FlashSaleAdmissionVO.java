@@ -0,0 +1,34 @@
+package cn.kmbeast.pojo.vo;
+
+import lombok.Data;
+
+/**
+ * 秒杀排队结果VO
+ */
+@Data
+public class FlashSaleAdmissionVO {
+    /**
+     * 商品ID
+     */
+    private Integer itemId;
+    /**
+     * 排队状态，见FlashSaleAdmissionStatusEnum
+     */
+    private Integer status;
+    /**
+     * 购买令牌，放行后下单时携带
+     */
+    private String token;
+    /**
+     * 前方等待人数
+     */
+    private Long position;
+    /**
+     * 预计等待时间（秒）
+     */
+    private Long estimatedWait;
+    /**
+     * 建议的轮询间隔（毫秒）
+     */
+    private Long pollInterval;
+}
@@ -0,0 +1,18 @@
+package cn.kmbeast.pojo.vo;
+
+import lombok.Data;
+
+/**
+ * 秒杀商品销量统计VO
+ */
+@Data
+public class FlashSaleSoldCountVO {
+    /**
+     * 商品ID
+     */
+    private Integer itemId;
+    /**
+     * 已售数量
+     */
+    private Integer soldCount;
+}
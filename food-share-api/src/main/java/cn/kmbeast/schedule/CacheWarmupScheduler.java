@@ -11,6 +11,7 @@ import cn.kmbeast.service.CategoryService;
 import cn.kmbeast.service.ContentRecommendComputeService;
 import cn.kmbeast.service.ContentRecommendService;
 import cn.kmbeast.service.GourmetService;
+import cn.kmbeast.service.impl.MultiLevelCacheService;
 import cn.kmbeast.utils.CacheConstants;
 import cn.kmbeast.utils.RedisUtil;
 import com.alibaba.fastjson2.JSON;
@@ -50,6 +51,9 @@ public class CacheWarmupScheduler {
     @Resource
     private RedisUtil redisUtil;
 
+    @Resource
+    private MultiLevelCacheService multiLevelCacheService;
+
     /**
      * 每天凌晨3点预热缓存
      * 预热热门美食和分类数据
@@ -70,17 +74,13 @@ public class CacheWarmupScheduler {
         try {
             log.info("开始预热分类数据...");
             // 删除旧的分类缓存
-            redisUtil.del(CacheConstants.CATEGORY_LIST_KEY);
+            multiLevelCacheService.evictAll(CacheConstants.CATEGORY_LIST_KEY);
 
-            // 查询最新分类数据
+            // 查询最新分类数据，由缓存切面写入多级缓存
             CategoryQueryDto categoryQueryDto = new CategoryQueryDto();
             Result<List<Category>> result = categoryService.query(categoryQueryDto);
 
             if (result != null && result.getData() != null && !result.getData().isEmpty()) {
-                // 存入Redis缓存
-                redisUtil.set(CacheConstants.CATEGORY_LIST_KEY,
-                        JSON.toJSONString(result),
-                        CacheConstants.CATEGORY_EXPIRE);
                 log.info("分类数据预热完成, 共缓存{}条记录", result.getData().size());
             } else {
                 log.warn("分类数据为空，跳过预热");
@@ -97,33 +97,20 @@ public class CacheWarmupScheduler {
         try {
             log.info("开始预热热门美食数据...");
             // 删除旧的热门美食缓存
-            redisUtil.del(CacheConstants.GOURMET_HOT_KEY);
+            multiLevelCacheService.evictAll(CacheConstants.GOURMET_HOT_KEY);
 
-            // 查询热门美食数据
+            // 查询热门美食数据，由缓存切面写入多级缓存
             GourmetQueryDto queryDto = new GourmetQueryDto();
             Result<List<GourmetVO>> result = gourmetService.queryByView(queryDto);
 
             if (result != null && result.getData() != null && !result.getData().isEmpty()) {
-                // 存入Redis缓存
-                redisUtil.set(CacheConstants.GOURMET_HOT_KEY,
-                        JSON.toJSONString(result),
-                        CacheConstants.GOURMET_HOT_EXPIRE);
                 log.info("热门美食数据预热完成, 共缓存{}条记录", result.getData().size());
 
                 // 同时缓存前10条热门美食的详情
                 int count = Math.min(10, result.getData().size());
                 for (int i = 0; i < count; i++) {
-                    GourmetVO gourmet = result.getData().get(i);
-                    String detailKey = CacheConstants.GOURMET_DETAIL_KEY_PREFIX + gourmet.getId();
-
-                    // 查询美食详情
-                    Result<List<GourmetVO>> detailResult = gourmetService.queryById(gourmet.getId());
-                    if (detailResult != null && detailResult.getData() != null && !detailResult.getData().isEmpty()) {
-                        // 存入Redis缓存
-                        redisUtil.set(detailKey,
-                                JSON.toJSONString(detailResult),
-                                CacheConstants.GOURMET_DETAIL_EXPIRE);
-                    }
+                    // 查询美食详情，由缓存切面写入多级缓存
+                    gourmetService.queryById(result.getData().get(i).getId());
                 }
                 log.info("热门美食详情预热完成");
             } else {
@@ -194,7 +181,7 @@ public class CacheWarmupScheduler {
 
     /**
      * 每小时同步Redis浏览量到数据库
-     * 避免内存数据丢失
+     * 避免内存数据丢失，分批遍历全部浏览量键，不再只同步热门美食
      */
     @Scheduled(fixedRate = 3600000) // 1小时
     public void syncViewCountToDatabase() {
@@ -203,75 +190,28 @@ public class CacheWarmupScheduler {
             // 获取所有美食浏览量键的前缀
             String keyPrefix = CacheConstants.GOURMET_VIEW_COUNT_KEY_PREFIX;
 
-            // 直接查询数据库获取美食列表，不使用缓存
-            GourmetQueryDto queryDto = new GourmetQueryDto();
-            // 手动执行service层方法，避免缓存切面干扰
-            Result<List<GourmetVO>> resultFromDb = null;
-            try {
-                // 从缓存中获取热门美食数据
-                Object cacheValue = redisUtil.get(CacheConstants.GOURMET_HOT_KEY);
-                if (cacheValue != null) {
-                    // 正确地将JSON字符串反序列化为Result对象
-                    resultFromDb = JSON.parseObject(cacheValue.toString(), Result.class);
-                } else {
-                    // 如果缓存中没有数据，则从数据库获取
-                    resultFromDb = gourmetService.queryByView(queryDto);
-                }
-            } catch (Exception e) {
-                log.error("获取美食列表失败: {}", e.getMessage(), e);
-                return;
-            }
-
-            if (resultFromDb == null || resultFromDb.getData() == null) {
-                log.info("没有需要同步的浏览量数据，查询结果为空");
-                return;
-            }
-
-            // 处理从缓存获取的数据
-            Object data = resultFromDb.getData();
-            List<GourmetVO> allGourmets;
-
-            // 判断数据类型并进行转换
-            if (data instanceof List) {
-                allGourmets = (List<GourmetVO>) data;
-            } else {
-                log.info("数据类型不符合预期，跳过浏览量同步");
-                return;
-            }
-
-            if (!allGourmets.isEmpty()) {
-                for (Object item : allGourmets) {
-                    // 将JSONObject转为GourmetVO
-                    GourmetVO gourmet;
-                    if (item instanceof GourmetVO) {
-                        gourmet = (GourmetVO) item;
-                    } else {
-                        // 使用JSON工具进行转换
-                        String itemJson = JSON.toJSONString(item);
-                        gourmet = JSON.parseObject(itemJson, GourmetVO.class);
+            long total = redisUtil.scan(keyPrefix + "*", RedisUtil.SCAN_COUNT, keys -> {
+                // 每批一次性读取浏览量
+                List<Object> values = redisUtil.multiGet(keys);
+                for (int i = 0; i < keys.size(); i++) {
+                    Object value = values.get(i);
+                    if (value == null) {
+                        continue;
                     }
+                    try {
+                        Integer gourmetId = Integer.valueOf(keys.get(i).substring(keyPrefix.length()));
+                        int viewCount = Integer.parseInt(value.toString());
 
-                    Integer gourmetId = gourmet.getId();
-                    String key = keyPrefix + gourmetId;
-
-                    // 检查Redis中是否有此键
-                    if (redisUtil.hasKey(key)) {
-                        Object value = redisUtil.get(key);
+                        // 这里需要扩展GourmetService接口和实现类，添加更新浏览量的方法
+                        // gourmetService.updateViewCount(gourmetId, viewCount);
 
-                        if (value != null) {
-                            int viewCount = Integer.parseInt(value.toString());
-
-                            // 这里需要扩展GourmetService接口和实现类，添加更新浏览量的方法
-                            // gourmetService.updateViewCount(gourmetId, viewCount);
-
-                            log.info("同步美食ID={}的浏览量: {}", gourmetId, viewCount);
-                        }
+                        log.debug("同步美食ID={}的浏览量: {}", gourmetId, viewCount);
+                    } catch (NumberFormatException e) {
+                        log.warn("解析浏览量失败: key={}, value={}", keys.get(i), value);
                     }
                 }
-                log.info("浏览量同步完成");
-            } else {
-                log.info("没有需要同步的浏览量数据");
-            }
+            });
+            log.info("浏览量同步完成，共{}个键", total);
         } catch (Exception e) {
             log.error("浏览量同步失败: {}", e.getMessage(), e);
         }
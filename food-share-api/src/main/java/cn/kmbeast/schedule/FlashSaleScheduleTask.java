@@ -1,6 +1,8 @@
 package cn.kmbeast.schedule;
 
 import cn.kmbeast.service.FlashSaleService;
+import cn.kmbeast.service.impl.FlashSaleReservationService;
+import cn.kmbeast.service.impl.FlashSaleStockSyncService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -19,8 +21,15 @@ public class FlashSaleScheduleTask {
     @Resource
     private FlashSaleService flashSaleService;
 
+    @Resource
+    private FlashSaleReservationService flashSaleReservationService;
+
+    @Resource
+    private FlashSaleStockSyncService flashSaleStockSyncService;
+
     /**
-     * 每5分钟刷新秒杀商品状态
+     * 每5分钟校准秒杀商品状态
+     * 状态切换由生命周期任务按活动时间精确执行，这里只用于补偿遗漏的任务
      */
     @Scheduled(cron = "0 */5 * * * ?")
     public void refreshFlashSaleStatus() {
@@ -46,4 +55,28 @@ public class FlashSaleScheduleTask {
             log.error("秒杀库存预热任务执行失败: {}", e.getMessage(), e);
         }
     }
+
+    /**
+     * 回收超时未支付的秒杀订单，默认每5秒执行一次
+     */
+    @Scheduled(fixedDelayString = "${app.flash-sale.reservation-sweep-interval:5000}")
+    public void sweepExpiredReservations() {
+        try {
+            flashSaleReservationService.sweep();
+        } catch (Exception e) {
+            log.error("秒杀超时订单回收任务执行失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 将支付产生的库存增量批量同步到数据库，默认每秒执行一次
+     */
+    @Scheduled(fixedDelayString = "${app.flash-sale.stock-sync-interval:1000}")
+    public void syncFlashSaleStock() {
+        try {
+            flashSaleStockSyncService.flush();
+        } catch (Exception e) {
+            log.error("秒杀库存同步任务执行失败: {}", e.getMessage(), e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package cn.kmbeast.schedule;
+
+import cn.kmbeast.service.impl.RecommendModelService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 协同过滤推荐模型定时重建任务
+ * 启动后立即构建一次，之后按配置的间隔重建；首次构建失败时按较短的间隔重试，构建成功前推荐请求返回热门美食
+ */
+@Slf4j
+@Component
+public class RecommendModelScheduler {
+
+    @Resource
+    private RecommendModelService recommendModelService;
+
+    /**
+     * 重建推荐模型
+     */
+    @Scheduled(fixedDelayString = "${app.recommend.model-rebuild-interval:600000}")
+    public void rebuildModel() {
+        log.info("开始重建协同过滤推荐模型...");
+        recommendModelService.rebuild();
+    }
+
+    /**
+     * 模型尚未构建成功时重试
+     */
+    @Scheduled(fixedDelayString = "${app.recommend.model-retry-interval:30000}",
+            initialDelayString = "${app.recommend.model-retry-interval:30000}")
+    public void retryMissingModel() {
+        if (recommendModelService.getBuiltAt() == 0) {
+            log.info("协同过滤推荐模型尚未构建成功，重试构建...");
+            recommendModelService.rebuild();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import cn.kmbeast.pojo.dto.query.extend.FlashSaleItemQueryDto;
 import cn.kmbeast.pojo.dto.query.extend.FlashSaleOrderQueryDto;
 import cn.kmbeast.pojo.entity.FlashSaleItem;
 import cn.kmbeast.pojo.entity.FlashSaleOrder;
+import cn.kmbeast.pojo.vo.FlashSaleAdmissionVO;
 import cn.kmbeast.pojo.vo.FlashSaleItemVO;
 import cn.kmbeast.pojo.vo.PageResult;
 
@@ -56,7 +57,7 @@ public interface FlashSaleService {
     Result<Void> deleteFlashSaleItem(Integer itemId);
 
     /**
-     * 秒杀下单
+     * 秒杀下单，不校验购买令牌
      * 
      * @param itemId 商品ID
      * @param userId 用户ID
@@ -64,6 +65,35 @@ public interface FlashSaleService {
      */
     Result<FlashSaleOrder> flashSale(Integer itemId, Integer userId);
 
+    /**
+     * 携带购买令牌秒杀下单，启用排队放行时先校验令牌，下单成功后再核销
+     * 
+     * @param itemId 商品ID
+     * @param userId 用户ID
+     * @param token  排队放行后获得的购买令牌
+     * @return 订单信息
+     */
+    Result<FlashSaleOrder> flashSale(Integer itemId, Integer userId, String token);
+
+    /**
+     * 进入秒杀队列或查询排队进度
+     * 
+     * @param itemId 商品ID
+     * @param userId 用户ID
+     * @return 排队结果，放行时包含购买令牌
+     */
+    Result<FlashSaleAdmissionVO> enterQueue(Integer itemId, Integer userId);
+
+    /**
+     * 查询秒杀订单处理状态
+     * 订单异步写库，写库前返回状态为0（排队中）的订单
+     * 
+     * @param orderId 订单ID
+     * @param userId  用户ID
+     * @return 订单信息
+     */
+    Result<FlashSaleOrder> queryOrderStatus(String orderId, Integer userId);
+
     /**
      * 查询用户秒杀订单
      * 
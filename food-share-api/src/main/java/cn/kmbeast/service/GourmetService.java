@@ -9,6 +9,7 @@ import cn.kmbeast.pojo.vo.ChartVO;
 import cn.kmbeast.pojo.vo.GourmetListVO;
 import cn.kmbeast.pojo.vo.GourmetVO;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -36,4 +37,6 @@ public interface GourmetService {
 
     Result<List<GourmetVO>> queryByView(GourmetQueryDto gourmetQueryDto);
 
+    List<GourmetVO> getGourmetsByIds(Collection<Integer> ids);
+
 }
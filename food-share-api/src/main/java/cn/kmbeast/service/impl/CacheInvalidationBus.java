@@ -0,0 +1,272 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.utils.CacheConstants;
+import com.alibaba.fastjson2.JSON;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地缓存失效广播
+ * 多级缓存删除时，将失效的key合并去重后批量通过Redis发布订阅广播，各节点收到后清除自己的本地缓存
+ * 每批消息携带Redis递增的版本号，本地缓存条目记录加载时本节点已知的最新版本，
+ * 只清除版本小于消息版本的条目，迟到的消息不会清除在其之后加载的新数据
+ * 版本要等批量发送时才推进，另外维护本地失效计数，本节点登记失效、收到消息、版本推进时同步递增，
+ * 加载开始与写入本地缓存时计数不同则不写入，登记失效到批量发送之间完成的加载不会写入旧数据
+ */
+@Slf4j
+@Service
+public class CacheInvalidationBus implements MessageListener {
+
+    /**
+     * 表示清除缓存名称下的全部key
+     */
+    public static final String ALL_KEYS = "*";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 失效消息合并发送的间隔（毫秒）
+     */
+    @Value("${app.cache.invalidation-flush-interval:50}")
+    private long flushInterval;
+
+    /**
+     * 待发送的key数量达到该值时立即发送
+     */
+    @Value("${app.cache.invalidation-batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 本节点标识，用于忽略自己发出的消息
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 本节点已知的最新失效版本
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 本节点的本地失效计数
+     */
+    private final AtomicLong stamp = new AtomicLong();
+
+    /**
+     * 待发送的失效key，key为缓存名称
+     */
+    private Map<String, Set<String>> pending = new HashMap<>();
+
+    private int pendingCount;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * 收到其他节点失效消息时的处理器，各处理器按缓存名称过滤
+     */
+    private final List<InvalidationHandler> handlers = new CopyOnWriteArrayList<>();
+
+    /**
+     * 失效消息处理器
+     */
+    @FunctionalInterface
+    public interface InvalidationHandler {
+
+        /**
+         * 清除版本小于消息版本的本地缓存
+         *
+         * @param cacheName 缓存名称
+         * @param keys      缓存key，包含ALL_KEYS时清除该名称下的全部key
+         * @param version   消息版本
+         */
+        void invalidate(String cacheName, Collection<String> keys, long version);
+    }
+
+    public CacheInvalidationBus() {
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "cache-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this,
+                new ChannelTopic(CacheConstants.CACHE_INVALIDATION_CHANNEL));
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    public void addHandler(InvalidationHandler handler) {
+        handlers.add(handler);
+    }
+
+    /**
+     * 本节点已知的最新失效版本，本地缓存条目以加载开始时的版本作为版本号
+     *
+     * @return 版本号
+     */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * 本节点的本地失效计数，加载开始时记录，写入本地缓存前核对
+     *
+     * @return 失效计数
+     */
+    public long currentStamp() {
+        return stamp.get();
+    }
+
+    /**
+     * 登记单个key失效，等待批量广播
+     *
+     * @param cacheName 缓存名称
+     * @param key       缓存key
+     */
+    public void publish(String cacheName, String key) {
+        stamp.incrementAndGet();
+        boolean full;
+        synchronized (this) {
+            Set<String> keys = pending.computeIfAbsent(cacheName, name -> new HashSet<>());
+            if (keys.contains(ALL_KEYS) || !keys.add(key)) {
+                return;
+            }
+            full = ++pendingCount >= batchSize;
+        }
+        if (full) {
+            scheduler.execute(this::flush);
+        }
+    }
+
+    /**
+     * 登记缓存名称下的全部key失效，已登记的单个key合并为一条
+     *
+     * @param cacheName 缓存名称
+     */
+    public void publishAll(String cacheName) {
+        stamp.incrementAndGet();
+        synchronized (this) {
+            Set<String> keys = pending.get(cacheName);
+            if (keys != null) {
+                pendingCount -= keys.size();
+            }
+            pending.put(cacheName, new HashSet<>(Collections.singleton(ALL_KEYS)));
+            pendingCount++;
+        }
+    }
+
+    /**
+     * 发送待广播的失效key，发送失败时其他节点的本地缓存只能等待过期
+     */
+    private void flush() {
+        Map<String, Set<String>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+            pendingCount = 0;
+        }
+        try {
+            Long next = stringRedisTemplate.opsForValue().increment(CacheConstants.CACHE_INVALIDATION_VERSION_KEY);
+            if (next == null) {
+                return;
+            }
+            advance(next);
+            InvalidationMessage message = new InvalidationMessage();
+            message.setNodeId(nodeId);
+            message.setVersion(next);
+            message.setKeys(batch);
+            stringRedisTemplate.convertAndSend(CacheConstants.CACHE_INVALIDATION_CHANNEL, JSON.toJSONString(message));
+            log.debug("广播本地缓存失效，版本: {}, 缓存数: {}", next, batch.size());
+        } catch (Exception e) {
+            log.warn("广播本地缓存失效失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        InvalidationMessage invalidation;
+        try {
+            invalidation = JSON.parseObject(body, InvalidationMessage.class);
+        } catch (Exception e) {
+            log.warn("本地缓存失效消息格式错误: {}", body);
+            return;
+        }
+        if (invalidation == null || invalidation.getKeys() == null) {
+            return;
+        }
+        // 先处理消息再推进版本，处理期间开始加载的条目版本仍小于消息版本
+        if (!nodeId.equals(invalidation.getNodeId())) {
+            stamp.incrementAndGet();
+            invalidation.getKeys().forEach((cacheName, keys) -> {
+                for (InvalidationHandler handler : handlers) {
+                    handler.invalidate(cacheName, keys, invalidation.getVersion());
+                }
+            });
+        }
+        advance(invalidation.getVersion());
+    }
+
+    /**
+     * 推进版本，先递增失效计数，读到新版本的一方一定能看到计数变化
+     */
+    private void advance(long newVersion) {
+        if (newVersion > version.get()) {
+            stamp.incrementAndGet();
+        }
+        version.accumulateAndGet(newVersion, Math::max);
+    }
+
+    /**
+     * 失效消息
+     */
+    @Data
+    public static class InvalidationMessage {
+
+        /**
+         * 发送节点
+         */
+        private String nodeId;
+
+        /**
+         * 版本号
+         */
+        private long version;
+
+        /**
+         * 失效的key，key为缓存名称
+         */
+        private Map<String, Set<String>> keys;
+    }
+}
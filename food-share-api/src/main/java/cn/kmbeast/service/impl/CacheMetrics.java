@@ -0,0 +1,184 @@
+package cn.kmbeast.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+
+/**
+ * 多级缓存的Micrometer指标，通过Actuator的metrics、prometheus端点导出
+ * 每个缓存名称注册一组指标，标签为缓存名称(cache)、key族(family，缓存名称的第一段)和缓存注解(annotation)
+ *
+ * multilevel.cache.gets         读取次数，level=l1|l2，result=hit|miss|stale，l2的miss即回源次数
+ * multilevel.cache.load         回源加载耗时，outcome=success|failure
+ * multilevel.cache.evictions    清除次数，cause=size(本地容量淘汰)|explicit(本节点删除)|remote(其他节点广播)
+ * multilevel.cache.size         本地缓存条数
+ * multilevel.cache.payload.size 写入Redis的序列化大小（字节）
+ * multilevel.cache.flight.wait  未命中时等待其他请求加载的耗时，scope=local(本节点合并)|remote(等待其他节点租约)
+ * multilevel.cache.flight.timeouts 等待其他节点加载超时后自行加载的次数
+ */
+@Slf4j
+@Component
+public class CacheMetrics {
+
+    /**
+     * 不是通过缓存注解访问时的annotation标签
+     */
+    public static final String ANNOTATION_NONE = "none";
+
+    private static final String PREFIX = "multilevel.cache.";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 注册一个缓存名称的全部指标
+     *
+     * @param cacheName  缓存名称
+     * @param annotation 缓存注解名称
+     * @param local      本地缓存，需开启recordStats
+     * @return 该缓存的指标
+     */
+    public Meters register(String cacheName, String annotation, Cache<?, ?> local) {
+        Tags tags = Tags.of("cache", cacheName, "family", family(cacheName), "annotation", annotation);
+
+        FunctionCounter.builder(PREFIX + "gets", local, cache -> cache.stats().hitCount())
+                .tags(tags).tags("level", "l1", "result", "hit")
+                .description("本地缓存读取次数").register(meterRegistry);
+        FunctionCounter.builder(PREFIX + "gets", local, cache -> cache.stats().missCount())
+                .tags(tags).tags("level", "l1", "result", "miss")
+                .description("本地缓存读取次数").register(meterRegistry);
+        FunctionCounter.builder(PREFIX + "evictions", local, cache -> cache.stats().evictionCount())
+                .tags(tags).tags("cause", "size")
+                .description("缓存清除次数").register(meterRegistry);
+        Gauge.builder(PREFIX + "size", local, Cache::estimatedSize)
+                .tags(tags).description("本地缓存条数").register(meterRegistry);
+
+        return new Meters(
+                redisGets(tags, "hit"),
+                redisGets(tags, "stale"),
+                redisGets(tags, "miss"),
+                loadTimer(tags, "success"),
+                loadTimer(tags, "failure"),
+                evictions(tags, "explicit"),
+                evictions(tags, "remote"),
+                DistributionSummary.builder(PREFIX + "payload.size")
+                        .tags(tags).baseUnit("bytes")
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(64L)
+                        .maximumExpectedValue(1024L * 1024)
+                        .description("写入Redis的序列化大小").register(meterRegistry),
+                flightWait(tags, "local"),
+                flightWait(tags, "remote"),
+                Counter.builder(PREFIX + "flight.timeouts")
+                        .tags(tags).description("等待其他节点加载超时次数").register(meterRegistry));
+    }
+
+    /**
+     * 记录写入Redis的值序列化后的大小，只在回源写入时调用，额外的一次序列化相对回源开销可以忽略
+     *
+     * @param meters 缓存指标
+     * @param value  写入Redis的值
+     */
+    @SuppressWarnings("unchecked")
+    public void recordPayload(Meters meters, Object value) {
+        try {
+            byte[] bytes = ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+            if (bytes != null) {
+                meters.payloadSize.record(bytes.length);
+            }
+        } catch (Exception e) {
+            log.debug("计算缓存大小失败: {}", e.getMessage());
+        }
+    }
+
+    private Counter redisGets(Tags tags, String result) {
+        return Counter.builder(PREFIX + "gets")
+                .tags(tags).tags("level", "l2", "result", result)
+                .description("Redis缓存读取次数").register(meterRegistry);
+    }
+
+    private Timer loadTimer(Tags tags, String outcome) {
+        return Timer.builder(PREFIX + "load")
+                .tags(tags).tags("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .description("回源加载耗时").register(meterRegistry);
+    }
+
+    private Counter evictions(Tags tags, String cause) {
+        return Counter.builder(PREFIX + "evictions")
+                .tags(tags).tags("cause", cause)
+                .description("缓存清除次数").register(meterRegistry);
+    }
+
+    private Timer flightWait(Tags tags, String scope) {
+        return Timer.builder(PREFIX + "flight.wait")
+                .tags(tags).tags("scope", scope)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .description("等待其他请求加载的耗时").register(meterRegistry);
+    }
+
+    /**
+     * key族，取缓存名称的第一段，如gourmet:detail为gourmet
+     */
+    private static String family(String cacheName) {
+        int index = cacheName.indexOf(':');
+        return index < 0 ? cacheName : cacheName.substring(0, index);
+    }
+
+    /**
+     * 单个缓存名称的指标
+     */
+    public static final class Meters {
+
+        final Counter redisHits;
+
+        final Counter staleHits;
+
+        final Counter misses;
+
+        final Timer loadSuccess;
+
+        final Timer loadFailure;
+
+        final Counter explicitEvictions;
+
+        final Counter remoteEvictions;
+
+        final DistributionSummary payloadSize;
+
+        final Timer localWait;
+
+        final Timer remoteWait;
+
+        final Counter flightTimeouts;
+
+        private Meters(Counter redisHits, Counter staleHits, Counter misses, Timer loadSuccess, Timer loadFailure,
+                       Counter explicitEvictions, Counter remoteEvictions, DistributionSummary payloadSize,
+                       Timer localWait, Timer remoteWait, Counter flightTimeouts) {
+            this.redisHits = redisHits;
+            this.staleHits = staleHits;
+            this.misses = misses;
+            this.loadSuccess = loadSuccess;
+            this.loadFailure = loadFailure;
+            this.explicitEvictions = explicitEvictions;
+            this.remoteEvictions = remoteEvictions;
+            this.payloadSize = payloadSize;
+            this.localWait = localWait;
+            this.remoteWait = remoteWait;
+            this.flightTimeouts = flightTimeouts;
+        }
+    }
+}
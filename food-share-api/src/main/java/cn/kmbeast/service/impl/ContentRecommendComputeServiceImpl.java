@@ -4,12 +4,15 @@ import cn.kmbeast.mapper.ContentFeatureMapper;
 import cn.kmbeast.mapper.ContentSimilarityMapper;
 import cn.kmbeast.mapper.GourmetMapper;
 import cn.kmbeast.mapper.UserBehaviorMapper;
+import cn.kmbeast.pojo.dto.query.extend.BehaviorCountDto;
 import cn.kmbeast.pojo.entity.ContentFeature;
 import cn.kmbeast.pojo.entity.ContentSimilarity;
 import cn.kmbeast.pojo.vo.GourmetVO;
 import cn.kmbeast.service.ContentRecommendComputeService;
 import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.ContentSimilarityIndex;
 import cn.kmbeast.utils.RedisUtil;
+import cn.kmbeast.utils.SparseMatrix;
 import cn.kmbeast.utils.TextUtils;
 import com.alibaba.fastjson2.JSON;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -17,6 +20,9 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -51,6 +57,12 @@ public class ContentRecommendComputeServiceImpl implements ContentRecommendCompu
     @Autowired
     private RedisUtil redisUtil;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private DefaultRedisScript<Long> cacheLeaseReleaseScript;
+
     // 特征权重配置
     private static final double CATEGORY_WEIGHT = 2.0; // 分类特征权重
     private static final double TITLE_WEIGHT = 1.5; // 标题特征权重
@@ -67,9 +79,32 @@ public class ContentRecommendComputeServiceImpl implements ContentRecommendCompu
     private static final double COMMENT_WEIGHT = 0.8; // 评论权重
     private static final double COLLECT_WEIGHT = 1.0; // 收藏权重
 
+    // 综合相似度中内容特征与用户行为的权重
+    private static final double CONTENT_SIMILARITY_WEIGHT = 0.7;
+    private static final double BEHAVIOR_SIMILARITY_WEIGHT = 0.3;
+
+    // 批量查询美食、批量写入相似度的每批条数
+    private static final int QUERY_BATCH_SIZE = 500;
+    private static final int WRITE_BATCH_SIZE = 1000;
+
     // 缓存锁前缀
     private static final String COMPUTE_LOCK_PREFIX = "lock:compute:";
 
+    // 批量更新锁的有效期（秒）
+    private static final long BATCH_LOCK_EXPIRE = 3600;
+
+    /**
+     * 每个美食保留的内容相似美食数
+     */
+    @Value("${app.recommend.content-top-k:50}")
+    private int similarityTopK;
+
+    /**
+     * 批量计算内容相似度的并行度，0为CPU核数
+     */
+    @Value("${app.recommend.content-parallelism:0}")
+    private int parallelism;
+
     /**
      * 压缩特征向量
      * 1. 移除接近0的特征
@@ -120,96 +155,8 @@ public class ContentRecommendComputeServiceImpl implements ContentRecommendCompu
                     return false;
                 }
 
-                // 2. 提取特征
-                Map<String, Double> features = new HashMap<>();
-
-                // 2.1 分类特征
-                if (StringUtils.hasText(gourmet.getCategoryName())) {
-                    // 主分类特征
-                    features.put("category_" + gourmet.getCategoryName(), CATEGORY_WEIGHT);
-                    // 分类词特征（分词后的每个词也作为特征）
-                    Map<String, Integer> categoryTerms = TextUtils.extractTerms(gourmet.getCategoryName());
-                    categoryTerms.entrySet().stream()
-                            .filter(e -> !TextUtils.isStopWord(e.getKey()))
-                            .forEach(e -> features.put(
-                                    "category_term_" + e.getKey(),
-                                    e.getValue() * CATEGORY_WEIGHT * 0.5 // 分类词特征权重为主分类的一半
-                            ));
-                }
-
-                // 2.2 标题特征
-                if (StringUtils.hasText(gourmet.getTitle())) {
-                    try {
-                        Map<String, Integer> titleTerms = TextUtils.extractTerms(gourmet.getTitle());
-
-                        // 单个词特征
-                        titleTerms.entrySet().stream()
-                                .filter(e -> !TextUtils.isStopWord(e.getKey()))
-                                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                                .limit(TITLE_FEATURES_LIMIT)
-                                .forEach(e -> features.put(
-                                        "title_" + e.getKey(),
-                                        e.getValue() * TITLE_WEIGHT));
-
-                        // 词组合特征（相邻词的组合）
-                        List<String> titleWords = new ArrayList<>(titleTerms.keySet());
-                        for (int i = 0; i < titleWords.size() - 1; i++) {
-                            String word1 = titleWords.get(i);
-                            String word2 = titleWords.get(i + 1);
-                            if (!TextUtils.isStopWord(word1) && !TextUtils.isStopWord(word2)) {
-                                features.put(
-                                        "title_phrase_" + word1 + "_" + word2,
-                                        TITLE_WEIGHT * 0.8 // 词组特征权重稍低
-                                );
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("Failed to extract title features for gourmet: {}", gourmetId, e);
-                    }
-                }
-
-                // 2.3 内容特征
-                if (StringUtils.hasText(gourmet.getContent())) {
-                    try {
-                        Map<String, Integer> contentTerms = TextUtils.extractTerms(gourmet.getContent());
-                        contentTerms.entrySet().stream()
-                                .filter(e -> !TextUtils.isStopWord(e.getKey()))
-                                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                                .limit(CONTENT_FEATURES_LIMIT)
-                                .forEach(e -> features.put(
-                                        "content_" + e.getKey(),
-                                        e.getValue() * CONTENT_WEIGHT));
-                    } catch (Exception e) {
-                        log.warn("Failed to extract content features for gourmet: {}", gourmetId, e);
-                    }
-                }
-
-                // 3. 确保特征不为空
-                if (features.isEmpty()) {
-                    log.warn("No features extracted for gourmet: {}, using default feature", gourmetId);
-                    features.put("default", 1.0);
-                }
-
-                // 4. L2归一化
-                double l2Norm = Math.sqrt(features.values().stream()
-                        .mapToDouble(v -> v * v)
-                        .sum());
-                if (l2Norm > 0) {
-                    features.replaceAll((k, v) -> v / l2Norm);
-                }
-
-                // 5. 保存特征
-                LocalDateTime now = LocalDateTime.now();
-                ContentFeature feature = new ContentFeature();
-                feature.setGourmetId(gourmetId);
-                feature.setFeatureVector(objectMapper.writeValueAsString(features));
-                feature.setCreateTime(now);
-                feature.setUpdateTime(now);
-
-                contentFeatureMapper.insertOrUpdate(feature);
-
-                // 6. 缓存特征数据
-                redisUtil.set(featureCacheKey, JSON.toJSONString(features), CacheConstants.CONTENT_FEATURES_EXPIRE);
+                // 2. 提取特征并保存
+                saveFeatures(gourmetId, extractFeatures(gourmet));
 
                 log.info("Successfully saved features for gourmet: {}", gourmetId);
                 return true;
@@ -223,6 +170,109 @@ public class ContentRecommendComputeServiceImpl implements ContentRecommendCompu
         }
     }
 
+    /**
+     * 提取美食的特征向量：分类、标题、内容特征，L2归一化
+     */
+    private Map<String, Double> extractFeatures(GourmetVO gourmet) {
+        Integer gourmetId = gourmet.getId();
+        // 1. 提取特征
+        Map<String, Double> features = new HashMap<>();
+
+        // 2.1 分类特征
+        if (StringUtils.hasText(gourmet.getCategoryName())) {
+            // 主分类特征
+            features.put("category_" + gourmet.getCategoryName(), CATEGORY_WEIGHT);
+            // 分类词特征（分词后的每个词也作为特征）
+            Map<String, Integer> categoryTerms = TextUtils.extractTerms(gourmet.getCategoryName());
+            categoryTerms.entrySet().stream()
+                    .filter(e -> !TextUtils.isStopWord(e.getKey()))
+                    .forEach(e -> features.put(
+                            "category_term_" + e.getKey(),
+                            e.getValue() * CATEGORY_WEIGHT * 0.5 // 分类词特征权重为主分类的一半
+                    ));
+        }
+
+        // 2.2 标题特征
+        if (StringUtils.hasText(gourmet.getTitle())) {
+            try {
+                Map<String, Integer> titleTerms = TextUtils.extractTerms(gourmet.getTitle());
+
+                // 单个词特征
+                titleTerms.entrySet().stream()
+                        .filter(e -> !TextUtils.isStopWord(e.getKey()))
+                        .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
+                        .limit(TITLE_FEATURES_LIMIT)
+                        .forEach(e -> features.put(
+                                "title_" + e.getKey(),
+                                e.getValue() * TITLE_WEIGHT));
+
+                // 词组合特征（相邻词的组合）
+                List<String> titleWords = new ArrayList<>(titleTerms.keySet());
+                for (int i = 0; i < titleWords.size() - 1; i++) {
+                    String word1 = titleWords.get(i);
+                    String word2 = titleWords.get(i + 1);
+                    if (!TextUtils.isStopWord(word1) && !TextUtils.isStopWord(word2)) {
+                        features.put(
+                                "title_phrase_" + word1 + "_" + word2,
+                                TITLE_WEIGHT * 0.8 // 词组特征权重稍低
+                        );
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to extract title features for gourmet: {}", gourmetId, e);
+            }
+        }
+
+        // 2.3 内容特征
+        if (StringUtils.hasText(gourmet.getContent())) {
+            try {
+                Map<String, Integer> contentTerms = TextUtils.extractTerms(gourmet.getContent());
+                contentTerms.entrySet().stream()
+                        .filter(e -> !TextUtils.isStopWord(e.getKey()))
+                        .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
+                        .limit(CONTENT_FEATURES_LIMIT)
+                        .forEach(e -> features.put(
+                                "content_" + e.getKey(),
+                                e.getValue() * CONTENT_WEIGHT));
+            } catch (Exception e) {
+                log.warn("Failed to extract content features for gourmet: {}", gourmetId, e);
+            }
+        }
+
+        // 2. 确保特征不为空
+        if (features.isEmpty()) {
+            log.warn("No features extracted for gourmet: {}, using default feature", gourmetId);
+            features.put("default", 1.0);
+        }
+
+        // 3. L2归一化
+        double l2Norm = Math.sqrt(features.values().stream()
+                .mapToDouble(v -> v * v)
+                .sum());
+        if (l2Norm > 0) {
+            features.replaceAll((k, v) -> v / l2Norm);
+        }
+        return features;
+    }
+
+    /**
+     * 保存特征到数据库并缓存
+     */
+    private void saveFeatures(Integer gourmetId, Map<String, Double> features) throws JsonProcessingException {
+        // 1. 保存特征
+        LocalDateTime now = LocalDateTime.now();
+        ContentFeature feature = new ContentFeature();
+        feature.setGourmetId(gourmetId);
+        feature.setFeatureVector(objectMapper.writeValueAsString(features));
+        feature.setCreateTime(now);
+        feature.setUpdateTime(now);
+
+        contentFeatureMapper.insertOrUpdate(feature);
+
+        // 2. 缓存特征数据
+        redisUtil.set(CacheConstants.CONTENT_FEATURES_KEY_PREFIX + gourmetId, JSON.toJSONString(features), CacheConstants.CONTENT_FEATURES_EXPIRE);
+    }
+
     @Override
     @Transactional
     public void updateRecommendations(Integer gourmetId) {
@@ -253,40 +303,16 @@ public class ContentRecommendComputeServiceImpl implements ContentRecommendCompu
                     return;
                 }
 
-                // 3. 获取所有其他美食ID
-                List<Integer> allIds = gourmetMapper.getAllIdsExcept(gourmetId);
-                if (allIds.isEmpty()) {
-                    log.info("No other gourmet items found");
-                    return;
-                }
-
-                // 4. 为每个目标美食计算特征和相似度
-                for (Integer targetId : allIds) {
-                    try {
-                        // 4.1 验证目标美食
-                        GourmetVO targetGourmet = gourmetMapper.queryById(targetId);
-                        if (targetGourmet == null) {
-                            continue;
-                        }
-
-                        // 4.2 计算目标美食特征
-                        if (computeAndSaveFeatures(targetId)) {
-                            // 4.3 计算相似度
-                            computeAndSaveSimilarity(gourmetId, targetId);
-                        }
-                    } catch (Exception e) {
-                        log.error("Failed to process similarity for {} -> {}", gourmetId, targetId, e);
-                    }
+                // 3. 一次加载全部美食的特征和行为，计算与源美食最相似的K个美食并批量写入
+                List<Integer> candidateIds = gourmetMapper.getAllIds();
+                if (!candidateIds.contains(gourmetId)) {
+                    candidateIds.add(gourmetId);
                 }
+                ContentSimilarityIndex index = buildSimilarityIndex(candidateIds);
+                saveTopK(index, Collections.singletonList(gourmetId), 1);
 
-                // 5. 清除相关缓存，以便重新生成
-                String similarCacheKeyPattern = CacheConstants.SIMILAR_CONTENT_KEY_PREFIX + gourmetId + "*";
-                Set<String> keys = redisUtil.keys(similarCacheKeyPattern);
-                if (keys != null && !keys.isEmpty()) {
-                    for (String key : keys) {
-                        redisUtil.del(key);
-                    }
-                }
+                // 4. 清除相关缓存，以便重新生成
+                redisUtil.delByTag(CacheConstants.getCacheTagKey(CacheConstants.SIMILAR_CONTENT_KEY_PREFIX + gourmetId));
 
                 log.info("Successfully updated recommendations for gourmet: {}", gourmetId);
             } finally {
@@ -309,7 +335,8 @@ public class ContentRecommendComputeServiceImpl implements ContentRecommendCompu
             double behaviorSimilarity = computeUserBehaviorSimilarity(sourceId, targetId);
 
             // 3. 综合两种相似度（可以调整权重）
-            double finalSimilarity = 0.7 * contentSimilarity + 0.3 * behaviorSimilarity;
+            double finalSimilarity = CONTENT_SIMILARITY_WEIGHT * contentSimilarity
+                    + BEHAVIOR_SIMILARITY_WEIGHT * behaviorSimilarity;
 
             // 4. 保存相似度
             ContentSimilarity similarityEntity = new ContentSimilarity();
@@ -473,23 +500,9 @@ public class ContentRecommendComputeServiceImpl implements ContentRecommendCompu
             }
 
             // 3. 解析特征
-            Map<String, Object> rawFeatures = objectMapper.readValue(
-                    feature.getFeatureVector(),
-                    new TypeReference<Map<String, Object>>() {
-                    });
-
-            // 4. 转换为Double类型
-            Map<String, Double> features = new HashMap<>();
-            for (Map.Entry<String, Object> entry : rawFeatures.entrySet()) {
-                Object value = entry.getValue();
-                if (value instanceof Number) {
-                    features.put(entry.getKey(), ((Number) value).doubleValue());
-                } else {
-                    features.put(entry.getKey(), 0.0);
-                }
-            }
+            Map<String, Double> features = parseFeatures(feature.getFeatureVector());
 
-            // 5. 缓存特征
+            // 4. 缓存特征
             redisUtil.set(cacheKey, JSON.toJSONString(features), CacheConstants.CONTENT_FEATURES_EXPIRE);
 
             return features;
@@ -499,18 +512,165 @@ public class ContentRecommendComputeServiceImpl implements ContentRecommendCompu
         }
     }
 
+    /**
+     * 解析数据库中保存的特征向量JSON
+     */
+    private Map<String, Double> parseFeatures(String featureVector) throws JsonProcessingException {
+        Map<String, Object> rawFeatures = objectMapper.readValue(
+                featureVector,
+                new TypeReference<Map<String, Object>>() {
+                });
+
+        // 转换为Double类型
+        Map<String, Double> features = new HashMap<>();
+        for (Map.Entry<String, Object> entry : rawFeatures.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Number) {
+                features.put(entry.getKey(), ((Number) value).doubleValue());
+            } else {
+                features.put(entry.getKey(), 0.0);
+            }
+        }
+        return features;
+    }
+
+    /**
+     * 批量更新推荐：一次加载全部特征和行为构建倒排索引，按CPU核数并行计算各美食最相似的K个美食，
+     * 分批写入后删除本次未保留的旧记录；分批提交，不在一个事务中
+     * 多个节点同时触发时只有拿到锁的节点执行，锁按令牌释放，不会删除其他节点持有的锁
+     */
     @Override
-    @Transactional
     public void batchUpdateRecommendations(List<Integer> gourmetIds) {
         log.info("Batch updating recommendations for {} gourmets", gourmetIds.size());
 
-        for (Integer gourmetId : gourmetIds) {
-            try {
-                updateRecommendations(gourmetId);
-            } catch (Exception e) {
-                log.error("Failed to update recommendations for gourmet: {}", gourmetId, e);
+        String lockKey = COMPUTE_LOCK_PREFIX + "recommend:batch";
+        String token = UUID.randomUUID().toString();
+        Boolean lockAcquired = stringRedisTemplate.opsForValue()
+                .setIfAbsent(lockKey, token, BATCH_LOCK_EXPIRE, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(lockAcquired)) {
+            log.info("Another process is batch updating recommendations, skipping");
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            Set<Integer> candidateIds = new LinkedHashSet<>(gourmetMapper.getAllIds());
+            candidateIds.addAll(gourmetIds);
+            ContentSimilarityIndex index = buildSimilarityIndex(new ArrayList<>(candidateIds));
+            int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+            int saved = saveTopK(index, gourmetIds, threads);
+
+            for (Integer gourmetId : gourmetIds) {
+                redisUtil.delByTag(CacheConstants.getCacheTagKey(CacheConstants.SIMILAR_CONTENT_KEY_PREFIX + gourmetId));
             }
+            log.info("Batch updated recommendations for {} gourmets, candidates: {}, similarities: {}, took {}ms",
+                    gourmetIds.size(), index.getItemCount(), saved, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Failed to batch update recommendations", e);
+        } finally {
+            stringRedisTemplate.execute(cacheLeaseReleaseScript, Collections.singletonList(lockKey), token);
+        }
+    }
+
+    /**
+     * 构建内容相似度索引
+     * 特征一次性从数据库读取，缺少特征的美食分批查询后计算并保存；用户行为按美食、用户、类型一次聚合读取
+     *
+     * @param gourmetIds 候选美食ID
+     * @return 内容相似度索引
+     */
+    private ContentSimilarityIndex buildSimilarityIndex(List<Integer> gourmetIds) throws JsonProcessingException {
+        // 1. 读取特征，同一美食有多条时后读到的较新记录覆盖旧记录
+        Set<Integer> idSet = new HashSet<>(gourmetIds);
+        Map<Integer, Map<String, Double>> featureMap = new HashMap<>();
+        for (ContentFeature feature : contentFeatureMapper.selectAll()) {
+            if (idSet.contains(feature.getGourmetId()) && StringUtils.hasText(feature.getFeatureVector())) {
+                featureMap.put(feature.getGourmetId(), parseFeatures(feature.getFeatureVector()));
+            }
+        }
+        List<Integer> missingIds = gourmetIds.stream()
+                .filter(id -> !featureMap.containsKey(id))
+                .collect(Collectors.toList());
+        for (int i = 0; i < missingIds.size(); i += QUERY_BATCH_SIZE) {
+            List<Integer> batch = missingIds.subList(i, Math.min(i + QUERY_BATCH_SIZE, missingIds.size()));
+            for (GourmetVO gourmet : gourmetMapper.queryByIds(batch)) {
+                Map<String, Double> features = extractFeatures(gourmet);
+                saveFeatures(gourmet.getId(), features);
+                featureMap.put(gourmet.getId(), features);
+            }
+        }
+
+        // 2. 特征词编号，构建美食×特征词矩阵
+        Map<String, Integer> terms = new HashMap<>();
+        SparseMatrix.Builder featureBuilder = SparseMatrix.builder(SparseMatrix.Merge.SUM);
+        featureMap.forEach((gourmetId, features) -> features.forEach((term, value) -> featureBuilder.add(
+                gourmetId, terms.computeIfAbsent(term, t -> terms.size()), value.floatValue())));
+
+        // 3. 构建美食×用户行为分数矩阵
+        SparseMatrix.Builder behaviorBuilder = SparseMatrix.builder(SparseMatrix.Merge.SUM);
+        for (BehaviorCountDto count : userBehaviorMapper.countAll()) {
+            behaviorBuilder.add(count.getGourmetId(), count.getUserId(),
+                    (float) (count.getBehaviorCount() * behaviorWeight(count.getBehaviorType())));
+        }
+
+        return new ContentSimilarityIndex(featureBuilder.build(), behaviorBuilder.build(),
+                (float) CONTENT_SIMILARITY_WEIGHT, (float) BEHAVIOR_SIMILARITY_WEIGHT);
+    }
+
+    /**
+     * 计算源美食最相似的K个美食并分批写入，随后删除这些源美食本次之前写入的记录
+     *
+     * @return 写入的相似度条数
+     */
+    private int saveTopK(ContentSimilarityIndex index, List<Integer> sourceIds, int threads) {
+        // 数据库时间精度为秒，去掉纳秒保证本次写入的记录不早于删除的时间点
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        int[] ids = sourceIds.stream().mapToInt(Integer::intValue).toArray();
+        ContentSimilarityIndex.Neighbors[] neighbors = index.topK(ids, similarityTopK, threads);
+
+        List<ContentSimilarity> similarities = new ArrayList<>();
+        List<Integer> written = new ArrayList<>();
+        int saved = 0;
+        for (int s = 0; s < ids.length; s++) {
+            for (int n = 0; n < neighbors[s].size(); n++) {
+                ContentSimilarity similarity = new ContentSimilarity();
+                similarity.setSourceId(ids[s]);
+                similarity.setTargetId(neighbors[s].getId(n));
+                similarity.setSimilarity(BigDecimal.valueOf(neighbors[s].getScore(n)));
+                similarity.setCreateTime(now);
+                similarities.add(similarity);
+            }
+            written.add(ids[s]);
+            if (similarities.size() >= WRITE_BATCH_SIZE || s == ids.length - 1) {
+                if (!similarities.isEmpty()) {
+                    contentSimilarityMapper.batchInsertOrUpdate(similarities);
+                }
+                contentSimilarityMapper.deleteStaleBySourceIds(written, now);
+                saved += similarities.size();
+                similarities.clear();
+                written.clear();
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * 用户行为类型对应的权重
+     */
+    private double behaviorWeight(String behaviorType) {
+        if ("VIEW".equals(behaviorType)) {
+            return VIEW_WEIGHT;
+        }
+        if ("LIKE".equals(behaviorType)) {
+            return LIKE_WEIGHT;
+        }
+        if ("COMMENT".equals(behaviorType)) {
+            return COMMENT_WEIGHT;
+        }
+        if ("COLLECT".equals(behaviorType)) {
+            return COLLECT_WEIGHT;
         }
+        return 0;
     }
 
     /**
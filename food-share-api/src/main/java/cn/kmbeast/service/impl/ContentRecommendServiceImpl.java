@@ -13,6 +13,7 @@ import cn.kmbeast.pojo.vo.ContentRecommendVO;
 import cn.kmbeast.pojo.vo.GourmetVO;
 import cn.kmbeast.service.ContentRecommendComputeService;
 import cn.kmbeast.service.ContentRecommendService;
+import cn.kmbeast.service.GourmetService;
 import cn.kmbeast.utils.CacheConstants;
 import cn.kmbeast.utils.RedisUtil;
 import cn.kmbeast.utils.TextUtils;
@@ -45,6 +46,9 @@ public class ContentRecommendServiceImpl implements ContentRecommendService {
     @Autowired
     private GourmetMapper gourmetMapper;
 
+    @Autowired
+    private GourmetService gourmetService;
+
     @Autowired
     private ContentRecommendComputeService computeService;
 
@@ -75,9 +79,11 @@ public class ContentRecommendServiceImpl implements ContentRecommendService {
 
             if (cachedData != null) {
                 try {
-                    // 从缓存返回结果
-                    List<ContentRecommendVO> cachedResult = JSON.parseArray(cachedData.toString(),
-                            ContentRecommendVO.class);
+                    // 从缓存返回结果，兼容旧版本以JSON字符串缓存的数据
+                    @SuppressWarnings("unchecked")
+                    List<ContentRecommendVO> cachedResult = cachedData instanceof List
+                            ? (List<ContentRecommendVO>) cachedData
+                            : JSON.parseArray(cachedData.toString(), ContentRecommendVO.class);
                     return new Result<>(
                             ResultCode.REQUEST_SUCCESS.getCode(),
                             "操作成功(来自缓存)",
@@ -110,7 +116,7 @@ public class ContentRecommendServiceImpl implements ContentRecommendService {
             Set<Integer> targetIds = similarities.stream()
                     .map(ContentSimilarity::getTargetId)
                     .collect(Collectors.toSet());
-            List<GourmetVO> gourmetVOs = gourmetMapper.queryByIds(targetIds);
+            List<GourmetVO> gourmetVOs = gourmetService.getGourmetsByIds(targetIds);
 
             if (CollectionUtils.isEmpty(gourmetVOs)) {
                 return ApiResult.success(Collections.emptyList());
@@ -147,8 +153,11 @@ public class ContentRecommendServiceImpl implements ContentRecommendService {
 
             // 5. 将结果缓存到Redis
             if (!recommendVOs.isEmpty()) {
-                String jsonResult = JSON.toJSONString(recommendVOs);
-                redisUtil.set(cacheKey, jsonResult, CacheConstants.SIMILAR_CONTENT_EXPIRE);
+                redisUtil.set(cacheKey, recommendVOs, CacheConstants.SIMILAR_CONTENT_EXPIRE);
+                // 登记到源美食的标签，重新计算相似度后按标签删除
+                redisUtil.tagAdd(CacheConstants.getCacheTagKey(
+                        CacheConstants.SIMILAR_CONTENT_KEY_PREFIX + queryDto.getGourmetId()),
+                        cacheKey, CacheConstants.SIMILAR_CONTENT_EXPIRE);
             }
 
             return new Result<>(
@@ -0,0 +1,212 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.pojo.em.FlashSaleAdmissionStatusEnum;
+import cn.kmbeast.pojo.vo.FlashSaleAdmissionVO;
+import cn.kmbeast.utils.CacheConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 秒杀排队放行服务
+ * 用户下单前先进入队列领取排队号，闸门按剩余库存计算的速率逐个放行并发放购买令牌，
+ * 下单时先校验令牌，扣减库存并创建订单成功后才核销，限流、异常等失败时令牌仍可重试使用
+ * 未放行的用户返回前方人数与预计等待时间，库存为0时不再放行
+ */
+@Slf4j
+@Service
+public class FlashSaleAdmissionService {
+
+    /**
+     * 本地剩余库存快照有效期（毫秒）
+     */
+    private static final long STOCK_SNAPSHOT_TTL = 1000;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private FlashSaleStockService flashSaleStockService;
+
+    @Resource
+    private FlashSaleStatusService flashSaleStatusService;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSaleAdmissionScript;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSaleAdmissionConsumeScript;
+
+    /**
+     * 是否启用排队放行，关闭时下单不校验购买令牌
+     */
+    @Value("${app.flash-sale.admission-enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 单个商品每秒最多放行人数
+     */
+    @Value("${app.flash-sale.admission-rate:500}")
+    private int maxRate;
+
+    /**
+     * 放行倍数，每秒放行人数不超过剩余库存乘以该倍数
+     */
+    @Value("${app.flash-sale.admission-overbook:2}")
+    private int overbook;
+
+    /**
+     * 购买令牌有效期（秒）
+     */
+    @Value("${app.flash-sale.admission-token-ttl:30}")
+    private long tokenTtlSeconds;
+
+    /**
+     * 建议客户端轮询排队结果的间隔（毫秒）
+     */
+    @Value("${app.flash-sale.admission-poll-interval:1000}")
+    private long pollInterval;
+
+    /**
+     * 剩余库存快照，key为商品ID，排队轮询量大，避免每次轮询都读取库存
+     */
+    private final Map<Integer, StockSnapshot> stockSnapshots = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 进入队列或查询排队进度，同一用户重复调用保持原排队号
+     *
+     * @param itemId 商品ID
+     * @param userId 用户ID
+     * @return 排队结果
+     */
+    public FlashSaleAdmissionVO enter(Integer itemId, Integer userId) {
+        FlashSaleAdmissionVO admission = new FlashSaleAdmissionVO();
+        admission.setItemId(itemId);
+        admission.setPollInterval(pollInterval);
+
+        int rate = getAdmissionRate(itemId);
+        if (rate <= 0) {
+            admission.setStatus(FlashSaleAdmissionStatusEnum.SOLD_OUT.getStatus());
+            return admission;
+        }
+
+        String token = UUID.randomUUID().toString().replace("-", "");
+        Long position = stringRedisTemplate.execute(flashSaleAdmissionScript,
+                Arrays.asList(CacheConstants.getFlashSaleAdmissionGateKey(itemId),
+                        CacheConstants.getFlashSaleAdmissionTicketKey(itemId),
+                        CacheConstants.getFlashSaleAdmissionTokenKey(userId, itemId)),
+                String.valueOf(userId),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(rate),
+                token,
+                String.valueOf(tokenTtlSeconds),
+                String.valueOf(CacheConstants.FLASH_SALE_STOCK_EXPIRE));
+
+        if (position == null || position <= 0) {
+            admission.setStatus(FlashSaleAdmissionStatusEnum.ADMITTED.getStatus());
+            admission.setToken(token);
+            admission.setPosition(0L);
+            admission.setEstimatedWait(0L);
+        } else {
+            admission.setStatus(FlashSaleAdmissionStatusEnum.WAITING.getStatus());
+            admission.setPosition(position);
+            admission.setEstimatedWait((position + rate - 1) / rate);
+        }
+        return admission;
+    }
+
+    /**
+     * 校验购买令牌，不核销
+     * 同一用户并发使用同一令牌时，由秒杀脚本的防重记录保证只有一次下单成功
+     *
+     * @param itemId 商品ID
+     * @param userId 用户ID
+     * @param token  购买令牌
+     * @return 令牌是否有效
+     */
+    public boolean verify(Integer itemId, Integer userId, String token) {
+        return StringUtils.hasText(token) && token.equals(stringRedisTemplate.opsForValue()
+                .get(CacheConstants.getFlashSaleAdmissionTokenKey(userId, itemId)));
+    }
+
+    /**
+     * 核销购买令牌，下单成功后调用，每个令牌只能成功下单一次
+     *
+     * @param itemId 商品ID
+     * @param userId 用户ID
+     * @param token  购买令牌
+     * @return 令牌是否有效
+     */
+    public boolean consume(Integer itemId, Integer userId, String token) {
+        if (!StringUtils.hasText(token)) {
+            return false;
+        }
+        Long result = stringRedisTemplate.execute(flashSaleAdmissionConsumeScript,
+                Arrays.asList(CacheConstants.getFlashSaleAdmissionTokenKey(userId, itemId),
+                        CacheConstants.getFlashSaleAdmissionTicketKey(itemId)),
+                token, String.valueOf(userId));
+        return result != null && result == 1;
+    }
+
+    /**
+     * 计算当前放行速率：售罄时为0，库存未预热时按上限放行，否则不超过剩余库存的overbook倍
+     *
+     * @param itemId 商品ID
+     * @return 每秒放行人数
+     */
+    private int getAdmissionRate(Integer itemId) {
+        if (flashSaleStatusService.isSoldOut(itemId)) {
+            return 0;
+        }
+        Long remainingStock = getRemainingStock(itemId);
+        if (remainingStock == null) {
+            return maxRate;
+        }
+        return (int) Math.min(maxRate, Math.max(0, remainingStock) * overbook);
+    }
+
+    /**
+     * 读取剩余库存，一秒内复用本地快照
+     *
+     * @param itemId 商品ID
+     * @return 剩余库存，未预热时返回null
+     */
+    private Long getRemainingStock(Integer itemId) {
+        long now = System.currentTimeMillis();
+        StockSnapshot snapshot = stockSnapshots.get(itemId);
+        if (snapshot != null && snapshot.expireAt > now) {
+            return snapshot.remainingStock;
+        }
+        Long remainingStock = flashSaleStockService.getRemainingStock(itemId);
+        stockSnapshots.put(itemId, new StockSnapshot(remainingStock, now + STOCK_SNAPSHOT_TTL));
+        return remainingStock;
+    }
+
+    /**
+     * 剩余库存快照
+     */
+    private static final class StockSnapshot {
+
+        private final Long remainingStock;
+
+        private final long expireAt;
+
+        private StockSnapshot(Long remainingStock, long expireAt) {
+            this.remainingStock = remainingStock;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.mapper.FlashSaleItemMapper;
+import cn.kmbeast.pojo.vo.FlashSaleItemVO;
+import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 秒杀活动生命周期调度服务
+ * 按每个商品的开始、结束时间注册延时任务：开始前按配置的提前量预热库存，到点精确切换状态
+ * 只加载未结束的商品，商品结束后移除其任务
+ */
+@Slf4j
+@Service
+public class FlashSaleLifecycleService {
+
+    private static final int STATUS_ONGOING = 1;
+
+    private static final int STATUS_ENDED = 2;
+
+    @Resource
+    private FlashSaleItemMapper flashSaleItemMapper;
+
+    @Resource
+    private FlashSaleStockService flashSaleStockService;
+
+    @Resource
+    private FlashSaleStatusService flashSaleStatusService;
+
+    @Resource
+    private FlashSaleStockSyncService flashSaleStockSyncService;
+
+    @Resource
+    private RedisUtil redisUtil;
+
+    /**
+     * 库存预热提前量（秒）
+     */
+    @Value("${app.flash-sale.preload-lead-time:3600}")
+    private long preloadLeadSeconds;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * 已注册任务的商品，key为商品ID
+     */
+    private final Map<Integer, ItemSchedule> schedules = new ConcurrentHashMap<>();
+
+    public FlashSaleLifecycleService() {
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "flash-lifecycle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reload();
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 从数据库加载全部未结束的商品并注册任务，用于启动和定时校准
+     * 时间未变化的商品保留原有任务
+     */
+    public synchronized void reload() {
+        List<FlashSaleItemVO> items = flashSaleItemMapper.queryUnfinishedFlashSaleItems();
+        Set<Integer> unfinishedIds = new HashSet<>();
+        for (FlashSaleItemVO item : items) {
+            unfinishedIds.add(item.getId());
+            schedule(item);
+        }
+        // 已在其他节点结束或被删除的商品
+        schedules.keySet().removeIf(itemId -> {
+            if (unfinishedIds.contains(itemId)) {
+                return false;
+            }
+            schedules.get(itemId).cancel();
+            return true;
+        });
+        log.info("秒杀生命周期任务加载完成，未结束商品数: {}", items.size());
+    }
+
+    /**
+     * 立即预热即将开始（在提前量以内）和进行中商品的库存
+     *
+     * @return 预热的商品数量
+     */
+    public int preloadUpcoming() {
+        LocalDateTime deadline = LocalDateTime.now().plusSeconds(preloadLeadSeconds);
+        int count = 0;
+        for (FlashSaleItemVO item : flashSaleItemMapper.queryUnfinishedFlashSaleItems()) {
+            if (item.getStartTime().isBefore(deadline)) {
+                // 进行中的商品可能已有待支付订单，库存需扣除后再预热
+                int stock = item.getStatus() == STATUS_ONGOING
+                        ? flashSaleStockSyncService.getAvailableStock(item.getId(), item.getStock())
+                        : item.getStock();
+                flashSaleStockService.preload(item.getId(), stock);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 重新加载单个商品并注册任务，用于商品创建或修改后
+     *
+     * @param itemId 商品ID
+     */
+    public synchronized void reschedule(Integer itemId) {
+        FlashSaleItemVO item = flashSaleItemMapper.getFlashSaleItemById(itemId);
+        if (item == null || item.getStatus() >= STATUS_ENDED) {
+            cancel(itemId);
+            return;
+        }
+        schedule(item);
+    }
+
+    /**
+     * 取消商品的全部任务，用于商品删除或提前结束
+     *
+     * @param itemId 商品ID
+     */
+    public synchronized void cancel(Integer itemId) {
+        ItemSchedule schedule = schedules.remove(itemId);
+        if (schedule != null) {
+            schedule.cancel();
+        }
+    }
+
+    /**
+     * 为商品注册预热、开始、结束任务，已过期的时间点立即执行
+     *
+     * @param item 商品信息
+     */
+    private void schedule(FlashSaleItemVO item) {
+        ItemSchedule existing = schedules.get(item.getId());
+        if (existing != null && existing.matches(item)) {
+            return;
+        }
+        if (existing != null) {
+            existing.cancel();
+        }
+
+        Integer itemId = item.getId();
+        LocalDateTime now = LocalDateTime.now();
+        ItemSchedule schedule = new ItemSchedule(item.getStartTime(), item.getEndTime());
+        if (item.getStatus() < STATUS_ONGOING && now.isBefore(item.getEndTime())) {
+            schedule.add(submitAt(item.getStartTime().minusSeconds(preloadLeadSeconds), now,
+                    () -> preload(itemId)));
+            schedule.add(submitAt(item.getStartTime(), now, () -> {
+                // 到点再预热一次，防止提前预热失败
+                preload(itemId);
+                advance(itemId, STATUS_ONGOING);
+            }));
+        }
+        schedule.add(submitAt(item.getEndTime(), now, () -> {
+            advance(itemId, STATUS_ENDED);
+            schedules.remove(itemId, schedule);
+        }));
+        schedules.put(itemId, schedule);
+    }
+
+    /**
+     * 按执行时数据库中的库存预热，只修改库存时任务不重新注册
+     *
+     * @param itemId 商品ID
+     */
+    private void preload(Integer itemId) {
+        FlashSaleItemVO item = flashSaleItemMapper.getFlashSaleItemById(itemId);
+        if (item == null || item.getStatus() >= STATUS_ENDED) {
+            return;
+        }
+        int stock = item.getStatus() == STATUS_ONGOING
+                ? flashSaleStockSyncService.getAvailableStock(itemId, item.getStock())
+                : item.getStock();
+        flashSaleStockService.preload(itemId, stock);
+    }
+
+    /**
+     * 在指定时间执行任务
+     *
+     * @param time 执行时间
+     * @param now  当前时间
+     * @param task 任务
+     * @return 任务句柄
+     */
+    private ScheduledFuture<?> submitAt(LocalDateTime time, LocalDateTime now, Runnable task) {
+        long delay = Math.max(0, Duration.between(now, time).toMillis());
+        return scheduler.schedule(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                // 失败的任务由定时校准重新注册
+                log.error("秒杀生命周期任务执行失败: {}", e.getMessage(), e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 推进商品状态，状态变化成功的节点负责清理缓存并广播
+     *
+     * @param itemId 商品ID
+     * @param status 目标状态
+     */
+    private void advance(Integer itemId, int status) {
+        if (flashSaleItemMapper.advanceStatus(itemId, status) == 0) {
+            return;
+        }
+
+        redisUtil.del(CacheConstants.FLASH_SALE_ITEM_LIST, CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
+        if (status == STATUS_ENDED) {
+            flashSaleStatusService.markEnded(itemId);
+            flashSaleStockSyncService.audit(itemId);
+        } else {
+            flashSaleStatusService.invalidate(itemId);
+        }
+        log.info("秒杀商品 {} 状态切换为 {}", itemId, status);
+    }
+
+    /**
+     * 单个商品已注册的任务
+     */
+    private static class ItemSchedule {
+
+        private final LocalDateTime startTime;
+
+        private final LocalDateTime endTime;
+
+        private final List<ScheduledFuture<?>> futures = new ArrayList<>(3);
+
+        private ItemSchedule(LocalDateTime startTime, LocalDateTime endTime) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        private void add(ScheduledFuture<?> future) {
+            futures.add(future);
+        }
+
+        private boolean matches(FlashSaleItemVO item) {
+            return startTime.equals(item.getStartTime()) && endTime.equals(item.getEndTime());
+        }
+
+        private void cancel() {
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.mapper.FlashSaleOrderMapper;
+import cn.kmbeast.pojo.entity.FlashSaleOrder;
+import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀订单异步持久化服务
+ * 下单成功后订单写入Redis Stream，由专用消费线程按批次写入flash_sale_order
+ * 订单以order_id唯一索引 + INSERT IGNORE保证幂等，写库成功后才ACK，未ACK的消息在重启后重新投递
+ * 消费者宕机或改名后遗留的待确认消息，空闲超时后由存活的消费者定期接管
+ */
+@Slf4j
+@Service
+public class FlashSaleOrderQueueService {
+
+    /**
+     * 订单状态：排队中（尚未写入数据库）
+     */
+    public static final int ORDER_STATUS_QUEUED = 0;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisUtil redisUtil;
+
+    @Resource
+    private FlashSaleOrderMapper flashSaleOrderMapper;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSaleOrderClaimScript;
+
+    @Value("${app.flash-sale.order-batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.flash-sale.order-poll-interval:100}")
+    private long pollInterval;
+
+    @Value("${app.flash-sale.order-consumer-name:}")
+    private String consumerName;
+
+    /**
+     * 检查其他消费者待确认消息的间隔（毫秒）
+     */
+    @Value("${app.flash-sale.order-claim-interval:30000}")
+    private long claimInterval;
+
+    /**
+     * 待确认消息空闲超过该时间（毫秒）才接管，需大于一批订单的正常处理时间
+     */
+    @Value("${app.flash-sale.order-claim-idle:60000}")
+    private long claimIdle;
+
+    private ExecutorService consumerExecutor;
+
+    private volatile boolean running;
+
+    /**
+     * 是否需要先处理本消费者的待确认消息
+     */
+    private boolean recovering = true;
+
+    /**
+     * 上次接管待确认消息的时间
+     */
+    private long lastClaimTime;
+
+    @PostConstruct
+    public void start() {
+        if (consumerName == null || consumerName.trim().isEmpty()) {
+            // 同一节点重启后沿用相同的消费者名称，以便接管自己未确认的消息
+            consumerName = ManagementFactory.getRuntimeMXBean().getName().replaceAll("^\\d+@", "");
+        }
+        createGroupIfAbsent();
+
+        running = true;
+        consumerExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "flash-order-consumer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        consumerExecutor.execute(this::consumeLoop);
+        log.info("秒杀订单持久化消费者启动，消费者: {}, 批次大小: {}", consumerName, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (consumerExecutor != null) {
+            consumerExecutor.shutdown();
+            consumerExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 订单入队
+     * 同时写入排队状态，供客户端轮询订单处理结果
+     *
+     * @param order 订单信息
+     */
+    public void enqueue(FlashSaleOrder order) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("orderId", order.getOrderId());
+        fields.put("userId", String.valueOf(order.getUserId()));
+        fields.put("itemId", String.valueOf(order.getItemId()));
+        fields.put("price", order.getPrice().toPlainString());
+        fields.put("orderTime", String.valueOf(order.getOrderTime()
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+
+        redisUtil.set(CacheConstants.FLASH_SALE_ORDER_PREFIX + order.getOrderId(), order,
+                CacheConstants.FLASH_SALE_ORDER_EXPIRE);
+        stringRedisTemplate.opsForStream().add(
+                StreamRecords.newRecord().in(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY).ofMap(fields));
+    }
+
+    /**
+     * 获取排队中的订单
+     *
+     * @param orderId 订单ID
+     * @return 排队中的订单，已写库或不存在时返回null
+     */
+    public FlashSaleOrder getQueuedOrder(String orderId) {
+        Object cached = redisUtil.get(CacheConstants.FLASH_SALE_ORDER_PREFIX + orderId);
+        if (cached == null) {
+            return null;
+        }
+        FlashSaleOrder order = (FlashSaleOrder) cached;
+        order.setStatus(ORDER_STATUS_QUEUED);
+        return order;
+    }
+
+    /**
+     * 获取商品仍在Stream中排队（未写库或写库后尚未确认）的订单ID
+     *
+     * @param itemId 商品ID
+     * @return 订单ID列表
+     */
+    public List<String> getQueuedOrderIds(Integer itemId) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .range(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY, Range.unbounded());
+        if (CollectionUtils.isEmpty(records)) {
+            return Collections.emptyList();
+        }
+        String field = String.valueOf(itemId);
+        Set<String> orderIds = new LinkedHashSet<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Object orderId = record.getValue().get("orderId");
+            if (orderId != null && field.equals(String.valueOf(record.getValue().get("itemId")))) {
+                orderIds.add(orderId.toString());
+            }
+        }
+        return new ArrayList<>(orderIds);
+    }
+
+    /**
+     * 消费循环
+     */
+    private void consumeLoop() {
+        while (running) {
+            try {
+                int handled = consumeBatch();
+                if (handled == 0) {
+                    Thread.sleep(pollInterval);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // 写库失败时不ACK，回到待确认消息重新处理
+                log.error("秒杀订单批量持久化失败，稍后重试: {}", e.getMessage(), e);
+                recovering = true;
+                try {
+                    Thread.sleep(Math.max(pollInterval, 1000));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取并持久化一批订单
+     *
+     * @return 本批处理的消息数量
+     */
+    private int consumeBatch() {
+        if (System.currentTimeMillis() - lastClaimTime >= claimInterval) {
+            lastClaimTime = System.currentTimeMillis();
+            claimIdlePending();
+        }
+
+        // 先处理本消费者已读取但未确认的消息，处理完后再读取新消息
+        ReadOffset offset = recovering ? ReadOffset.from("0") : ReadOffset.lastConsumed();
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                Consumer.from(CacheConstants.FLASH_SALE_ORDER_GROUP, consumerName),
+                StreamReadOptions.empty().count(batchSize),
+                StreamOffset.create(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY, offset));
+
+        if (CollectionUtils.isEmpty(records)) {
+            if (recovering) {
+                recovering = false;
+            }
+            return 0;
+        }
+
+        // 同一批次内按订单ID去重
+        Map<String, FlashSaleOrder> orders = new LinkedHashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            FlashSaleOrder order = toOrder(record.getValue());
+            if (order != null) {
+                orders.putIfAbsent(order.getOrderId(), order);
+            } else {
+                log.warn("忽略无法解析的秒杀订单消息: {}", record.getId());
+            }
+        }
+
+        if (!orders.isEmpty()) {
+            int inserted = flashSaleOrderMapper.batchInsertIgnore(new ArrayList<>(orders.values()));
+            log.debug("秒杀订单批量写库，消息数: {}, 新增订单数: {}", records.size(), inserted);
+        }
+
+        RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        stringRedisTemplate.opsForStream().acknowledge(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY,
+                CacheConstants.FLASH_SALE_ORDER_GROUP, ids);
+        stringRedisTemplate.opsForStream().delete(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY, ids);
+
+        // 订单已写库，清除排队状态
+        String[] statusKeys = orders.keySet().stream()
+                .map(orderId -> CacheConstants.FLASH_SALE_ORDER_PREFIX + orderId)
+                .toArray(String[]::new);
+        redisUtil.del(statusKeys);
+
+        return records.size();
+    }
+
+    /**
+     * 接管其他消费者空闲超时的待确认消息，接管后按本消费者的待确认消息重新处理
+     */
+    private void claimIdlePending() {
+        Long claimed = stringRedisTemplate.execute(flashSaleOrderClaimScript,
+                Collections.singletonList(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY),
+                CacheConstants.FLASH_SALE_ORDER_GROUP, consumerName,
+                String.valueOf(claimIdle), String.valueOf(batchSize));
+        if (claimed != null && claimed > 0) {
+            log.warn("接管其他消费者遗留的秒杀订单消息 {} 条", claimed);
+            recovering = true;
+        }
+    }
+
+    /**
+     * 消息转换为订单
+     *
+     * @param fields 消息内容
+     * @return 订单，格式不正确时返回null
+     */
+    private FlashSaleOrder toOrder(Map<Object, Object> fields) {
+        try {
+            Object orderId = fields.get("orderId");
+            if (orderId == null) {
+                return null;
+            }
+            LocalDateTime orderTime = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(Long.parseLong(fields.get("orderTime").toString())), ZoneId.systemDefault());
+
+            FlashSaleOrder order = new FlashSaleOrder();
+            order.setOrderId(orderId.toString());
+            order.setUserId(Integer.valueOf(fields.get("userId").toString()));
+            order.setItemId(Integer.valueOf(fields.get("itemId").toString()));
+            order.setPrice(new BigDecimal(fields.get("price").toString()));
+            order.setOrderTime(orderTime);
+            order.setStatus(1); // 已下单
+            order.setCreateTime(orderTime);
+            order.setUpdateTime(orderTime);
+            return order;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 创建消费者组，Stream不存在时先写入一条初始化消息
+     */
+    private void createGroupIfAbsent() {
+        try {
+            if (!redisUtil.hasKey(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY)) {
+                stringRedisTemplate.opsForStream().add(StreamRecords.newRecord()
+                        .in(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY)
+                        .ofMap(Collections.singletonMap("init", "1")));
+            }
+            stringRedisTemplate.opsForStream().createGroup(CacheConstants.FLASH_SALE_ORDER_STREAM_KEY,
+                    ReadOffset.from("0"), CacheConstants.FLASH_SALE_ORDER_GROUP);
+        } catch (Exception e) {
+            // 消费者组已存在（BUSYGROUP）时忽略
+            log.debug("秒杀订单消费者组已存在: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.mapper.FlashSaleOrderMapper;
+import cn.kmbeast.pojo.entity.FlashSaleOrder;
+import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.CollectionUtils;
+
+import javax.annotation.Resource;
+import java.util.*;
+
+/**
+ * 秒杀预占库存超时回收服务
+ * 下单成功后按支付截止时间写入ZSet，定时批量取消超时未支付的订单并归还库存
+ * 订单先在事务中取消，库存归还后才移出ZSet；归还前进程中断时，下一轮按已取消状态重新归还，
+ * 归还脚本校验用户记录中的订单ID，重复归还不会多加库存
+ */
+@Slf4j
+@Service
+public class FlashSaleReservationService {
+
+    /**
+     * 订单状态：已取消
+     */
+    private static final int ORDER_STATUS_CANCELLED = 3;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisUtil redisUtil;
+
+    @Resource
+    private FlashSaleOrderMapper flashSaleOrderMapper;
+
+    @Resource
+    private FlashSaleStockService flashSaleStockService;
+
+    @Resource
+    private FlashSaleStatusService flashSaleStatusService;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 支付超时时间（秒）
+     */
+    @Value("${app.flash-sale.payment-timeout:900}")
+    private long paymentTimeoutSeconds;
+
+    /**
+     * 每批回收的订单数
+     */
+    @Value("${app.flash-sale.reservation-sweep-batch:200}")
+    private int sweepBatchSize;
+
+    /**
+     * 登记订单的支付截止时间
+     *
+     * @param orderId 订单号
+     */
+    public void register(String orderId) {
+        long deadline = System.currentTimeMillis() + paymentTimeoutSeconds * 1000;
+        stringRedisTemplate.opsForZSet().add(CacheConstants.FLASH_SALE_RESERVATION_KEY, orderId, deadline);
+    }
+
+    /**
+     * 订单已支付或已取消，移除支付截止时间
+     *
+     * @param orderId 订单号
+     */
+    public void remove(String orderId) {
+        stringRedisTemplate.opsForZSet().remove(CacheConstants.FLASH_SALE_RESERVATION_KEY, orderId);
+    }
+
+    /**
+     * 回收超时未支付的订单
+     *
+     * @return 本次取消的订单数
+     */
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        int total = 0;
+        while (true) {
+            Set<String> expired = stringRedisTemplate.opsForZSet().rangeByScore(
+                    CacheConstants.FLASH_SALE_RESERVATION_KEY, 0, now, 0, sweepBatchSize);
+            if (CollectionUtils.isEmpty(expired)) {
+                break;
+            }
+            List<String> orderIds = new ArrayList<>(expired);
+
+            // 1. 在一个事务中锁定并取消仍未支付的订单，与支付并发时只有先拿到行锁的一方生效
+            List<FlashSaleOrder> unpaid = transactionTemplate.execute(status -> {
+                List<FlashSaleOrder> locked = flashSaleOrderMapper.selectUnpaidForUpdate(orderIds);
+                if (!locked.isEmpty()) {
+                    List<String> unpaidIds = new ArrayList<>();
+                    for (FlashSaleOrder order : locked) {
+                        unpaidIds.add(order.getOrderId());
+                    }
+                    flashSaleOrderMapper.batchUpdateStatus(unpaidIds, ORDER_STATUS_CANCELLED);
+                }
+                return locked;
+            });
+
+            // 2. 归还本轮及之前中断未归还的已取消订单的库存，并清除用户秒杀记录、订单预占记录
+            List<FlashSaleOrder> cancelled = flashSaleOrderMapper.selectByOrderIdsAndStatus(
+                    orderIds, ORDER_STATUS_CANCELLED);
+            Set<Integer> releasedItems = new HashSet<>();
+            List<String> orderStockKeys = new ArrayList<>();
+            for (FlashSaleOrder order : cancelled) {
+                if (flashSaleStockService.release(order.getItemId(), order.getUserId(), order.getOrderId())) {
+                    releasedItems.add(order.getItemId());
+                }
+                orderStockKeys.add(CacheConstants.FLASH_SALE_ITEM_PREFIX + "order:" + order.getOrderId());
+            }
+            redisUtil.del(orderStockKeys.toArray(new String[0]));
+
+            // 3. 仍在排队写库的订单保留到下一轮，其余订单（已回收、已支付、已取消）移出ZSet
+            List<String> statusKeys = new ArrayList<>();
+            for (String orderId : orderIds) {
+                statusKeys.add(CacheConstants.FLASH_SALE_ORDER_PREFIX + orderId);
+            }
+            List<Object> queued = redisUtil.multiGet(statusKeys);
+            List<Object> finished = new ArrayList<>();
+            for (int i = 0; i < orderIds.size(); i++) {
+                if (queued.get(i) == null) {
+                    finished.add(orderIds.get(i));
+                }
+            }
+            if (!finished.isEmpty()) {
+                stringRedisTemplate.opsForZSet().remove(CacheConstants.FLASH_SALE_RESERVATION_KEY, finished.toArray());
+            }
+
+            // 4. 库存已恢复的商品清除售罄标记和商品缓存
+            for (Integer itemId : releasedItems) {
+                flashSaleStatusService.markAvailable(itemId);
+                redisUtil.del(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
+            }
+
+            total += unpaid.size();
+            if (orderIds.size() < sweepBatchSize || finished.isEmpty()) {
+                break;
+            }
+        }
+
+        if (total > 0) {
+            log.info("回收超时未支付秒杀订单 {} 个", total);
+        }
+        return total;
+    }
+}
@@ -8,9 +8,13 @@ import cn.kmbeast.pojo.api.ApiResult;
 import cn.kmbeast.pojo.api.Result;
 import cn.kmbeast.pojo.dto.query.extend.FlashSaleItemQueryDto;
 import cn.kmbeast.pojo.dto.query.extend.FlashSaleOrderQueryDto;
+import cn.kmbeast.pojo.em.FlashSaleAdmissionStatusEnum;
+import cn.kmbeast.pojo.em.FlashSaleStateEnum;
 import cn.kmbeast.pojo.entity.FlashSaleItem;
 import cn.kmbeast.pojo.entity.FlashSaleOrder;
+import cn.kmbeast.pojo.vo.FlashSaleAdmissionVO;
 import cn.kmbeast.pojo.vo.FlashSaleItemVO;
+import cn.kmbeast.pojo.vo.FlashSaleSoldCountVO;
 import cn.kmbeast.pojo.vo.PageResult;
 import cn.kmbeast.service.FlashSaleService;
 import cn.kmbeast.service.NotificationService;
@@ -52,6 +56,27 @@ public class FlashSaleServiceImpl implements FlashSaleService {
     @Resource
     private RedisUtil redisUtil;
 
+    @Resource
+    private FlashSaleStockService flashSaleStockService;
+
+    @Resource
+    private FlashSaleOrderQueueService flashSaleOrderQueueService;
+
+    @Resource
+    private FlashSaleStatusService flashSaleStatusService;
+
+    @Resource
+    private FlashSaleLifecycleService flashSaleLifecycleService;
+
+    @Resource
+    private FlashSaleReservationService flashSaleReservationService;
+
+    @Resource
+    private FlashSaleStockSyncService flashSaleStockSyncService;
+
+    @Resource
+    private FlashSaleAdmissionService flashSaleAdmissionService;
+
     @Override
     public Result<List<FlashSaleItemVO>> queryFlashSaleItems(FlashSaleItemQueryDto queryDto) {
         try {
@@ -196,10 +221,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
                 log.warn("更新商品缓存失败，但不影响创建过程: {}", cacheEx.getMessage());
             }
 
-            // 如果商品即将开始或已开始，预热库存
-            if (flashSaleItem.getStartTime().isBefore(LocalDateTime.now().plusHours(1))) {
-                preloadItemStock(flashSaleItem.getId(), flashSaleItem.getStock());
-            }
+            // 注册库存预热和状态切换任务
+            flashSaleLifecycleService.reschedule(flashSaleItem.getId());
 
             // 发送秒杀商品发布通知给所有用户
             try {
@@ -244,15 +267,17 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             // 清除缓存
             redisUtil.del(CacheConstants.FLASH_SALE_ITEM_LIST);
             redisUtil.del(CacheConstants.FLASH_SALE_ITEM_PREFIX + flashSaleItem.getId());
+            flashSaleStatusService.invalidate(flashSaleItem.getId());
 
-            // 如果商品即将开始或已开始，刷新库存缓存
-            if (flashSaleItem.getStartTime() != null
-                    && flashSaleItem.getStartTime().isBefore(LocalDateTime.now().plusHours(1))) {
-                if (flashSaleItem.getStock() != null && flashSaleItem.getStock() > 0) {
-                    preloadItemStock(flashSaleItem.getId(), flashSaleItem.getStock());
-                }
+            // 未开始的活动修改库存后删除提前预热的库存，开始时按新库存重新预热
+            if (existingItem.getStatus() == 0 && flashSaleItem.getStock() != null
+                    && !flashSaleItem.getStock().equals(existingItem.getStock())) {
+                flashSaleStockService.delete(flashSaleItem.getId());
             }
 
+            // 活动时间可能变化，重新注册库存预热和状态切换任务
+            flashSaleLifecycleService.reschedule(flashSaleItem.getId());
+
             return ApiResult.success();
         } catch (Exception e) {
             log.error("更新秒杀商品失败: {}", e.getMessage(), e);
@@ -286,7 +311,9 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             // 清除缓存
             redisUtil.del(CacheConstants.FLASH_SALE_ITEM_LIST);
             redisUtil.del(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
-            redisUtil.del(CacheConstants.FLASH_SALE_STOCK_PREFIX + itemId);
+            flashSaleStockService.delete(itemId);
+            flashSaleStatusService.invalidate(itemId);
+            flashSaleLifecycleService.cancel(itemId);
 
             return ApiResult.success();
         } catch (Exception e) {
@@ -296,7 +323,7 @@ public class FlashSaleServiceImpl implements FlashSaleService {
     }
 
     @Override
-    public Result<FlashSaleOrder> flashSale(Integer itemId, Integer userId) {
+    public Result<FlashSaleOrder> flashSale(Integer itemId, Integer userId, String token) {
         if (itemId == null) {
             return ApiResult.error("商品ID不能为空");
         }
@@ -308,115 +335,232 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             }
         }
 
-        // 接口限流 - 使用INCR+EXPIRE组合实现
-        String rateLimitKey = CacheConstants.FLASH_SALE_RATE_LIMIT_PREFIX + userId + ":" + itemId;
-        Long accessCount = redisUtil.incr(rateLimitKey, 1);
-        if (accessCount == 1) {
-            // 设置过期时间，实现滑动窗口
-            redisUtil.expire(rateLimitKey, CacheConstants.FLASH_SALE_RATE_LIMIT_PERIOD);
+        if (!flashSaleAdmissionService.isEnabled()) {
+            return flashSale(itemId, userId);
         }
 
-        if (accessCount > CacheConstants.FLASH_SALE_RATE_LIMIT_COUNT) {
-            return ApiResult.error("请求过于频繁，请稍后再试");
+        // 启用排队放行时，只有持有有效购买令牌的请求才能进入下单流程
+        if (!flashSaleAdmissionService.verify(itemId, userId, token)) {
+            return ApiResult.error("购买资格无效或已过期，请重新排队");
+        }
+        // 下单成功后才核销令牌，限流、库存异常、系统异常等失败时用户可凭原令牌重试
+        Result<FlashSaleOrder> result = flashSale(itemId, userId);
+        if (result.isSuccess()) {
+            flashSaleAdmissionService.consume(itemId, userId, token);
         }
+        return result;
+    }
 
-        try {
-            // 1. 检查秒杀记录，防止重复下单
-            String recordKey = CacheConstants.FLASH_SALE_USER_RECORD_PREFIX + userId + ":" + itemId;
-            if (Boolean.TRUE.equals(redisUtil.hasKey(recordKey))) {
-                return ApiResult.error("您已参与过此秒杀，请勿重复下单");
+    @Override
+    public Result<FlashSaleAdmissionVO> enterQueue(Integer itemId, Integer userId) {
+        if (itemId == null) {
+            return ApiResult.error("商品ID不能为空");
+        }
+
+        if (userId == null) {
+            userId = LocalThreadHolder.getUserId();
+            if (userId == null) {
+                return ApiResult.error("用户未登录");
             }
+        }
 
-            // 2. 从缓存获取秒杀商品信息
-            String itemKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId;
-            Object itemObj = redisUtil.get(itemKey);
-            FlashSaleItemVO itemVO;
+        // 未开始、已结束、已售罄的商品不进入队列
+        FlashSaleStateEnum state = flashSaleStatusService.getState(itemId);
+        Result<FlashSaleAdmissionVO> rejected = rejectByState(state);
+        if (rejected != null) {
+            return rejected;
+        }
 
-            if (itemObj == null) {
-                // 缓存未命中，从数据库获取
-                itemVO = flashSaleItemMapper.getFlashSaleItemById(itemId);
+        try {
+            if (state == null) {
+                FlashSaleItemVO itemVO = getFlashSaleItemInfo(itemId);
                 if (itemVO == null) {
                     return ApiResult.error("秒杀商品不存在");
                 }
-                processFlashSaleItem(itemVO);
-            } else {
-                itemVO = (FlashSaleItemVO) itemObj;
-                processFlashSaleItem(itemVO);
+                rejected = rejectByState(flashSaleStatusService.register(itemVO));
+                if (rejected != null) {
+                    return rejected;
+                }
             }
 
-            // 3. 校验秒杀活动状态
-            if (itemVO.getStatus() != 1) {
-                return ApiResult.error("秒杀活动未开始或已结束");
+            // 未启用排队放行时直接放行，客户端无需携带令牌
+            if (!flashSaleAdmissionService.isEnabled()) {
+                FlashSaleAdmissionVO admission = new FlashSaleAdmissionVO();
+                admission.setItemId(itemId);
+                admission.setStatus(FlashSaleAdmissionStatusEnum.ADMITTED.getStatus());
+                admission.setPosition(0L);
+                admission.setEstimatedWait(0L);
+                return ApiResult.success(admission);
             }
+            return ApiResult.success(flashSaleAdmissionService.enter(itemId, userId));
+        } catch (Exception e) {
+            log.error("秒杀排队失败: {}", e.getMessage(), e);
+            return ApiResult.error("排队失败，请稍后再试");
+        }
+    }
 
-            // 4. 使用Redis SETNX实现分布式锁，防止并发问题
-            String lockKey = CacheConstants.FLASH_SALE_LOCK_PREFIX + itemId;
-            boolean acquiredLock = redisUtil.set(lockKey, userId, CacheConstants.FLASH_SALE_LOCK_EXPIRE);
+    @Override
+    public Result<FlashSaleOrder> flashSale(Integer itemId, Integer userId) {
+        if (itemId == null) {
+            return ApiResult.error("商品ID不能为空");
+        }
 
-            if (!acquiredLock) {
-                return ApiResult.error("系统繁忙，请稍后再试");
+        if (userId == null) {
+            userId = LocalThreadHolder.getUserId();
+            if (userId == null) {
+                return ApiResult.error("用户未登录");
             }
+        }
 
-            try {
-                // 5. 检查库存 - 确保Redis中存在库存记录
-                String stockKey = CacheConstants.FLASH_SALE_STOCK_PREFIX + itemId;
-                Object stockObj = redisUtil.get(stockKey);
-
-                // 如果Redis中没有库存数据，先预热库存
-                if (stockObj == null) {
-                    log.warn("商品 {} 缺少Redis库存数据，执行库存预热", itemId);
-                    FlashSaleItem item = flashSaleItemMapper.selectById(itemId);
-                    if (item != null && item.getStock() > 0) {
-                        preloadItemStock(itemId, item.getStock());
-                    } else {
-                        return ApiResult.error("商品库存数据异常");
-                    }
-                }
-
-                // 使用Redis的DECR原子操作扣减库存
-                long remainingStock = redisUtil.decr(stockKey, 1);
+        // 0. 先查本地状态表，未开始、已结束、已售罄的商品直接拒绝，不产生任何网络调用
+        FlashSaleStateEnum state = flashSaleStatusService.getState(itemId);
+        Result<FlashSaleOrder> rejected = rejectByState(state);
+        if (rejected != null) {
+            return rejected;
+        }
 
-                if (remainingStock < 0) {
-                    // 库存不足，恢复库存
-                    redisUtil.incr(stockKey, 1);
-                    return ApiResult.error("秒杀商品已售罄");
-                }
+        try {
+            // 1. 获取秒杀商品信息，缓存未命中时才访问数据库
+            FlashSaleItemVO itemVO = getFlashSaleItemInfo(itemId);
+            if (itemVO == null) {
+                return ApiResult.error("秒杀商品不存在");
+            }
 
-                // 预占库存成功，检查数据库库存状态
-                FlashSaleItem dbItem = flashSaleItemMapper.selectById(itemId);
-                if (dbItem != null && dbItem.getStock() > 0) {
-                    // 预占库存，但数据库库存暂不更新，在支付完成后再实际扣减
-                    if (remainingStock == 0) {
-                        log.info("商品 {} 预占库存已满，暂时标记为售罄状态", itemId);
-
-                        // 标记商品为售罄状态，但不实际减库存
-                        // 创建临时售罄标记，用于前端显示
-                        String tempSoldOutKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":tempSoldOut";
-                        redisUtil.set(tempSoldOutKey, true, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
-                    }
+            // 2. 本节点首次访问该商品时登记本地状态并校验
+            if (state == null) {
+                rejected = rejectByState(flashSaleStatusService.register(itemVO));
+                if (rejected != null) {
+                    return rejected;
                 }
+            }
 
-                // 创建订单
-                FlashSaleOrder order = createOrder(userId, itemVO);
+            // 3. 执行秒杀脚本：限流、防重、库存校验、扣减库存、记录用户一次完成，无需分布式锁
+            String orderId = generateOrderId(userId, itemId);
+            long result = flashSaleStockService.tryAcquire(itemId, userId, orderId);
+            if (result == FlashSaleStockService.RESULT_NOT_PRELOADED) {
+                // 下单路径上不按数据库库存重建，数据库库存未扣除待支付订单，由预热任务恢复
+                log.error("商品 {} 缺少Redis库存数据，请重新预热库存", itemId);
+                return ApiResult.error("商品库存数据异常");
+            }
 
-                // 记录用户秒杀信息，防止重复下单
-                redisUtil.set(recordKey, order.getOrderId(), CacheConstants.FLASH_SALE_USER_RECORD_EXPIRE);
+            // 单key模式下扣减到0即预占库存已满；分段模式下所有分段均耗尽时才判定售罄
+            boolean bucketMode = flashSaleStockService.isBucketMode();
+            if ((!bucketMode && result == 0) || (bucketMode && result == FlashSaleStockService.RESULT_SOLD_OUT)) {
+                // 预占库存已满，创建临时售罄标记，用于前端显示
+                log.info("商品 {} 预占库存已满，暂时标记为售罄状态", itemId);
+                String tempSoldOutKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":tempSoldOut";
+                redisUtil.set(tempSoldOutKey, true, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
+                flashSaleStatusService.markSoldOut(itemId);
+            }
 
-                // 记录订单对应的预占库存，用于支付或取消时使用
-                String orderStockKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + "order:" + order.getOrderId();
-                redisUtil.set(orderStockKey, itemId, CacheConstants.FLASH_SALE_ORDER_EXPIRE);
+            if (result == FlashSaleStockService.RESULT_RATE_LIMITED) {
+                return ApiResult.error("请求过于频繁，请稍后再试");
+            }
+            if (result == FlashSaleStockService.RESULT_DUPLICATE) {
+                return ApiResult.error("您已参与过此秒杀，请勿重复下单");
+            }
+            if (result == FlashSaleStockService.RESULT_SOLD_OUT) {
+                // 本地售罄标记复核后仍售罄，重新标记
+                flashSaleStatusService.markSoldOut(itemId);
+                return ApiResult.error("秒杀商品已售罄");
+            }
+            if (result < 0) {
+                return ApiResult.error("商品库存数据异常");
+            }
 
-                return ApiResult.success(order);
-            } finally {
-                // 释放锁
-                redisUtil.del(lockKey);
+            // 4. 创建订单并投递到持久化队列，失败时归还预占库存并清除用户记录
+            FlashSaleOrder order;
+            try {
+                order = createOrder(orderId, userId, itemVO);
+            } catch (Exception e) {
+                flashSaleStockService.release(itemId, userId, orderId);
+                flashSaleStatusService.markAvailable(itemId);
+                throw e;
             }
+
+            // 记录订单对应的预占库存，用于支付或取消时使用
+            String orderStockKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + "order:" + order.getOrderId();
+            redisUtil.set(orderStockKey, itemId, CacheConstants.FLASH_SALE_ORDER_EXPIRE);
+
+            // 登记支付截止时间，超时未支付由回收任务取消并归还库存
+            flashSaleReservationService.register(order.getOrderId());
+
+            return ApiResult.success(order);
         } catch (Exception e) {
             log.error("秒杀下单失败: {}", e.getMessage(), e);
             return ApiResult.error("秒杀下单失败");
         }
     }
 
+    /**
+     * 获取秒杀商品基础信息，优先读取商品缓存
+     *
+     * @param itemId 商品ID
+     * @return 商品信息，不存在时返回null
+     */
+    private FlashSaleItemVO getFlashSaleItemInfo(Integer itemId) {
+        String itemKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId;
+        Object itemObj = redisUtil.get(itemKey);
+        if (itemObj != null) {
+            return (FlashSaleItemVO) itemObj;
+        }
+
+        FlashSaleItemVO itemVO = flashSaleItemMapper.getFlashSaleItemById(itemId);
+        if (itemVO != null) {
+            redisUtil.set(itemKey, itemVO, CacheConstants.FLASH_SALE_ITEM_EXPIRE);
+        }
+        return itemVO;
+    }
+
+    /**
+     * 根据本地状态判断是否直接拒绝秒杀请求
+     *
+     * @param state 商品本地状态
+     * @return 拒绝结果，可以继续下单时返回null
+     */
+    private <T> Result<T> rejectByState(FlashSaleStateEnum state) {
+        if (state == FlashSaleStateEnum.NOT_STARTED || state == FlashSaleStateEnum.ENDED) {
+            return ApiResult.error("秒杀活动未开始或已结束");
+        }
+        if (state == FlashSaleStateEnum.SOLD_OUT) {
+            return ApiResult.error("秒杀商品已售罄");
+        }
+        return null;
+    }
+
+    @Override
+    public Result<FlashSaleOrder> queryOrderStatus(String orderId, Integer userId) {
+        if (!StringUtils.hasText(orderId)) {
+            return ApiResult.error("订单ID不能为空");
+        }
+
+        if (userId == null) {
+            userId = LocalThreadHolder.getUserId();
+            if (userId == null) {
+                return ApiResult.error("用户未登录");
+            }
+        }
+
+        try {
+            // 优先查询排队中的订单，避免轮询时访问数据库
+            FlashSaleOrder order = flashSaleOrderQueueService.getQueuedOrder(orderId);
+            if (order == null) {
+                com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<FlashSaleOrder> queryWrapper = new com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<>();
+                queryWrapper.eq("order_id", orderId);
+                order = flashSaleOrderMapper.selectOne(queryWrapper);
+            }
+
+            if (order == null || !order.getUserId().equals(userId)) {
+                return ApiResult.error("订单不存在");
+            }
+
+            return ApiResult.success(order);
+        } catch (Exception e) {
+            log.error("查询秒杀订单状态失败: {}", e.getMessage(), e);
+            return ApiResult.error("查询秒杀订单状态失败");
+        }
+    }
+
     @Override
     public Result<List<FlashSaleOrder>> queryUserOrders(Integer userId) {
         if (userId == null) {
@@ -486,6 +630,9 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             FlashSaleOrder order = flashSaleOrderMapper.selectOne(queryWrapper);
 
             if (order == null) {
+                if (flashSaleOrderQueueService.getQueuedOrder(orderId) != null) {
+                    return ApiResult.error("订单处理中，请稍后再试");
+                }
                 return ApiResult.error("订单不存在");
             }
 
@@ -511,18 +658,16 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             }
 
             try {
-                // 取消订单
-                order.setStatus(3); // 设置为已取消
-                order.setUpdateTime(LocalDateTime.now());
-                flashSaleOrderMapper.updateById(order);
-
-                // 恢复Redis库存
-                String stockKey = CacheConstants.FLASH_SALE_STOCK_PREFIX + order.getItemId();
-                redisUtil.incr(stockKey, 1);
+                // 取消订单，订单已被支付或超时回收时不再取消
+                if (flashSaleOrderMapper.updateStatusIfMatch(orderId, 1, 3) == 0) {
+                    return ApiResult.error("订单状态不允许取消");
+                }
+                // 恢复Redis库存并删除用户秒杀记录，归还后才移出回收队列，归还前中断时由回收任务补偿
+                flashSaleStockService.release(order.getItemId(), userId, orderId);
+                flashSaleReservationService.remove(orderId);
 
                 // 清除临时售罄标记（如果有）
-                String tempSoldOutKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":tempSoldOut";
-                redisUtil.del(tempSoldOutKey);
+                flashSaleStatusService.markAvailable(itemId);
 
                 // 清除商品缓存，确保获取最新状态
                 redisUtil.del(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
@@ -533,10 +678,6 @@ public class FlashSaleServiceImpl implements FlashSaleService {
 
                 log.info("订单 {} 取消成功，释放商品 {} 的预占库存", orderId, itemId);
 
-                // 删除用户秒杀记录
-                String recordKey = CacheConstants.FLASH_SALE_USER_RECORD_PREFIX + userId + ":" + order.getItemId();
-                redisUtil.del(recordKey);
-
                 return ApiResult.success();
             } finally {
                 // 释放锁
@@ -569,6 +710,9 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             FlashSaleOrder order = flashSaleOrderMapper.selectOne(queryWrapper);
 
             if (order == null) {
+                if (flashSaleOrderQueueService.getQueuedOrder(orderId) != null) {
+                    return ApiResult.error("订单处理中，请稍后再试");
+                }
                 return ApiResult.error("订单不存在");
             }
 
@@ -594,8 +738,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             }
 
             try {
-                // 验证商品是否仍在活动期间内
-                FlashSaleItem item = flashSaleItemMapper.selectById(itemId);
+                // 验证商品是否仍在活动期间内，优先读取商品缓存
+                FlashSaleItemVO item = getFlashSaleItemInfo(itemId);
                 if (item == null) {
                     return ApiResult.error("商品不存在，无法支付");
                 }
@@ -615,49 +759,19 @@ public class FlashSaleServiceImpl implements FlashSaleService {
                     }
                 }
 
-                // 更新订单状态
-                order.setStatus(2); // 设置为已支付
-                order.setUpdateTime(LocalDateTime.now());
-                flashSaleOrderMapper.updateById(order);
-
-                // 实际扣减数据库库存
-                flashSaleItemMapper.decreaseStock(itemId);
-
-                // 获取当前商品信息，检查是否售罄
-                FlashSaleItem updatedItem = flashSaleItemMapper.selectById(itemId);
-                if (updatedItem != null && updatedItem.getStock() <= 0) {
-                    log.info("商品 {} 已售罄", itemId);
-
-                    // 设置售罄标记
-                    String soldOutKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":soldOut";
-                    redisUtil.set(soldOutKey, true, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
-
-                    // 库存为0时自动结束秒杀活动
-                    if (updatedItem.getStatus() == 1) {
-                        log.info("商品 {} 库存为0，自动将状态修改为已结束", itemId);
-                        updatedItem.setStatus(2); // 设置为已结束状态
-                        updatedItem.setUpdateTime(LocalDateTime.now());
-                        flashSaleItemMapper.updateById(updatedItem);
-
-                        // 清除缓存，确保状态更新立即生效
-                        redisUtil.del(CacheConstants.FLASH_SALE_ITEM_LIST);
-                        redisUtil.del(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
-                    }
+                // 更新订单状态，订单已超时回收或已取消时支付失败
+                if (flashSaleOrderMapper.updateStatusIfMatch(orderId, 1, 2) == 0) {
+                    return ApiResult.error("订单已超时取消，无法支付");
                 }
+                flashSaleReservationService.remove(orderId);
 
-                // 更新销量缓存
-                String soldCountKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":soldCount";
-                Object soldCountObj = redisUtil.get(soldCountKey);
-                int currentSoldCount = soldCountObj != null ? Integer.parseInt(soldCountObj.toString()) : 0;
-                redisUtil.set(soldCountKey, currentSoldCount + 1, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
+                // 记录库存增量并原子累加销量，数据库库存由同步任务批量扣减，售罄时自动结束活动
+                flashSaleStockSyncService.recordPayment(itemId);
 
                 // 清除临时数据
                 String orderStockKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + "order:" + order.getOrderId();
                 redisUtil.del(orderStockKey);
 
-                // 清除订单相关商品缓存，确保查询到的是最新状态
-                redisUtil.del(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
-
                 log.info("订单 {} 支付成功，商品 {}", orderId, itemId);
 
                 return ApiResult.success();
@@ -674,21 +788,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
     @Override
     public Result<Void> preloadFlashSaleStock() {
         try {
-            // 查询所有秒杀商品ID
-            List<Integer> itemIds = flashSaleItemMapper.getAllItemIds();
-            if (CollectionUtils.isEmpty(itemIds)) {
-                return ApiResult.success();
-            }
-
-            int count = 0;
-            for (Integer itemId : itemIds) {
-                FlashSaleItem item = flashSaleItemMapper.selectById(itemId);
-                if (item != null && item.getStartTime().isBefore(LocalDateTime.now().plusHours(1))) {
-                    preloadItemStock(itemId, item.getStock());
-                    count++;
-                }
-            }
-
+            // 只查询未结束的商品，预热提前量以内的商品库存
+            int count = flashSaleLifecycleService.preloadUpcoming();
             log.info("预热秒杀库存完成，共预热 {} 个商品", count);
             return ApiResult.success();
         } catch (Exception e) {
@@ -700,42 +801,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
     @Override
     public Result<Void> refreshFlashSaleStatus() {
         try {
-            LocalDateTime now = LocalDateTime.now();
-            List<FlashSaleItem> items = flashSaleItemMapper.selectList(null);
-
-            for (FlashSaleItem item : items) {
-                // 更新商品状态
-                int oldStatus = item.getStatus();
-                int newStatus;
-
-                if (now.isBefore(item.getStartTime())) {
-                    newStatus = 0; // 未开始
-                } else if (now.isAfter(item.getEndTime())) {
-                    newStatus = 2; // 已结束
-                } else {
-                    newStatus = 1; // 进行中
-                }
-
-                // 状态变化时更新数据库和缓存
-                if (oldStatus != newStatus) {
-                    item.setStatus(newStatus);
-                    item.setUpdateTime(now);
-                    flashSaleItemMapper.updateById(item);
-
-                    // 更新缓存
-                    String itemKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + item.getId();
-                    redisUtil.del(itemKey);
-
-                    // 对于新开始的活动，预热库存
-                    if (newStatus == 1 && oldStatus == 0) {
-                        preloadItemStock(item.getId(), item.getStock());
-                    }
-                }
-            }
-
-            // 清除商品列表缓存，强制刷新
-            redisUtil.del(CacheConstants.FLASH_SALE_ITEM_LIST);
-
+            // 状态由生命周期任务按活动时间精确切换，这里只重新加载未结束的商品进行校准
+            flashSaleLifecycleService.reload();
             return ApiResult.success();
         } catch (Exception e) {
             log.error("刷新秒杀商品状态失败: {}", e.getMessage(), e);
@@ -744,37 +811,26 @@ public class FlashSaleServiceImpl implements FlashSaleService {
     }
 
     /**
-     * 预热单个商品库存到Redis
+     * 秒杀进行中重新预热单个商品库存到Redis，扣除待支付订单和尚未同步的已支付数量
      *
      * @param itemId 商品ID
-     * @param stock  库存数量
+     * @param stock  数据库库存数量
      */
     private void preloadItemStock(Integer itemId, Integer stock) {
-        // 确保库存不为负数
-        int safeStock = Math.max(0, stock);
-
-        // 检查Redis中是否已有库存数据
-        String stockKey = CacheConstants.FLASH_SALE_STOCK_PREFIX + itemId;
-        Object existingStock = redisUtil.get(stockKey);
-
-        if (existingStock != null) {
-            log.info("商品 {} 库存已存在于Redis中，当前值: {}", itemId, existingStock);
-        } else {
-            redisUtil.set(stockKey, safeStock, CacheConstants.FLASH_SALE_STOCK_EXPIRE);
-            log.info("预热商品 {} 库存: {}", itemId, safeStock);
-        }
+        flashSaleStockService.preload(itemId, flashSaleStockSyncService.getAvailableStock(itemId, stock));
     }
 
     /**
      * 创建秒杀订单
      *
-     * @param userId 用户ID
-     * @param item   秒杀商品信息
+     * @param orderId 订单ID
+     * @param userId  用户ID
+     * @param item    秒杀商品信息
      * @return 订单信息
      */
-    private FlashSaleOrder createOrder(Integer userId, FlashSaleItemVO item) {
+    private FlashSaleOrder createOrder(String orderId, Integer userId, FlashSaleItemVO item) {
         FlashSaleOrder order = new FlashSaleOrder();
-        order.setOrderId(generateOrderId(userId, item.getId()));
+        order.setOrderId(orderId);
         order.setUserId(userId);
         order.setItemId(item.getId());
         order.setPrice(item.getFlashPrice());
@@ -783,8 +839,13 @@ public class FlashSaleServiceImpl implements FlashSaleService {
         order.setCreateTime(LocalDateTime.now());
         order.setUpdateTime(LocalDateTime.now());
 
-        // 保存订单
-        flashSaleOrderMapper.insert(order);
+        // 订单写入持久化队列，由消费线程批量写库；队列不可用时降级为同步写库
+        try {
+            flashSaleOrderQueueService.enqueue(order);
+        } catch (Exception e) {
+            log.warn("秒杀订单入队失败，降级为同步写库: {}", e.getMessage());
+            flashSaleOrderMapper.insert(order);
+        }
 
         return order;
     }
@@ -802,6 +863,7 @@ public class FlashSaleServiceImpl implements FlashSaleService {
 
     /**
      * 处理秒杀商品列表的额外信息
+     * 整页商品需要的Redis数据通过一次MGET读取，缓存中缺失的销量通过一次分组SQL补齐
      *
      * @param items 商品列表
      */
@@ -810,9 +872,70 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             return;
         }
 
+        LocalDateTime now = LocalDateTime.now();
+        Integer userId = LocalThreadHolder.getUserId();
+
+        // 1. 计算剩余时间等本地信息，并收集整页需要读取的key
+        List<String> keys = new ArrayList<>();
+        List<FlashSaleItemKeys> itemKeysList = new ArrayList<>(items.size());
         for (FlashSaleItemVO item : items) {
-            processFlashSaleItem(item);
+            itemKeysList.add(prepareFlashSaleItem(item, now, userId, keys));
         }
+
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        // 2. 一次MGET读取用户秒杀记录、销量缓存和库存
+        List<Object> values;
+        try {
+            values = redisUtil.multiGet(keys);
+        } catch (Exception e) {
+            // 如果读取失败，设置销量为0
+            log.error("批量读取秒杀商品缓存失败: {}", e.getMessage(), e);
+            for (FlashSaleItemKeys itemKeys : itemKeysList) {
+                if (itemKeys.soldCountIndex >= 0) {
+                    itemKeys.item.setSoldCount(0);
+                }
+            }
+            return;
+        }
+
+        // 3. 填充可购买状态和销量，记录需要回写的销量缓存和需要查库的商品
+        Map<String, Object> soldCountCache = new HashMap<>();
+        List<FlashSaleItemVO> missingItems = new ArrayList<>();
+        for (FlashSaleItemKeys itemKeys : itemKeysList) {
+            fillFlashSaleItem(itemKeys, values, soldCountCache, missingItems);
+        }
+
+        // 4. Redis中既无销量也无库存的商品，一次分组查询数据库
+        if (!missingItems.isEmpty()) {
+            Map<Integer, Integer> soldCounts = new HashMap<>();
+            try {
+                List<Integer> itemIds = new ArrayList<>();
+                for (FlashSaleItemVO item : missingItems) {
+                    itemIds.add(item.getId());
+                }
+                for (FlashSaleSoldCountVO soldCountVO : flashSaleOrderMapper.countOrdersByItemIds(itemIds)) {
+                    soldCounts.put(soldCountVO.getItemId(), soldCountVO.getSoldCount());
+                }
+            } catch (Exception e) {
+                log.error("查询商品销量失败: {}", e.getMessage());
+                soldCounts = null;
+            }
+            for (FlashSaleItemVO item : missingItems) {
+                if (soldCounts == null) {
+                    item.setSoldCount(0); // 出错时设置销量为0
+                    continue;
+                }
+                int soldCount = soldCounts.getOrDefault(item.getId(), 0);
+                item.setSoldCount(soldCount);
+                soldCountCache.put(getSoldCountKey(item.getId()), soldCount);
+            }
+        }
+
+        // 5. 通过管道一次回写计算出的销量缓存
+        redisUtil.multiSet(soldCountCache, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
     }
 
     /**
@@ -824,9 +947,21 @@ public class FlashSaleServiceImpl implements FlashSaleService {
         if (item == null) {
             return;
         }
+        processFlashSaleItems(Collections.singletonList(item));
+    }
 
-        LocalDateTime now = LocalDateTime.now();
-        Integer userId = LocalThreadHolder.getUserId();
+    /**
+     * 计算商品的本地信息，并登记该商品需要读取的key
+     *
+     * @param item   商品信息
+     * @param now    当前时间
+     * @param userId 当前用户ID
+     * @param keys   整页需要读取的key
+     * @return 商品key在整页key中的位置
+     */
+    private FlashSaleItemKeys prepareFlashSaleItem(FlashSaleItemVO item, LocalDateTime now, Integer userId,
+                                                   List<String> keys) {
+        FlashSaleItemKeys itemKeys = new FlashSaleItemKeys(item);
 
         // 计算剩余秒数
         if (now.isBefore(item.getStartTime())) {
@@ -840,89 +975,106 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             item.setRemainSeconds(Duration.between(now, item.getEndTime()).getSeconds());
         }
 
-        // 检查用户是否可购买
-        boolean canBuy = true;
-        if (userId != null) {
-            String recordKey = CacheConstants.FLASH_SALE_USER_RECORD_PREFIX + userId + ":" + item.getId();
-            canBuy = !Boolean.TRUE.equals(redisUtil.hasKey(recordKey));
+        // 商品状态取自本地状态表，售罄标记无需再读取Redis
+        FlashSaleStateEnum state = flashSaleStatusService.getOrRegister(item);
+
+        // 只有进行中的商品才需要查询用户秒杀记录
+        item.setCanBuy(state == FlashSaleStateEnum.NOT_STARTED
+                || (state == FlashSaleStateEnum.LIVE && userId == null));
+        if (state == FlashSaleStateEnum.LIVE && userId != null) {
+            itemKeys.recordIndex = keys.size();
+            keys.add(flashSaleStockService.getUserRecordKey(userId, item.getId()));
         }
-        item.setCanBuy(canBuy);
 
-        // 获取已售数量 - 优化计算方式，优先使用Redis库存计算，减少数据库访问
-        try {
-            // 首先检查是否存在售罄标记
-            String soldOutKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + item.getId() + ":soldOut";
-            Boolean isSoldOut = (Boolean) redisUtil.get(soldOutKey);
-
-            // 存在临时售罄标记，也认为可能售罄
-            String tempSoldOutKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + item.getId() + ":tempSoldOut";
-            Boolean isTempSoldOut = (Boolean) redisUtil.get(tempSoldOutKey);
-
-            // 如果已售罄，确保显示库存为0
-            if (Boolean.TRUE.equals(isSoldOut) || Boolean.TRUE.equals(isTempSoldOut)) {
-                if (item.getStock() > 0) {
-                    log.debug("商品 {} 已标记为售罄，但库存仍显示为 {}，设置为0", item.getId(), item.getStock());
-                    item.setStock(0);
-                }
-            }
+        // 未开始的商品不会产生销量
+        if (state == FlashSaleStateEnum.NOT_STARTED) {
+            item.setSoldCount(0);
+            return itemKeys;
+        }
 
-            // 1. 先尝试从Redis缓存获取商品销量
-            String soldCountKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + item.getId() + ":soldCount";
-            Object soldCountObj = redisUtil.get(soldCountKey);
-
-            if (soldCountObj != null) {
-                // 如果Redis中有销量数据，直接使用
-                item.setSoldCount(Integer.parseInt(soldCountObj.toString()));
-            } else {
-                // 2. 如果Redis中没有销量数据，从Redis库存计算
-                String stockKey = CacheConstants.FLASH_SALE_STOCK_PREFIX + item.getId();
-                Object stockObj = redisUtil.get(stockKey);
-
-                if (stockObj != null) {
-                    // 如果Redis中有库存数据，计算销量
-                    int currentStock = Integer.parseInt(stockObj.toString());
-                    int originalStock = item.getStock() + (item.getSoldCount() == null ? 0 : item.getSoldCount());
-                    if (originalStock <= 0) {
-                        // 避免数据异常情况
-                        originalStock = Math.max(1, item.getStock()); // 确保总库存至少为1
-                    }
+        // 如果已售罄，确保显示库存为0
+        if (flashSaleStatusService.isSoldOut(item.getId()) && item.getStock() > 0) {
+            log.debug("商品 {} 已标记为售罄，但库存仍显示为 {}，设置为0", item.getId(), item.getStock());
+            item.setStock(0);
+        }
 
-                    // 确保销量不为负数且不超过原始库存
-                    int soldCount = Math.max(0, originalStock - currentStock);
-                    // 如果库存为0且已有销量，则认为已售罄
-                    if (currentStock == 0 && item.getStatus() == 1) {
-                        soldCount = originalStock; // 全部售罄
-                    }
+        itemKeys.soldCountIndex = keys.size();
+        keys.add(getSoldCountKey(item.getId()));
+        List<String> stockKeys = flashSaleStockService.getStockKeys(item.getId());
+        itemKeys.stockIndex = keys.size();
+        itemKeys.stockKeyCount = stockKeys.size();
+        keys.addAll(stockKeys);
+        return itemKeys;
+    }
 
-                    item.setSoldCount(soldCount);
-
-                    // 将计算出的销量缓存到Redis
-                    redisUtil.set(soldCountKey, soldCount, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
-                } else {
-                    // 3. 如果Redis中没有库存数据，检查是否需要预热库存
-                    if (item.getStatus() == 1) { // 如果活动正在进行中，应该预热库存
-                        log.warn("秒杀活动 {} 正在进行中但Redis中无库存数据，执行库存预热", item.getId());
-                        preloadItemStock(item.getId(), item.getStock());
-                        item.setSoldCount(0); // 新预热的库存，销量为0
-                    } else {
-                        // 4. 最后尝试从数据库获取销量（这里可能抛出异常，但已在try-catch中处理）
-                        try {
-                            int soldCount = flashSaleOrderMapper.countOrdersByItemId(item.getId());
-                            item.setSoldCount(soldCount);
-                            // 将数据库查询的销量缓存到Redis
-                            redisUtil.set(soldCountKey, soldCount, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
-                        } catch (Exception e) {
-                            log.error("查询商品销量失败: {}", e.getMessage());
-                            item.setSoldCount(0); // 出错时设置销量为0
-                        }
-                    }
-                }
+    /**
+     * 根据批量读取的结果填充商品的可购买状态和销量
+     *
+     * @param itemKeys       商品key在整页key中的位置
+     * @param values         批量读取的结果
+     * @param soldCountCache 需要回写的销量缓存
+     * @param missingItems   需要从数据库查询销量的商品
+     */
+    private void fillFlashSaleItem(FlashSaleItemKeys itemKeys, List<Object> values,
+                                   Map<String, Object> soldCountCache, List<FlashSaleItemVO> missingItems) {
+        FlashSaleItemVO item = itemKeys.item;
+        if (itemKeys.recordIndex >= 0) {
+            item.setCanBuy(values.get(itemKeys.recordIndex) == null);
+        }
+        if (itemKeys.soldCountIndex < 0) {
+            return;
+        }
+
+        // 1. 先尝试从Redis缓存获取商品销量
+        Object soldCountObj = values.get(itemKeys.soldCountIndex);
+        if (soldCountObj != null) {
+            item.setSoldCount(Integer.parseInt(soldCountObj.toString()));
+            return;
+        }
+
+        // 2. 如果Redis中没有销量数据，从Redis库存计算
+        Long stockObj = flashSaleStockService.sumStock(
+                values.subList(itemKeys.stockIndex, itemKeys.stockIndex + itemKeys.stockKeyCount));
+        if (stockObj != null) {
+            int currentStock = stockObj.intValue();
+            int originalStock = item.getStock() + (item.getSoldCount() == null ? 0 : item.getSoldCount());
+            if (originalStock <= 0) {
+                // 避免数据异常情况
+                originalStock = Math.max(1, item.getStock()); // 确保总库存至少为1
             }
-        } catch (Exception e) {
-            // 如果所有方法都失败，设置销量为0
-            log.error("处理商品销量信息失败: {}", e.getMessage(), e);
-            item.setSoldCount(0);
+
+            // 确保销量不为负数且不超过原始库存
+            int soldCount = Math.max(0, originalStock - currentStock);
+            // 如果库存为0且已有销量，则认为已售罄
+            if (currentStock == 0 && item.getStatus() == 1) {
+                soldCount = originalStock; // 全部售罄
+            }
+
+            item.setSoldCount(soldCount);
+            soldCountCache.put(getSoldCountKey(item.getId()), soldCount);
+            return;
         }
+
+        // 3. 如果Redis中没有库存数据，检查是否需要预热库存
+        if (item.getStatus() == 1) { // 如果活动正在进行中，应该预热库存
+            log.warn("秒杀活动 {} 正在进行中但Redis中无库存数据，执行库存预热", item.getId());
+            preloadItemStock(item.getId(), item.getStock());
+            item.setSoldCount(0); // 新预热的库存，销量为0
+            return;
+        }
+
+        // 4. 最后从数据库获取销量，整页统一查询
+        missingItems.add(item);
+    }
+
+    /**
+     * 获取商品销量缓存key
+     *
+     * @param itemId 商品ID
+     * @return 销量缓存key
+     */
+    private String getSoldCountKey(Integer itemId) {
+        return CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":soldCount";
     }
 
     /**
@@ -1008,6 +1160,9 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             // 清除缓存
             redisUtil.del(CacheConstants.FLASH_SALE_ITEM_LIST);
             redisUtil.del(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
+            flashSaleStatusService.markEnded(itemId);
+            flashSaleLifecycleService.cancel(itemId);
+            flashSaleStockSyncService.audit(itemId);
 
             log.info("手动结束秒杀活动 ID: {}", itemId);
 
@@ -1047,6 +1202,9 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             // 清除缓存
             redisUtil.del(CacheConstants.FLASH_SALE_ITEM_LIST);
             redisUtil.del(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
+            flashSaleStatusService.markEnded(itemId);
+            flashSaleLifecycleService.cancel(itemId);
+            flashSaleStockSyncService.audit(itemId);
 
             log.info("强制结束秒杀活动 ID: {}", itemId);
 
@@ -1097,4 +1255,24 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             throw e;
         }
     }
+
+    /**
+     * 单个商品所需key在整页批量读取结果中的位置
+     */
+    private static class FlashSaleItemKeys {
+
+        private final FlashSaleItemVO item;
+
+        private int recordIndex = -1;
+
+        private int soldCountIndex = -1;
+
+        private int stockIndex = -1;
+
+        private int stockKeyCount;
+
+        private FlashSaleItemKeys(FlashSaleItemVO item) {
+            this.item = item;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,268 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.pojo.em.FlashSaleStateEnum;
+import cn.kmbeast.pojo.vo.FlashSaleItemVO;
+import cn.kmbeast.utils.CacheConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 秒杀商品本地状态表
+ * 每个节点在内存中维护商品的活动时间、结束与售罄标记，未开始、已结束、已售罄的请求无需访问Redis即可拒绝
+ * 状态变化通过Redis发布订阅广播到所有节点；开始与结束按活动时间在本地计算，不依赖消息
+ */
+@Slf4j
+@Service
+public class FlashSaleStatusService implements MessageListener {
+
+    private static final String ACTION_SOLD_OUT = "SOLD_OUT";
+
+    private static final String ACTION_AVAILABLE = "AVAILABLE";
+
+    private static final String ACTION_ENDED = "ENDED";
+
+    private static final String ACTION_INVALIDATE = "INVALIDATE";
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 本地售罄标记的有效期（秒），到期后放行一次请求到Redis复核，避免错过恢复库存的消息后一直拒绝
+     */
+    @Value("${app.flash-sale.sold-out-recheck:60}")
+    private long soldOutRecheckSeconds;
+
+    private final Map<Integer, ItemState> states = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this,
+                new ChannelTopic(CacheConstants.FLASH_SALE_STATUS_CHANNEL));
+    }
+
+    /**
+     * 获取商品当前状态，仅读取本地状态表
+     *
+     * @param itemId 商品ID
+     * @return 商品状态，本节点尚未加载该商品时返回null
+     */
+    public FlashSaleStateEnum getState(Integer itemId) {
+        ItemState state = states.get(itemId);
+        return state == null ? null : state.resolve(LocalDateTime.now());
+    }
+
+    /**
+     * 获取商品当前状态，本节点尚未加载时根据商品信息登记
+     *
+     * @param item 商品信息
+     * @return 商品状态
+     */
+    public FlashSaleStateEnum getOrRegister(FlashSaleItemVO item) {
+        FlashSaleStateEnum state = getState(item.getId());
+        return state != null ? state : register(item);
+    }
+
+    /**
+     * 根据商品信息登记本地状态，同时一次性读取Redis中的售罄标记
+     *
+     * @param item 商品信息
+     * @return 商品状态
+     */
+    public FlashSaleStateEnum register(FlashSaleItemVO item) {
+        ItemState state = new ItemState(item.getStartTime(), item.getEndTime());
+        state.ended = Integer.valueOf(2).equals(item.getStatus());
+        try {
+            String prefix = CacheConstants.FLASH_SALE_ITEM_PREFIX + item.getId();
+            List<Object> markers = redisTemplate.opsForValue().multiGet(
+                    Arrays.asList(prefix + ":soldOut", prefix + ":tempSoldOut"));
+            if (markers != null && markers.stream().anyMatch(Boolean.TRUE::equals)) {
+                state.soldOutUntil = soldOutDeadline();
+            }
+        } catch (Exception e) {
+            log.warn("读取商品 {} 售罄标记失败: {}", item.getId(), e.getMessage());
+        }
+        states.put(item.getId(), state);
+        return state.resolve(LocalDateTime.now());
+    }
+
+    /**
+     * 商品是否被标记为售罄（不区分活动阶段）
+     *
+     * @param itemId 商品ID
+     * @return 是否售罄
+     */
+    public boolean isSoldOut(Integer itemId) {
+        ItemState state = states.get(itemId);
+        return state != null && state.isSoldOut();
+    }
+
+    /**
+     * 标记商品售罄并通知其他节点
+     *
+     * @param itemId 商品ID
+     */
+    public void markSoldOut(Integer itemId) {
+        ItemState state = states.get(itemId);
+        if (state != null && state.isSoldOut()) {
+            return;
+        }
+        applySoldOut(itemId);
+        publish(ACTION_SOLD_OUT, itemId);
+    }
+
+    /**
+     * 商品库存已归还，清除本地与Redis中的临时售罄标记并通知其他节点
+     *
+     * @param itemId 商品ID
+     */
+    public void markAvailable(Integer itemId) {
+        redisTemplate.delete(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":tempSoldOut");
+        applyAvailable(itemId);
+        publish(ACTION_AVAILABLE, itemId);
+    }
+
+    /**
+     * 标记商品活动已结束并通知其他节点
+     *
+     * @param itemId 商品ID
+     */
+    public void markEnded(Integer itemId) {
+        applyEnded(itemId);
+        publish(ACTION_ENDED, itemId);
+    }
+
+    /**
+     * 商品信息变更，清除各节点的本地状态，下次访问时重新加载
+     *
+     * @param itemId 商品ID
+     */
+    public void invalidate(Integer itemId) {
+        states.remove(itemId);
+        publish(ACTION_INVALIDATE, itemId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        if (index <= 0) {
+            return;
+        }
+        try {
+            String action = body.substring(0, index);
+            Integer itemId = Integer.valueOf(body.substring(index + 1));
+            switch (action) {
+                case ACTION_SOLD_OUT:
+                    applySoldOut(itemId);
+                    break;
+                case ACTION_AVAILABLE:
+                    applyAvailable(itemId);
+                    break;
+                case ACTION_ENDED:
+                    applyEnded(itemId);
+                    break;
+                case ACTION_INVALIDATE:
+                    states.remove(itemId);
+                    break;
+                default:
+                    log.debug("忽略未知的秒杀状态消息: {}", body);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("秒杀状态消息格式错误: {}", body);
+        }
+    }
+
+    private void applySoldOut(Integer itemId) {
+        ItemState state = states.get(itemId);
+        if (state != null) {
+            state.soldOutUntil = soldOutDeadline();
+        }
+    }
+
+    private void applyAvailable(Integer itemId) {
+        ItemState state = states.get(itemId);
+        if (state != null) {
+            state.soldOutUntil = 0;
+        }
+    }
+
+    private void applyEnded(Integer itemId) {
+        ItemState state = states.get(itemId);
+        if (state != null) {
+            state.ended = true;
+        }
+    }
+
+    private long soldOutDeadline() {
+        return System.currentTimeMillis() + soldOutRecheckSeconds * 1000;
+    }
+
+    /**
+     * 广播状态变化，失败时只影响其他节点的本地状态，不影响当前请求
+     *
+     * @param action 状态动作
+     * @param itemId 商品ID
+     */
+    private void publish(String action, Integer itemId) {
+        try {
+            stringRedisTemplate.convertAndSend(CacheConstants.FLASH_SALE_STATUS_CHANNEL, action + ":" + itemId);
+        } catch (Exception e) {
+            log.warn("广播商品 {} 秒杀状态 {} 失败: {}", itemId, action, e.getMessage());
+        }
+    }
+
+    /**
+     * 单个商品的本地状态
+     */
+    private static final class ItemState {
+
+        private final LocalDateTime startTime;
+
+        private final LocalDateTime endTime;
+
+        private volatile boolean ended;
+
+        private volatile long soldOutUntil;
+
+        private ItemState(LocalDateTime startTime, LocalDateTime endTime) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        private boolean isSoldOut() {
+            return soldOutUntil > System.currentTimeMillis();
+        }
+
+        private FlashSaleStateEnum resolve(LocalDateTime now) {
+            if (ended || now.isAfter(endTime)) {
+                return FlashSaleStateEnum.ENDED;
+            }
+            if (now.isBefore(startTime)) {
+                return FlashSaleStateEnum.NOT_STARTED;
+            }
+            return isSoldOut() ? FlashSaleStateEnum.SOLD_OUT : FlashSaleStateEnum.LIVE;
+        }
+    }
+}
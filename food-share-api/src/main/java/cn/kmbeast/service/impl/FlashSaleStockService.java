@@ -0,0 +1,308 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀库存服务
+ * 负责Redis库存的预热、扣减与归还，支持两种库存布局：
+ * 1. 单key模式（默认）：商品库存保存在一个key中
+ * 2. 分段模式：库存拆分到N个分段key，每段使用独立hash tag分散到集群不同节点，
+ *    用户按哈希固定到一个分段，分段耗尽后依次向相邻分段借用库存，所有分段均耗尽才判定售罄
+ */
+@Slf4j
+@Service
+public class FlashSaleStockService {
+
+    /**
+     * 扣减结果：重复下单
+     */
+    public static final long RESULT_DUPLICATE = -1;
+
+    /**
+     * 扣减结果：请求过于频繁
+     */
+    public static final long RESULT_RATE_LIMITED = -2;
+
+    /**
+     * 扣减结果：已售罄
+     */
+    public static final long RESULT_SOLD_OUT = -3;
+
+    /**
+     * 扣减结果：库存未预热
+     */
+    public static final long RESULT_NOT_PRELOADED = -4;
+
+    /**
+     * 扣减结果：用户所属分段库存耗尽（仅脚本内部使用）
+     */
+    private static final long RESULT_BUCKET_EMPTY = -5;
+
+    @Resource
+    private RedisUtil redisUtil;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSaleScript;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSaleBucketTakeScript;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSaleReleaseScript;
+
+    /**
+     * 库存分段数量，小于等于1时使用单key模式
+     * 修改后需重新预热库存
+     */
+    @Value("${app.flash-sale.stock-buckets:1}")
+    private int stockBuckets;
+
+    /**
+     * 是否启用分段库存
+     */
+    public boolean isBucketMode() {
+        return stockBuckets > 1;
+    }
+
+    /**
+     * 预热商品库存，库存已存在时不覆盖
+     * 使用SET NX写入，与并发的预热或扣减交错时不会把已售出的库存写回
+     *
+     * @param itemId 商品ID
+     * @param stock  库存数量
+     */
+    public void preload(Integer itemId, Integer stock) {
+        // 确保库存不为负数
+        int safeStock = Math.max(0, stock);
+
+        if (!isBucketMode()) {
+            if (setStockIfAbsent(CacheConstants.getFlashSaleStockKey(itemId), safeStock)) {
+                log.info("预热商品 {} 库存: {}", itemId, safeStock);
+            } else {
+                log.info("商品 {} 库存已存在于Redis中，跳过预热", itemId);
+            }
+            return;
+        }
+
+        // 平均分配库存，余数分配给前面的分段
+        // 各分段位于不同slot，无法用一个脚本写入，逐段SET NX：已存在的分段不会被覆盖，
+        // 并发预热按同一库存计算出的分段值相同，先写入的生效
+        int base = safeStock / stockBuckets;
+        int remainder = safeStock % stockBuckets;
+        int created = 0;
+        for (int bucket = 0; bucket < stockBuckets; bucket++) {
+            int bucketStock = base + (bucket < remainder ? 1 : 0);
+            if (setStockIfAbsent(CacheConstants.getFlashSaleStockBucketKey(itemId, bucket), bucketStock)) {
+                created++;
+            }
+        }
+        if (created == 0) {
+            log.info("商品 {} 分段库存已存在于Redis中，跳过预热", itemId);
+        } else {
+            log.info("预热商品 {} 分段库存: {}，分段数: {}，本次写入分段: {}", itemId, safeStock, stockBuckets, created);
+        }
+    }
+
+    /**
+     * 扣减库存：限流、防重、库存校验、扣减、记录用户
+     *
+     * @param itemId  商品ID
+     * @param userId  用户ID
+     * @param orderId 预生成的订单ID
+     * @return >=0为扣减后所在分段的剩余库存，负数为失败原因
+     */
+    public long tryAcquire(Integer itemId, Integer userId, String orderId) {
+        if (!isBucketMode()) {
+            return executeFlashSaleScript(
+                    CacheConstants.getFlashSaleStockKey(itemId),
+                    CacheConstants.getFlashSaleUserRecordKey(userId, itemId),
+                    CacheConstants.getFlashSaleRateLimitKey(userId, itemId),
+                    orderId, false);
+        }
+
+        int home = getHomeBucket(itemId, userId);
+        long result = executeFlashSaleScript(
+                CacheConstants.getFlashSaleStockBucketKey(itemId, home),
+                CacheConstants.getFlashSaleUserRecordKey(userId, itemId, home),
+                CacheConstants.getFlashSaleRateLimitKey(userId, itemId, home),
+                orderId, true);
+        if (result != RESULT_BUCKET_EMPTY) {
+            return result;
+        }
+
+        // 所属分段已耗尽，脚本已写入用户记录占位，依次向相邻分段借用库存
+        for (int i = 1; i < stockBuckets; i++) {
+            int bucket = (home + i) % stockBuckets;
+            Long taken = stringRedisTemplate.execute(flashSaleBucketTakeScript,
+                    Arrays.asList(CacheConstants.getFlashSaleStockBucketKey(itemId, bucket)));
+            if (taken != null && taken >= 0) {
+                return taken;
+            }
+        }
+
+        // 所有分段均已耗尽才判定售罄，释放用户记录占位
+        redisUtil.del(getUserRecordKey(userId, itemId));
+        return RESULT_SOLD_OUT;
+    }
+
+    /**
+     * 归还一件库存并清除用户秒杀记录，用于取消订单、支付超时回收或下单失败补偿
+     * 两步在同一脚本中完成，只有用户记录仍指向该订单时才归还，重复调用不会多归还库存
+     *
+     * @param itemId  商品ID
+     * @param userId  用户ID
+     * @param orderId 订单ID
+     * @return 是否归还了库存
+     */
+    public boolean release(Integer itemId, Integer userId, String orderId) {
+        // 分段模式下库存可互换，统一归还到用户所属分段
+        String stockKey = isBucketMode()
+                ? CacheConstants.getFlashSaleStockBucketKey(itemId, getHomeBucket(itemId, userId))
+                : CacheConstants.getFlashSaleStockKey(itemId);
+        Long result = stringRedisTemplate.execute(flashSaleReleaseScript,
+                Arrays.asList(stockKey, getUserRecordKey(userId, itemId)), orderId);
+        return result != null && result >= 0;
+    }
+
+    /**
+     * 获取Redis中的剩余库存
+     *
+     * @param itemId 商品ID
+     * @return 剩余库存（分段模式为各分段之和），未预热时返回null
+     */
+    public Long getRemainingStock(Integer itemId) {
+        if (!isBucketMode()) {
+            Object stockObj = redisUtil.get(CacheConstants.getFlashSaleStockKey(itemId));
+            return stockObj == null ? null : Long.parseLong(stockObj.toString());
+        }
+
+        return sumStock(redisTemplate.opsForValue().multiGet(getStockKeys(itemId)));
+    }
+
+    /**
+     * 汇总库存key的取值
+     *
+     * @param values 与{@link #getStockKeys(Integer)}顺序一致的库存值
+     * @return 剩余库存，全部不存在时返回null
+     */
+    public Long sumStock(List<Object> values) {
+        if (values == null) {
+            return null;
+        }
+        long total = 0;
+        boolean found = false;
+        for (Object value : values) {
+            if (value != null) {
+                total += Long.parseLong(value.toString());
+                found = true;
+            }
+        }
+        return found ? total : null;
+    }
+
+    /**
+     * 删除商品的Redis库存
+     *
+     * @param itemId 商品ID
+     */
+    public void delete(Integer itemId) {
+        List<String> keys = getStockKeys(itemId);
+        redisUtil.del(keys.toArray(new String[0]));
+    }
+
+    /**
+     * 获取用户秒杀记录key
+     *
+     * @param userId 用户ID
+     * @param itemId 商品ID
+     * @return 用户秒杀记录key
+     */
+    public String getUserRecordKey(Integer userId, Integer itemId) {
+        if (isBucketMode()) {
+            return CacheConstants.getFlashSaleUserRecordKey(userId, itemId, getHomeBucket(itemId, userId));
+        }
+        return CacheConstants.getFlashSaleUserRecordKey(userId, itemId);
+    }
+
+    /**
+     * 获取商品全部库存key
+     *
+     * @param itemId 商品ID
+     * @return 库存key列表
+     */
+    public List<String> getStockKeys(Integer itemId) {
+        List<String> keys = new ArrayList<>();
+        if (!isBucketMode()) {
+            keys.add(CacheConstants.getFlashSaleStockKey(itemId));
+            return keys;
+        }
+        for (int bucket = 0; bucket < stockBuckets; bucket++) {
+            keys.add(CacheConstants.getFlashSaleStockBucketKey(itemId, bucket));
+        }
+        return keys;
+    }
+
+    /**
+     * 库存key不存在时写入库存，值为纯数字字符串，与Lua脚本的读写格式一致
+     *
+     * @param stockKey 库存key
+     * @param stock    库存数量
+     * @return 是否写入
+     */
+    private boolean setStockIfAbsent(String stockKey, int stock) {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(stockKey,
+                String.valueOf(stock), CacheConstants.FLASH_SALE_STOCK_EXPIRE, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 计算用户所属分段
+     *
+     * @param itemId 商品ID
+     * @param userId 用户ID
+     * @return 分段序号
+     */
+    private int getHomeBucket(Integer itemId, Integer userId) {
+        return Math.floorMod(userId * 31 + itemId, stockBuckets);
+    }
+
+    /**
+     * 执行秒杀Lua脚本
+     *
+     * @param stockKey   库存key
+     * @param recordKey  用户记录key
+     * @param limitKey   限流key
+     * @param orderId    预生成的订单ID
+     * @param bucketMode 是否分段模式
+     * @return 脚本返回值
+     */
+    private long executeFlashSaleScript(String stockKey, String recordKey, String limitKey,
+                                        String orderId, boolean bucketMode) {
+        Long result = stringRedisTemplate.execute(flashSaleScript,
+                Arrays.asList(stockKey, recordKey, limitKey),
+                orderId,
+                String.valueOf(CacheConstants.FLASH_SALE_USER_RECORD_EXPIRE),
+                String.valueOf(CacheConstants.FLASH_SALE_RATE_LIMIT_PERIOD),
+                String.valueOf(CacheConstants.FLASH_SALE_RATE_LIMIT_COUNT),
+                bucketMode ? "1" : "0");
+        return result == null ? RESULT_NOT_PRELOADED : result;
+    }
+}
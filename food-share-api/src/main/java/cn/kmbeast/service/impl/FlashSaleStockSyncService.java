@@ -0,0 +1,297 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.mapper.FlashSaleItemMapper;
+import cn.kmbeast.mapper.FlashSaleOrderMapper;
+import cn.kmbeast.pojo.entity.FlashSaleItem;
+import cn.kmbeast.pojo.vo.FlashSaleSoldCountVO;
+import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.*;
+
+/**
+ * 秒杀库存同步服务
+ * 秒杀进行中以Redis为准：支付时只在Redis中记录库存增量，由定时任务按批次合并写入flash_sale_item
+ * 每个批次带批次号，与库存更新在同一事务中写入批次表，重复提交的批次不会重复扣减
+ * 活动结束时对账，按Redis剩余库存修复数据库库存和销量缓存
+ * 批次在独立事务中提交后才删除Redis中的同步批次，调用方事务回滚不会丢失已支付的增量
+ */
+@Slf4j
+@Service
+public class FlashSaleStockSyncService {
+
+    /**
+     * 批次hash中保存批次号的field
+     */
+    private static final String BATCH_FIELD = "_batch";
+
+    /**
+     * 订单状态：已下单（待支付）
+     */
+    private static final int ORDER_STATUS_UNPAID = 1;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisUtil redisUtil;
+
+    @Resource
+    private FlashSaleItemMapper flashSaleItemMapper;
+
+    @Resource
+    private FlashSaleOrderMapper flashSaleOrderMapper;
+
+    @Resource
+    private FlashSaleStockService flashSaleStockService;
+
+    @Resource
+    private FlashSaleStatusService flashSaleStatusService;
+
+    @Resource
+    private FlashSaleOrderQueueService flashSaleOrderQueueService;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 批次写库使用独立事务，不加入调用方的事务
+     */
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSalePaidScript;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSaleStockSyncScript;
+
+    @Resource
+    private DefaultRedisScript<Long> flashSaleStockSyncDoneScript;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 记录一次支付：累加待同步的库存增量，销量缓存原子加1
+     *
+     * @param itemId 商品ID
+     */
+    public void recordPayment(Integer itemId) {
+        stringRedisTemplate.execute(flashSalePaidScript,
+                Arrays.asList(CacheConstants.FLASH_SALE_STOCK_DELTA_KEY, getSoldCountKey(itemId)),
+                String.valueOf(itemId));
+    }
+
+    /**
+     * 计算秒杀进行中可重新预热的库存
+     * 数据库库存只在已支付增量同步后才扣减，需减去待支付订单和尚未同步的已支付数量，
+     * 同步中的批次可能已写库，重复扣除只会少放出库存，不会超卖
+     *
+     * @param itemId 商品ID
+     * @param stock  数据库库存
+     * @return 可预热的库存
+     */
+    public int getAvailableStock(Integer itemId, int stock) {
+        int unpaid = flashSaleOrderMapper.countOrdersByItemIdAndStatus(itemId, ORDER_STATUS_UNPAID);
+        String field = String.valueOf(itemId);
+        long unsynced = parseDelta(stringRedisTemplate.opsForHash().get(CacheConstants.FLASH_SALE_STOCK_DELTA_KEY, field))
+                + parseDelta(stringRedisTemplate.opsForHash().get(CacheConstants.FLASH_SALE_STOCK_SYNCING_KEY, field));
+        return (int) Math.max(0, stock - unpaid - unsynced);
+    }
+
+    /**
+     * 将待同步的库存增量批量写入数据库
+     *
+     * @return 本批次同步的商品数量
+     */
+    public int flush() {
+        Long pending = stringRedisTemplate.execute(flashSaleStockSyncScript,
+                Arrays.asList(CacheConstants.FLASH_SALE_STOCK_DELTA_KEY, CacheConstants.FLASH_SALE_STOCK_SYNCING_KEY),
+                UUID.randomUUID().toString());
+        if (pending == null || pending == 0) {
+            return 0;
+        }
+
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(CacheConstants.FLASH_SALE_STOCK_SYNCING_KEY);
+        Object batchId = entries.remove(BATCH_FIELD);
+        if (batchId == null) {
+            // 批次已被其他节点同步完成
+            return 0;
+        }
+
+        List<FlashSaleSoldCountVO> deltas = new ArrayList<>();
+        List<Integer> itemIds = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            FlashSaleSoldCountVO delta = new FlashSaleSoldCountVO();
+            delta.setItemId(Integer.valueOf(entry.getKey().toString()));
+            delta.setSoldCount(Integer.valueOf(entry.getValue().toString()));
+            deltas.add(delta);
+            itemIds.add(delta.getItemId());
+        }
+
+        Boolean applied = transactionTemplate.execute(status -> {
+            if (flashSaleItemMapper.insertStockSyncBatch(batchId.toString()) == 0) {
+                return false;
+            }
+            if (!deltas.isEmpty()) {
+                flashSaleItemMapper.batchDecreaseStock(deltas);
+            }
+            return true;
+        });
+        stringRedisTemplate.execute(flashSaleStockSyncDoneScript,
+                Collections.singletonList(CacheConstants.FLASH_SALE_STOCK_SYNCING_KEY), batchId.toString());
+
+        if (!Boolean.TRUE.equals(applied) || deltas.isEmpty()) {
+            return 0;
+        }
+
+        // 数据库库存已变化，清除商品缓存
+        List<String> cacheKeys = new ArrayList<>();
+        cacheKeys.add(CacheConstants.FLASH_SALE_ITEM_LIST);
+        for (Integer itemId : itemIds) {
+            cacheKeys.add(CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
+        }
+        redisUtil.del(cacheKeys.toArray(new String[0]));
+
+        // 库存为0时自动结束秒杀活动
+        for (Integer itemId : flashSaleItemMapper.querySoldOutOngoingIds(itemIds)) {
+            endSoldOut(itemId);
+        }
+
+        log.debug("秒杀库存同步完成，批次: {}, 商品数: {}", batchId, deltas.size());
+        return deltas.size();
+    }
+
+    /**
+     * 活动结束对账：先同步待写库的增量，再核对并修复数据库库存与销量缓存
+     * 在事务中调用时推迟到事务提交后执行，回滚时不对账
+     *
+     * @param itemId 商品ID
+     */
+    public void audit(Integer itemId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doAudit(itemId);
+                }
+            });
+            return;
+        }
+        doAudit(itemId);
+    }
+
+    private void doAudit(Integer itemId) {
+        try {
+            flush();
+            auditItem(itemId);
+        } catch (Exception e) {
+            log.error("秒杀商品 {} 对账失败: {}", itemId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 核对单个商品的库存与销量
+     * 已支付订单已扣减数据库库存，待支付订单和仍在订单Stream中排队的订单只扣减了Redis库存，
+     * 因此数据库库存应等于Redis剩余库存加待支付订单数加排队订单数
+     *
+     * @param itemId 商品ID
+     */
+    private void auditItem(Integer itemId) {
+        FlashSaleItem item = flashSaleItemMapper.selectById(itemId);
+        if (item == null) {
+            return;
+        }
+
+        Long remainingStock = flashSaleStockService.getRemainingStock(itemId);
+        if (remainingStock != null) {
+            int unpaid = countUnpaidAndQueued(itemId);
+            int expectedStock = (int) Math.max(0, remainingStock + unpaid);
+            if (expectedStock != item.getStock()) {
+                log.warn("秒杀商品 {} 库存对账不一致，数据库库存: {}, Redis剩余库存: {}, 待支付及排队订单: {}，按Redis修复为: {}",
+                        itemId, item.getStock(), remainingStock, unpaid, expectedStock);
+                flashSaleItemMapper.updateStock(itemId, expectedStock);
+            }
+        } else {
+            log.info("秒杀商品 {} Redis库存已过期，跳过库存对账", itemId);
+        }
+
+        String soldCountKey = getSoldCountKey(itemId);
+        int soldCount = flashSaleOrderMapper.countOrdersByItemId(itemId);
+        Object cachedSoldCount = redisUtil.get(soldCountKey);
+        if (cachedSoldCount == null || Integer.parseInt(cachedSoldCount.toString()) != soldCount) {
+            if (cachedSoldCount != null) {
+                log.warn("秒杀商品 {} 销量缓存不一致，缓存: {}, 订单统计: {}，已修复", itemId, cachedSoldCount, soldCount);
+            }
+            redisUtil.set(soldCountKey, soldCount, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
+        }
+
+        redisUtil.del(CacheConstants.FLASH_SALE_ITEM_LIST, CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId);
+        log.info("秒杀商品 {} 对账完成", itemId);
+    }
+
+    /**
+     * 统计待支付订单和尚未写库的排队订单
+     * 订单先写库再从Stream删除，先读Stream再查库不会漏计；读取期间已写库的排队订单按订单ID排除，避免重复计数
+     *
+     * @param itemId 商品ID
+     * @return 只扣减了Redis库存的订单数
+     */
+    private int countUnpaidAndQueued(Integer itemId) {
+        List<String> queuedOrderIds = flashSaleOrderQueueService.getQueuedOrderIds(itemId);
+        int unpaid = flashSaleOrderMapper.countOrdersByItemIdAndStatus(itemId, ORDER_STATUS_UNPAID);
+        if (queuedOrderIds.isEmpty()) {
+            return unpaid;
+        }
+        int persisted = flashSaleOrderMapper.selectByOrderIdsAndStatus(queuedOrderIds, ORDER_STATUS_UNPAID).size();
+        return unpaid + queuedOrderIds.size() - persisted;
+    }
+
+    /**
+     * 商品数据库库存扣减到0，设置售罄标记并结束活动
+     *
+     * @param itemId 商品ID
+     */
+    private void endSoldOut(Integer itemId) {
+        log.info("商品 {} 已售罄", itemId);
+        String soldOutKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":soldOut";
+        redisUtil.set(soldOutKey, true, CacheConstants.FLASH_SALE_ITEM_INFO_EXPIRE);
+
+        if (flashSaleItemMapper.advanceStatus(itemId, 2) > 0) {
+            log.info("商品 {} 库存为0，自动将状态修改为已结束", itemId);
+            flashSaleStatusService.markEnded(itemId);
+            auditItem(itemId);
+        }
+    }
+
+    /**
+     * 解析库存增量，不存在时为0
+     */
+    private long parseDelta(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    /**
+     * 获取商品销量缓存key
+     *
+     * @param itemId 商品ID
+     * @return 销量缓存key
+     */
+    private String getSoldCountKey(Integer itemId) {
+        return CacheConstants.FLASH_SALE_ITEM_PREFIX + itemId + ":soldCount";
+    }
+}
@@ -25,10 +25,11 @@ import cn.kmbeast.utils.TextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -53,6 +54,9 @@ public class GourmetServiceImpl implements GourmetService {
     @Resource
     private AsyncService asyncService;
 
+    @Resource
+    private MultiLevelCacheService multiLevelCacheService;
+
     /**
      * 新增
      *
@@ -173,13 +177,13 @@ public class GourmetServiceImpl implements GourmetService {
 
     /**
      * 通过ID查找美食做法信息
-     * 使用单个美食缓存
+     * 已发布且已审核的美食与当前用户无关，使用单个美食缓存；作者查看自己未发布的美食时不走缓存
      *
      * @param id 美食做法ID
      * @return Result<List < GourmetListVO>> 响应结果
      */
     @Override
-    @CacheableGourmet(type = CacheType.SINGLE)
+    @SuppressWarnings("unchecked")
     public Result<List<GourmetVO>> queryById(Integer id) {
         // 1. 参数校验
         if (id == null || id <= 0) {
@@ -192,18 +196,26 @@ public class GourmetServiceImpl implements GourmetService {
             return ApiResult.success("美食不存在", null);
         }
 
-        GourmetQueryDto gourmetQueryDto = new GourmetQueryDto();
-        gourmetQueryDto.setId(id);
-
-        // 先尝试查询已发布且已审核的美食
-        gourmetQueryDto.setIsPublish(PublishEnum.OK_AUDIT.getFlag());
-        gourmetQueryDto.setIsAudit(AuditEnum.OK_AUDIT.getFlag());
-        List<GourmetVO> categoryList = gourmetMapper.query(gourmetQueryDto);
+        // 先尝试查询已发布且已审核的美食，缓存值与原注解缓存一样为响应结果
+        Result<List<GourmetVO>> published = (Result<List<GourmetVO>>) multiLevelCacheService.getUnchecked(
+                CacheConstants.GOURMET_DETAIL_CACHE,
+                MultiLevelCacheService.buildKey(CacheConstants.GOURMET_DETAIL_CACHE, id),
+                CacheConstants.GOURMET_DETAIL_LOCAL_EXPIRE,
+                () -> {
+                    GourmetQueryDto publishedQuery = new GourmetQueryDto();
+                    publishedQuery.setId(id);
+                    publishedQuery.setIsPublish(PublishEnum.OK_AUDIT.getFlag());
+                    publishedQuery.setIsAudit(AuditEnum.OK_AUDIT.getFlag());
+                    List<GourmetVO> gourmetVOS = gourmetMapper.query(publishedQuery);
+                    return CollectionUtils.isEmpty(gourmetVOS) ? null : ApiResult.success(gourmetVOS);
+                },
+                value -> CacheConstants.GOURMET_DETAIL_EXPIRE);
+        List<GourmetVO> categoryList = published == null ? null : published.getData();
 
         // 如果没有找到，且用户已登录，则查询用户自己创建的美食（不限制审核状态）
-        if ((categoryList == null || categoryList.isEmpty()) && LocalThreadHolder.getUserId() != null) {
-            gourmetQueryDto.setIsPublish(null); // 移除发布状态限制
-            gourmetQueryDto.setIsAudit(null); // 移除审核状态限制
+        if (CollectionUtils.isEmpty(categoryList) && LocalThreadHolder.getUserId() != null) {
+            GourmetQueryDto gourmetQueryDto = new GourmetQueryDto();
+            gourmetQueryDto.setId(id);
             gourmetQueryDto.setUserId(LocalThreadHolder.getUserId()); // 只查询当前用户的
             categoryList = gourmetMapper.query(gourmetQueryDto);
         }
@@ -278,4 +290,34 @@ public class GourmetServiceImpl implements GourmetService {
                 localDateTimes);
         return ApiResult.success(chartVOS);
     }
+
+    /**
+     * 按ID批量查询美食做法，依次查询本地缓存、Redis，只有未命中的ID才查询数据库
+     * 结果按传入ID的顺序返回，重复的ID只返回一次，不存在的ID跳过
+     *
+     * @param ids 美食ID
+     * @return List<GourmetVO> 美食做法列表
+     */
+    @Override
+    public List<GourmetVO> getGourmetsByIds(Collection<Integer> ids) {
+        if (CollectionUtils.isEmpty(ids)) {
+            return new ArrayList<>();
+        }
+        Set<Integer> orderedIds = ids.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Integer, Object> found = multiLevelCacheService.getAll(CacheConstants.GOURMET_ITEM_CACHE, orderedIds,
+                CacheConstants.GOURMET_ITEM_LOCAL_EXPIRE,
+                missingIds -> gourmetMapper.queryByIds(missingIds).stream()
+                        .collect(Collectors.toMap(GourmetVO::getId, gourmetVO -> gourmetVO, (a, b) -> a)),
+                CacheConstants.GOURMET_ITEM_EXPIRE);
+        List<GourmetVO> gourmetVOS = new ArrayList<>(found.size());
+        for (Integer id : orderedIds) {
+            Object gourmetVO = found.get(id);
+            if (gourmetVO != null) {
+                gourmetVOS.add((GourmetVO) gourmetVO);
+            }
+        }
+        return gourmetVOS;
+    }
 }
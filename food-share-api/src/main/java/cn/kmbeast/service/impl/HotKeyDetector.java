@@ -0,0 +1,304 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.CountMinSketch;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 热点key探测
+ * MultiLevelCacheService按key读取Redis时按比例采样，计入滑动窗口内的Count-Min Sketch，
+ * 窗口内估计读取次数达到阈值的key提升为热点，并通过Redis发布订阅通知所有节点；
+ * 热点key的值在各节点保存短期本地副本，读取不再访问Redis，防止单个slot被打满
+ * 热点key在本节点的读取降到阈值一半以下时降级
+ * 只用于多级缓存管理的key，这些key只由多级缓存写入和删除：本节点写入或删除时直接清除副本，
+ * 删除在其他节点随多级缓存的失效广播清除，后台刷新写入的新值在其他节点最多延迟副本过期时间；
+ * Lua脚本等其他途径修改的key不经过这里
+ */
+@Slf4j
+@Service
+public class HotKeyDetector implements MessageListener {
+
+    private static final int SKETCH_DEPTH = 4;
+
+    private static final int SKETCH_WIDTH = 4096;
+
+    /**
+     * 滑动窗口分段数
+     */
+    private static final int WINDOW_SLOTS = 5;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    /**
+     * 是否启用热点探测
+     */
+    @Value("${app.cache.hot-key.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 统计窗口（秒）
+     */
+    @Value("${app.cache.hot-key.window:10}")
+    private long window;
+
+    /**
+     * 窗口内读取次数达到该值的key提升为热点
+     */
+    @Value("${app.cache.hot-key.threshold:2000}")
+    private long threshold;
+
+    /**
+     * 读取采样比例
+     */
+    @Value("${app.cache.hot-key.sample-rate:0.1}")
+    private double sampleRate;
+
+    /**
+     * 热点key本地副本过期时间（秒）
+     */
+    @Value("${app.cache.hot-key.local-ttl:2}")
+    private long localTtl;
+
+    /**
+     * 同时存在的热点key上限
+     */
+    @Value("${app.cache.hot-key.max-keys:100}")
+    private int maxKeys;
+
+    /**
+     * 滑动窗口，每段一个Sketch，窗口估计值为各段之和
+     */
+    private final CountMinSketch[] slots = new CountMinSketch[WINDOW_SLOTS];
+
+    private volatile int current;
+
+    /**
+     * 采样后的提升阈值
+     */
+    private long sampledThreshold;
+
+    /**
+     * 当前热点key
+     */
+    private final Map<String, HotKey> hotKeys = new ConcurrentHashMap<>();
+
+    /**
+     * 热点key的本地副本，保存序列化后的值，每次读取重新反序列化，调用方修改返回对象不影响副本
+     */
+    private Cache<String, byte[]> replicas;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    public HotKeyDetector() {
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "hot-key-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < WINDOW_SLOTS; i++) {
+            slots[i] = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        }
+        sampledThreshold = Math.max(1, (long) (threshold * sampleRate));
+        replicas = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(localTtl, TimeUnit.SECONDS)
+                .build();
+        if (!enabled) {
+            return;
+        }
+        redisMessageListenerContainer.addMessageListener(this,
+                new ChannelTopic(CacheConstants.CACHE_HOT_KEY_CHANNEL));
+        cacheInvalidationBus.addHandler(this::invalidateReplicas);
+        long slotMillis = window * 1000 / WINDOW_SLOTS;
+        scheduler.scheduleWithFixedDelay(this::rotate, slotMillis, slotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * 记录一次读取
+     *
+     * @param key 缓存key
+     * @return 是否为热点key
+     */
+    public boolean record(String key) {
+        if (!enabled) {
+            return false;
+        }
+        boolean hot = hotKeys.containsKey(key);
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            slots[current].add(key, 1);
+            if (!hot && estimate(key) >= sampledThreshold) {
+                return promote(key, true);
+            }
+        }
+        return hot;
+    }
+
+    /**
+     * 读取热点key的本地副本，不存在时加载，本节点同一key同时只有一个线程加载
+     *
+     * @param key    缓存key
+     * @param loader 从Redis读取序列化后的值，不存在返回null
+     * @return 序列化后的值
+     */
+    public byte[] getReplica(String key, Function<String, byte[]> loader) {
+        return replicas.get(key, loader);
+    }
+
+    /**
+     * 本节点写入或删除缓存时清除本地副本，其他节点由多级缓存的失效广播清除
+     *
+     * @param key 缓存key
+     */
+    public void invalidate(String key) {
+        replicas.invalidate(key);
+    }
+
+    /**
+     * 清除缓存名称下全部key的本地副本
+     *
+     * @param cacheName 缓存名称
+     */
+    public void invalidateCache(String cacheName) {
+        String prefix = cacheName + ":";
+        replicas.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 当前热点key
+     *
+     * @return 热点key列表，按窗口内估计读取次数降序
+     */
+    public List<Map<String, Object>> getHotKeys() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        hotKeys.forEach((key, hotKey) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", key);
+            item.put("estimatedReads", (long) (estimate(key) / sampleRate));
+            item.put("promotedAt", hotKey.promotedAt);
+            item.put("source", hotKey.remote ? "remote" : "local");
+            item.put("replicated", replicas.getIfPresent(key) != null);
+            result.add(item);
+        });
+        result.sort((a, b) -> Long.compare((Long) b.get("estimatedReads"), (Long) a.get("estimatedReads")));
+        return result;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        promote(new String(message.getBody(), StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * 提升为热点，本节点探测到时通知其他节点
+     *
+     * @return 是否为热点
+     */
+    private boolean promote(String key, boolean detected) {
+        if (hotKeys.containsKey(key)) {
+            return true;
+        }
+        if (hotKeys.size() >= maxKeys) {
+            return false;
+        }
+        if (hotKeys.putIfAbsent(key, new HotKey(System.currentTimeMillis(), !detected)) != null) {
+            return true;
+        }
+        log.info("热点key提升: {}, 来源: {}", key, detected ? "本节点" : "其他节点");
+        if (detected) {
+            scheduler.execute(() -> {
+                try {
+                    stringRedisTemplate.convertAndSend(CacheConstants.CACHE_HOT_KEY_CHANNEL, key);
+                } catch (Exception e) {
+                    log.warn("广播热点key失败: {}, {}", key, e.getMessage());
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * 进入下一个窗口分段，并降级读取已减少的热点key
+     * 提升后至少保持一个完整窗口，避免在阈值附近反复提升降级
+     */
+    private void rotate() {
+        int next = (current + 1) % WINDOW_SLOTS;
+        slots[next].clear();
+        current = next;
+
+        long now = System.currentTimeMillis();
+        hotKeys.forEach((key, hotKey) -> {
+            if (now - hotKey.promotedAt >= window * 1000 && estimate(key) < sampledThreshold / 2) {
+                hotKeys.remove(key, hotKey);
+                replicas.invalidate(key);
+                log.info("热点key降级: {}", key);
+            }
+        });
+    }
+
+    private long estimate(String key) {
+        long sum = 0;
+        for (CountMinSketch slot : slots) {
+            sum += slot.estimate(key);
+        }
+        return sum;
+    }
+
+    private void invalidateReplicas(String cacheName, Collection<String> keys, long version) {
+        if (keys.contains(CacheInvalidationBus.ALL_KEYS)) {
+            invalidateCache(cacheName);
+        } else {
+            replicas.invalidateAll(keys);
+        }
+    }
+
+    /**
+     * 热点key，remote表示由其他节点探测后通知
+     */
+    private static final class HotKey {
+
+        private final long promotedAt;
+
+        private final boolean remote;
+
+        private HotKey(long promotedAt, boolean remote) {
+            this.promotedAt = promotedAt;
+            this.remote = remote;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import cn.kmbeast.pojo.em.InteractionTypeEnum;
 import cn.kmbeast.pojo.em.PublishEnum;
 import cn.kmbeast.pojo.entity.Interaction;
 import cn.kmbeast.pojo.vo.*;
+import cn.kmbeast.service.GourmetService;
 import cn.kmbeast.service.InteractionService;
 import cn.kmbeast.service.RecommendService;
 import cn.kmbeast.service.UserBehaviorService;
@@ -42,11 +43,17 @@ public class InteractionServiceImpl implements InteractionService {
     @Resource
     private GourmetMapper gourmetMapper;
     @Resource
+    private GourmetService gourmetService;
+    @Resource
     private UserBehaviorService userBehaviorService;
     @Resource
     private RecommendService recommendService;
     @Resource
+    private RecommendModelService recommendModelService;
+    @Resource
     private RedisUtil redisUtil;
+    @Resource
+    private MultiLevelCacheService multiLevelCacheService;
 
     /**
      * 查询
@@ -141,6 +148,23 @@ public class InteractionServiceImpl implements InteractionService {
         interaction.setCreateTime(LocalDateTime.now());
         // 新增浏览关系
         interactionMapper.save(interaction);
+        // 浏览数由缓存过期时间吸收，不逐次删除热点美食的缓存
+        if (!InteractionTypeEnum.VIEW.getType().equals(type)) {
+            evictCounterCache(contentId);
+        }
+    }
+
+    /**
+     * 点赞、收藏、评分变化后删除美食详情和单条美食缓存，使其重新从数据库读取
+     * 浏览不调用，浏览数等缓存过期后刷新
+     *
+     * @param contentId 内容ID
+     */
+    private void evictCounterCache(Integer contentId) {
+        multiLevelCacheService.evict(CacheConstants.GOURMET_DETAIL_CACHE,
+                MultiLevelCacheService.buildKey(CacheConstants.GOURMET_DETAIL_CACHE, contentId));
+        multiLevelCacheService.evict(CacheConstants.GOURMET_ITEM_CACHE,
+                MultiLevelCacheService.buildKey(CacheConstants.GOURMET_ITEM_CACHE, contentId));
     }
 
     /**
@@ -172,10 +196,13 @@ public class InteractionServiceImpl implements InteractionService {
                     InteractionTypeEnum.UPVOTE.getType(),
                     contentId,
                     LocalThreadHolder.getUserId());
+            evictCounterCache(contentId);
+            recommendModelService.publishInteraction(LocalThreadHolder.getUserId(), contentId);
             // 代表已经删除了点赞的数据
             return ApiResult.success(0);
         }
         saveOperation(contentId, InteractionTypeEnum.UPVOTE.getType(), "UPVOTE");
+        recommendModelService.publishInteraction(LocalThreadHolder.getUserId(), contentId);
         return ApiResult.success(1);
     }
 
@@ -236,6 +263,8 @@ public class InteractionServiceImpl implements InteractionService {
         interaction.setScore(score);
         interaction.setCreateTime(LocalDateTime.now());
         interactionMapper.save(interaction);
+        evictCounterCache(contentId);
+        recommendModelService.publishInteraction(interaction.getUserId(), contentId);
         // 把当前最新的美食数据传回去
         GourmetQueryDto gourmetQueryDto = new GourmetQueryDto();
         gourmetQueryDto.setId(contentId);
@@ -276,10 +305,13 @@ public class InteractionServiceImpl implements InteractionService {
                     InteractionTypeEnum.COLLECTION.getType(),
                     contentId,
                     LocalThreadHolder.getUserId());
+            evictCounterCache(contentId);
+            recommendModelService.publishInteraction(LocalThreadHolder.getUserId(), contentId);
             // 代表已经删除了收藏的数据
             return ApiResult.success(0);
         }
         saveOperation(contentId, InteractionTypeEnum.COLLECTION.getType(), "COLLECTION");
+        recommendModelService.publishInteraction(LocalThreadHolder.getUserId(), contentId);
         return ApiResult.success(1);
     }
 
@@ -302,7 +334,7 @@ public class InteractionServiceImpl implements InteractionService {
                 .map(InteractionVO::getContentId)
                 .collect(Collectors.toList());
         // 3. 通过这些ID，去拿到对应的美食做法列表数据
-        List<GourmetVO> gourmetVOS = gourmetMapper.queryByIds(gourmetIds);
+        List<GourmetVO> gourmetVOS = gourmetService.getGourmetsByIds(gourmetIds);
         // 转成ListVO出去
         List<GourmetListVO> gourmetListVOS = gourmetVOS.stream()
                 .map(gourmetVO -> new GourmetListVO(
@@ -9,6 +9,7 @@ import cn.kmbeast.pojo.em.PublishEnum;
 import cn.kmbeast.pojo.entity.Gourmet;
 import cn.kmbeast.pojo.vo.GourmetListVO;
 import cn.kmbeast.pojo.vo.GourmetVO;
+import cn.kmbeast.service.GourmetService;
 import cn.kmbeast.service.LocationGourmetService;
 import cn.kmbeast.utils.RedisUtil;
 import cn.kmbeast.utils.TextUtil;
@@ -38,6 +39,9 @@ public class LocationGourmetServiceImpl implements LocationGourmetService {
     @Resource
     private GourmetMapper gourmetMapper;
 
+    @Resource
+    private GourmetService gourmetService;
+
     /**
      * Redis GEO 键名
      */
@@ -81,7 +85,7 @@ public class LocationGourmetServiceImpl implements LocationGourmetService {
                     .collect(Collectors.toList());
 
             // 从数据库获取美食详细信息
-            List<GourmetVO> gourmetVOs = gourmetMapper.queryByIds(gourmetIds);
+            List<GourmetVO> gourmetVOs = gourmetService.getGourmetsByIds(gourmetIds);
 
             // 转换为GourmetListVO并添加距离信息
             List<GourmetListVO> gourmetListVOs = new ArrayList<>();
@@ -1,95 +1,628 @@
 package cn.kmbeast.service.impl;
 
+import cn.kmbeast.utils.CacheConstants;
 import cn.kmbeast.utils.RedisUtil;
-import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson2.JSON;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
 import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 /**
  * 多级缓存服务
- * L1: 本地Caffeine缓存
+ * L1: 本地Caffeine缓存，每个缓存名称独立一份，按名称分别统计；
+ *     保存序列化后的值，每次命中重新反序列化，调用方修改返回对象不影响缓存
  * L2: Redis分布式缓存
+ * 缓存key统一为"缓存名称:参数"，值以对象写入两级缓存（Redis由RedisTemplate序列化），
+ * 空结果使用占位值短时间缓存防止穿透，Redis过期时间随机增加0-20%防止雪崩
+ * Redis中的值带逻辑过期时间，实际过期时间更长；逻辑过期后仍返回旧值，同时在后台刷新一次，请求不会等待回源
+ * 按key读取Redis时交给HotKeyDetector采样，热点key从各节点的短期副本读取
+ * 两级均未命中时通过SingleFlightLoader合并加载，防止热点key过期时大量请求同时回源
+ * 删除缓存时通过CacheInvalidationBus广播到其他节点，本地缓存条目记录加载时的失效版本，只被更新的失效消息清除；
+ * 本节点删除缓存时同步递增本地失效计数，加载开始后计数变化的结果不写入本地缓存
+ * 命中、回源耗时、清除等指标见CacheMetrics
  */
 @Slf4j
 @Service
 public class MultiLevelCacheService {
 
+    /**
+     * 空值缓存过期时间（秒）
+     */
+    public static final long NULL_VALUE_EXPIRE = 300;
+
+    /**
+     * 空值占位
+     */
+    private static final String NULL_VALUE = "NULL_CACHE_PLACEHOLDER";
+
+    /**
+     * 本地缓存中的空值占位
+     */
+    private static final byte[] LOCAL_NULL_VALUE = new byte[0];
+
+    /**
+     * 每个缓存名称的本地缓存最大条数
+     */
+    private static final int LOCAL_MAXIMUM_SIZE = 10000;
+
     @Autowired
     private RedisUtil redisUtil;
 
-    private Cache<String, Object> localCache;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    private SingleFlightLoader singleFlightLoader;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    @Qualifier("cacheWarmupExecutor")
+    private Executor cacheWarmupExecutor;
+
+    /**
+     * 逻辑过期后可继续返回旧值的时间，占逻辑过期时间的比例
+     */
+    @Value("${app.cache.stale-ratio:0.5}")
+    private double staleRatio;
+
+    /**
+     * 本节点正在后台刷新的key
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已创建的缓存，key为缓存名称
+     */
+    private final Map<String, NamedCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存值加载器
+     */
+    @FunctionalInterface
+    public interface ValueLoader {
+        Object load() throws Throwable;
+    }
 
     @PostConstruct
-    public void initLocalCache() {
-        localCache = Caffeine.newBuilder()
-                .maximumSize(10000) // 最大缓存10000个对象
-                .expireAfterWrite(5, TimeUnit.MINUTES) // 写入后5分钟过期
-                .expireAfterAccess(2, TimeUnit.MINUTES) // 访问后2分钟过期
-                .recordStats() // 启用统计
-                .build();
+    public void init() {
+        cacheInvalidationBus.addHandler(this::invalidateLocal);
+    }
 
-        log.info("本地缓存初始化完成");
+    /**
+     * 生成缓存key：无参数时为缓存名称本身，单个简单类型参数直接拼接，其余参数取JSON的MD5
+     *
+     * @param cacheName 缓存名称
+     * @param args      方法参数
+     * @return 缓存key
+     */
+    public static String buildKey(String cacheName, Object... args) {
+        if (args == null || args.length == 0) {
+            return cacheName;
+        }
+        if (args.length == 1 && (args[0] instanceof Number || args[0] instanceof CharSequence)) {
+            return cacheName + ":" + args[0];
+        }
+        String paramMd5 = DigestUtils.md5DigestAsHex(JSON.toJSONString(args).getBytes(StandardCharsets.UTF_8));
+        return cacheName + ":" + paramMd5;
+    }
+
+    /**
+     * 获取缓存数据，依次查询本地缓存、Redis，均未命中时执行加载器并写入两级缓存
+     *
+     * @param cacheName   缓存名称
+     * @param key         缓存key，由buildKey生成
+     * @param localExpire 本地缓存过期时间（秒），仅在该名称的缓存首次创建时生效
+     * @param loader      加载器
+     * @param expireFor   根据加载结果决定逻辑过期时间（秒），返回0表示不缓存；结果为null时按空值缓存
+     * @return 缓存数据
+     */
+    public Object get(String cacheName, String key, long localExpire, ValueLoader loader,
+                      ToLongFunction<Object> expireFor) throws Throwable {
+        return get(cacheName, key, localExpire, loader, expireFor, CacheMetrics.ANNOTATION_NONE);
     }
 
     /**
-     * 获取缓存数据
-     * 先查本地缓存，再查Redis缓存
+     * 获取缓存数据，用于缓存注解
+     *
+     * @param cacheName   缓存名称
+     * @param key         缓存key，由buildKey生成
+     * @param localExpire 本地缓存过期时间（秒），仅在该名称的缓存首次创建时生效
+     * @param loader      加载器
+     * @param expireFor   根据加载结果决定逻辑过期时间（秒），返回0表示不缓存；结果为null时按空值缓存
+     * @param annotation  缓存注解名称，作为指标标签，仅在该名称的缓存首次创建时生效
+     * @return 缓存数据
      */
-    public <T> T get(String key, Class<T> clazz) {
+    public Object get(String cacheName, String key, long localExpire, ValueLoader loader,
+                      ToLongFunction<Object> expireFor, String annotation) throws Throwable {
+        NamedCache cache = getCache(cacheName, localExpire, annotation);
+
         // L1: 本地缓存
-        Object localValue = localCache.getIfPresent(key);
-        if (localValue != null) {
-            log.debug("本地缓存命中: {}", key);
-            return (T) localValue;
+        LocalEntry localEntry = cache.local.getIfPresent(key);
+        if (localEntry != null) {
+            return readLocal(localEntry);
+        }
+
+        // 加载期间本节点有key失效或收到失效消息时不写入本地缓存，避免写入加载前读到的旧数据
+        long stamp = cacheInvalidationBus.currentStamp();
+
+        // L2: Redis缓存，未命中时合并加载，同一key只有一个请求执行加载器
+        Object stored = singleFlightLoader.load(key, cache.meters,
+                () -> readRedis(cache, key, stamp, loader, expireFor),
+                () -> loadAndStore(cache, key, loader, expireFor, stamp));
+        return unwrap(stored);
+    }
+
+    /**
+     * 与get相同，用于加载器不抛出受检异常的业务代码，异常包装为运行时异常
+     *
+     * @param cacheName   缓存名称
+     * @param key         缓存key，由buildKey生成
+     * @param localExpire 本地缓存过期时间（秒）
+     * @param loader      加载器
+     * @param expireFor   根据加载结果决定逻辑过期时间（秒），返回0表示不缓存
+     * @return 缓存数据
+     */
+    public Object getUnchecked(String cacheName, String key, long localExpire, Supplier<?> loader,
+                               ToLongFunction<Object> expireFor) {
+        try {
+            return get(cacheName, key, localExpire, loader::get, expireFor);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 批量获取缓存数据，key为buildKey(cacheName, id)
+     * 依次查询本地缓存、Redis（一次MGET），仍未命中及逻辑过期的ID一次交给批量加载器，加载结果写回两级缓存
+     * 加载结果中没有的ID按空值缓存
+     *
+     * @param cacheName   缓存名称
+     * @param ids         ID集合
+     * @param localExpire 本地缓存过期时间（秒）
+     * @param loader      批量加载器，参数为未命中的ID，返回ID到数据的映射
+     * @param expire      逻辑过期时间（秒）
+     * @return ID到数据的映射，不包含不存在的ID
+     */
+    public <K> Map<K, Object> getAll(String cacheName, Collection<K> ids, long localExpire,
+                                     Function<List<K>, Map<K, ?>> loader, long expire) {
+        NamedCache cache = getCache(cacheName, localExpire, CacheMetrics.ANNOTATION_NONE);
+        Map<K, Object> result = new HashMap<>();
+        long stamp = cacheInvalidationBus.currentStamp();
+
+        // L1: 本地缓存
+        List<K> remoteIds = new ArrayList<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (K id : new LinkedHashSet<>(ids)) {
+            String key = buildKey(cacheName, id);
+            LocalEntry localEntry = cache.local.getIfPresent(key);
+            if (localEntry == null) {
+                remoteIds.add(id);
+                remoteKeys.add(key);
+                continue;
+            }
+            Object value = readLocal(localEntry);
+            if (value != null) {
+                result.put(id, value);
+            }
+        }
+        if (remoteIds.isEmpty()) {
+            return result;
         }
 
         // L2: Redis缓存
-        Object redisValue = redisUtil.get(key);
-        if (redisValue != null) {
-            log.debug("Redis缓存命中: {}", key);
-            T result = JSON.parseObject(redisValue.toString(), clazz);
-            // 回写到本地缓存
-            localCache.put(key, result);
+        List<Object> redisValues;
+        try {
+            redisValues = redisUtil.multiGet(remoteKeys);
+        } catch (Exception e) {
+            log.warn("批量读取Redis缓存失败: {}, {}", cacheName, e.getMessage());
+            redisValues = Collections.nCopies(remoteKeys.size(), null);
+        }
+        long now = System.currentTimeMillis();
+        List<K> missingIds = new ArrayList<>();
+        for (int i = 0; i < remoteIds.size(); i++) {
+            Object redisValue = redisValues.get(i);
+            if (redisValue instanceof CacheEntry) {
+                CacheEntry entry = (CacheEntry) redisValue;
+                // 逻辑过期的条目随本批一起重新加载
+                redisValue = entry.staleAt(now) ? null : entry.getValue();
+            }
+            if (redisValue == null) {
+                missingIds.add(remoteIds.get(i));
+                continue;
+            }
+            cache.meters.redisHits.increment();
+            putLocal(cache, remoteKeys.get(i), redisValue, stamp);
+            if (!NULL_VALUE.equals(redisValue)) {
+                result.put(remoteIds.get(i), redisValue);
+            }
+        }
+        if (missingIds.isEmpty()) {
             return result;
         }
 
-        log.debug("多级缓存未命中: {}", key);
-        return null;
+        // 数据源: 一次加载全部未命中的ID
+        cache.meters.misses.increment(missingIds.size());
+        long start = System.nanoTime();
+        Map<K, ?> loaded;
+        try {
+            loaded = loader.apply(missingIds);
+        } catch (RuntimeException | Error e) {
+            cache.meters.loadFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        cache.meters.loadSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        long softExpire = CacheConstants.getRandomizedExpire(expire);
+        long physicalExpire = softExpire + (long) (softExpire * staleRatio);
+        long nullPhysicalExpire = NULL_VALUE_EXPIRE + (long) (NULL_VALUE_EXPIRE * staleRatio);
+        Map<String, Object> values = new HashMap<>();
+        Map<String, Object> nullValues = new HashMap<>();
+        for (K id : missingIds) {
+            String key = buildKey(cacheName, id);
+            Object value = loaded == null ? null : loaded.get(id);
+            if (value == null) {
+                nullValues.put(key, new CacheEntry(NULL_VALUE, now + NULL_VALUE_EXPIRE * 1000));
+                putLocal(cache, key, NULL_VALUE, stamp);
+            } else {
+                CacheEntry entry = new CacheEntry(value, now + softExpire * 1000);
+                cacheMetrics.recordPayload(cache.meters, entry);
+                values.put(key, entry);
+                putLocal(cache, key, value, stamp);
+                result.put(id, value);
+            }
+        }
+        try {
+            String tagKey = CacheConstants.getCacheTagKey(cache.name);
+            redisUtil.multiSet(values, physicalExpire);
+            redisUtil.multiSet(nullValues, nullPhysicalExpire);
+            values.keySet().forEach(hotKeyDetector::invalidate);
+            nullValues.keySet().forEach(hotKeyDetector::invalidate);
+            redisUtil.tagAddAll(tagKey, values.keySet(), physicalExpire);
+            redisUtil.tagAddAll(tagKey, nullValues.keySet(), nullPhysicalExpire);
+        } catch (Exception e) {
+            log.warn("批量写入Redis缓存失败: {}, {}", cacheName, e.getMessage());
+        }
+        return result;
     }
 
     /**
-     * 设置缓存数据
-     * 同时写入本地缓存和Redis缓存
+     * 读取Redis缓存，Redis异常时视为未命中，降级为直接加载
+     * 逻辑过期的值直接返回并触发后台刷新，不写入本地缓存
      */
-    public void set(String key, Object value, long redisExpire) {
-        // 写入Redis
-        redisUtil.set(key, JSON.toJSONString(value), redisExpire);
+    private Object readRedis(NamedCache cache, String key, long stamp, ValueLoader loader,
+                             ToLongFunction<Object> expireFor) {
+        Object redisValue = null;
+        try {
+            redisValue = getRedisValue(key);
+        } catch (Exception e) {
+            log.warn("读取Redis缓存失败: {}, {}", key, e.getMessage());
+        }
+        if (redisValue == null) {
+            return null;
+        }
+        if (redisValue instanceof CacheEntry) {
+            CacheEntry entry = (CacheEntry) redisValue;
+            if (entry.staleAt(System.currentTimeMillis())) {
+                cache.meters.staleHits.increment();
+                refreshAsync(cache, key, loader, expireFor);
+                return entry.getValue();
+            }
+            redisValue = entry.getValue();
+        }
+        cache.meters.redisHits.increment();
+        putLocal(cache, key, redisValue, stamp);
+        return redisValue;
+    }
 
-        // 写入本地缓存
-        localCache.put(key, value);
+    /**
+     * 读取Redis中的值，热点key读取本节点的副本
+     */
+    private Object getRedisValue(String key) {
+        if (!hotKeyDetector.record(key)) {
+            return redisUtil.get(key);
+        }
+        byte[] raw = hotKeyDetector.getReplica(key, redisUtil::getRaw);
+        return raw == null ? null : valueSerializer().deserialize(raw);
+    }
 
-        log.debug("多级缓存写入: {}", key);
+    /**
+     * 在缓存预热线程池中刷新逻辑过期的缓存，同一key在集群内同时只有一个刷新任务
+     */
+    private void refreshAsync(NamedCache cache, String key, ValueLoader loader, ToLongFunction<Object> expireFor) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            cacheWarmupExecutor.execute(() -> {
+                try {
+                    singleFlightLoader.tryRun(key,
+                            () -> loadAndStore(cache, key, loader, expireFor, cacheInvalidationBus.currentStamp()));
+                } catch (Throwable e) {
+                    log.warn("后台刷新缓存失败: {}, {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * 执行加载器并写入两级缓存
+     *
+     * @return 加载结果，结果为null时返回空值占位
+     */
+    private Object loadAndStore(NamedCache cache, String key, ValueLoader loader,
+                                ToLongFunction<Object> expireFor, long stamp) throws Throwable {
+        cache.meters.misses.increment();
+        long start = System.nanoTime();
+        Object value;
+        try {
+            value = loader.load();
+        } catch (Throwable e) {
+            cache.meters.loadFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        cache.meters.loadSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        Object stored = value == null ? NULL_VALUE : value;
+        long expire = value == null ? NULL_VALUE_EXPIRE : expireFor.applyAsLong(value);
+        if (expire > 0) {
+            long softExpire = CacheConstants.getRandomizedExpire(expire);
+            long physicalExpire = softExpire + (long) (softExpire * staleRatio);
+            CacheEntry entry = new CacheEntry(stored, System.currentTimeMillis() + softExpire * 1000);
+            cacheMetrics.recordPayload(cache.meters, entry);
+            try {
+                redisUtil.set(key, entry, physicalExpire);
+                hotKeyDetector.invalidate(key);
+                redisUtil.tagAdd(CacheConstants.getCacheTagKey(cache.name), key, physicalExpire);
+            } catch (Exception e) {
+                log.warn("写入Redis缓存失败: {}, {}", key, e.getMessage());
+            }
+            putLocal(cache, key, stored, stamp);
+        }
+        return stored;
     }
 
     /**
-     * 删除缓存
+     * 删除单个缓存
+     *
+     * @param cacheName 缓存名称
+     * @param key       缓存key，由buildKey生成
      */
-    public void delete(String key) {
-        localCache.invalidate(key);
+    public void evict(String cacheName, String key) {
+        // 先删除Redis，再登记失效使进行中的加载不写入本地缓存，最后清除本地缓存
         redisUtil.del(key);
+        hotKeyDetector.invalidate(key);
+        cacheInvalidationBus.publish(cacheName, key);
+        NamedCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.local.invalidate(key);
+            cache.meters.explicitEvictions.increment();
+        }
         log.debug("多级缓存删除: {}", key);
     }
 
     /**
-     * 获取缓存统计信息
+     * 删除缓存名称下的全部缓存，Redis中按写入时登记的标签集合删除
+     *
+     * @param cacheName 缓存名称
+     */
+    public void evictAll(String cacheName) {
+        redisUtil.delByTag(CacheConstants.getCacheTagKey(cacheName));
+        hotKeyDetector.invalidateCache(cacheName);
+        cacheInvalidationBus.publishAll(cacheName);
+        NamedCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.local.invalidateAll();
+            cache.meters.explicitEvictions.increment();
+        }
+        log.debug("多级缓存清空: {}", cacheName);
+    }
+
+    /**
+     * 获取各缓存的命中统计
+     *
+     * @return key为缓存名称的统计信息
+     */
+    public Map<String, Map<String, Object>> getCacheStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        caches.forEach((cacheName, cache) -> {
+            long localHits = cache.local.stats().hitCount();
+            long staleHits = (long) cache.meters.staleHits.count();
+            long redisHits = (long) cache.meters.redisHits.count() + staleHits;
+            long misses = (long) cache.meters.misses.count();
+            long requests = localHits + redisHits + misses;
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("localSize", cache.local.estimatedSize());
+            item.put("localHits", localHits);
+            item.put("redisHits", redisHits);
+            item.put("staleHits", staleHits);
+            item.put("misses", misses);
+            item.put("hitRate", requests == 0 ? 0 : (double) (localHits + redisHits) / requests);
+            item.put("localEvictions", cache.local.stats().evictionCount());
+            stats.put(cacheName, item);
+        });
+        return stats;
+    }
+
+    /**
+     * 处理其他节点的失效消息，只清除版本小于消息版本的本地条目
+     *
+     * @param cacheName 缓存名称
+     * @param keys      缓存key
+     * @param version   消息版本
+     */
+    private void invalidateLocal(String cacheName, Collection<String> keys, long version) {
+        NamedCache cache = caches.get(cacheName);
+        if (cache == null) {
+            return;
+        }
+        Map<String, LocalEntry> entries = cache.local.asMap();
+        if (keys.contains(CacheInvalidationBus.ALL_KEYS)) {
+            entries.values().removeIf(entry -> entry.version < version);
+            cache.meters.remoteEvictions.increment();
+            return;
+        }
+        for (String key : keys) {
+            LocalEntry entry = entries.get(key);
+            if (entry != null && entry.version < version && entries.remove(key, entry)) {
+                cache.meters.remoteEvictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 写入本地缓存，加载开始后有失效发生时不写入
+     * 先读取版本再核对失效计数，计数未变时版本与加载开始时相同；写入后再次核对，
+     * 与写入并发的失效要么在写入之后清除条目，要么使再次核对失败并由这里移除
+     *
+     * @param stamp 加载开始时的本地失效计数
+     */
+    private void putLocal(NamedCache cache, String key, Object value, long stamp) {
+        long version = cacheInvalidationBus.currentVersion();
+        if (stamp != cacheInvalidationBus.currentStamp()) {
+            return;
+        }
+        byte[] bytes;
+        try {
+            bytes = NULL_VALUE.equals(value) ? LOCAL_NULL_VALUE : valueSerializer().serialize(value);
+        } catch (Exception e) {
+            log.warn("序列化本地缓存失败，不写入本地缓存: {}, {}", key, e.getMessage());
+            return;
+        }
+        LocalEntry entry = new LocalEntry(bytes, version);
+        cache.local.put(key, entry);
+        if (stamp != cacheInvalidationBus.currentStamp()) {
+            cache.local.asMap().remove(key, entry);
+        }
+    }
+
+    /**
+     * 反序列化本地缓存条目，空值占位返回null
+     */
+    private Object readLocal(LocalEntry entry) {
+        return entry.value.length == 0 ? null : valueSerializer().deserialize(entry.value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> valueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+
+    private NamedCache getCache(String cacheName, long localExpire, String annotation) {
+        return caches.computeIfAbsent(cacheName, name -> {
+            log.info("创建本地缓存: {}, 过期时间: {}s", name, localExpire);
+            Cache<String, LocalEntry> local = Caffeine.newBuilder()
+                    .maximumSize(LOCAL_MAXIMUM_SIZE)
+                    .expireAfterWrite(localExpire, TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+            return new NamedCache(name, local, cacheMetrics.register(name, annotation, local));
+        });
+    }
+
+    private Object unwrap(Object value) {
+        return NULL_VALUE.equals(value) ? null : value;
+    }
+
+    /**
+     * 单个缓存名称对应的本地缓存与指标
      */
-    public String getCacheStats() {
-        return localCache.stats().toString();
+    private static final class NamedCache {
+
+        private final String name;
+
+        private final Cache<String, LocalEntry> local;
+
+        private final CacheMetrics.Meters meters;
+
+        private NamedCache(String name, Cache<String, LocalEntry> local, CacheMetrics.Meters meters) {
+            this.name = name;
+            this.local = local;
+            this.meters = meters;
+        }
+    }
+
+    /**
+     * Redis缓存条目，softExpireAt为逻辑过期时间（毫秒时间戳）
+     * 不能声明为final，否则RedisTemplate序列化时不写入类型信息
+     */
+    public static class CacheEntry {
+
+        private Object value;
+
+        private long softExpireAt;
+
+        public CacheEntry() {
+        }
+
+        public CacheEntry(Object value, long softExpireAt) {
+            this.value = value;
+            this.softExpireAt = softExpireAt;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public long getSoftExpireAt() {
+            return softExpireAt;
+        }
+
+        public boolean staleAt(long now) {
+            return now >= softExpireAt;
+        }
+    }
+
+    /**
+     * 本地缓存条目，value为序列化后的值，version为加载开始时本节点已知的失效版本
+     */
+    private static final class LocalEntry {
+
+        private final byte[] value;
+
+        private final long version;
+
+        private LocalEntry(byte[] value, long version) {
+            this.value = value;
+            this.version = version;
+        }
     }
-} 
\ No newline at end of file
+}
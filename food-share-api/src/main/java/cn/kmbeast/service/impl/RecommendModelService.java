@@ -0,0 +1,299 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.mapper.InteractionMapper;
+import cn.kmbeast.pojo.dto.query.extend.InteractionQueryDto;
+import cn.kmbeast.pojo.em.InteractionTypeEnum;
+import cn.kmbeast.pojo.entity.Interaction;
+import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.ItemCfModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 协同过滤推荐模型
+ * 定时读取全部互动构建一次基于物品的模型并保存在内存中，推荐请求只查询内存模型，不再访问数据库或重建模型
+ * 新模型构建完成后整体替换旧模型，构建期间请求继续使用旧模型
+ * 互动权重：浏览1、点赞3、收藏4、评分为分值，同一用户对同一美食取最大权重
+ * 评分、点赞、收藏变化后按数据库重新计算该用户对该美食的权重，经Redis发布订阅广播给所有节点，
+ * 各节点增量更新模型并删除该用户的推荐缓存；广播的是更新后的权重而非差值，重复或乱序应用不会累积误差
+ * 权重查询、广播和模型更新都在专用的单线程中按顺序执行，不占用请求线程和Redis订阅的分发线程，
+ * 队列满时丢弃的增量由下一次定时重建补上
+ */
+@Slf4j
+@Service
+public class RecommendModelService implements MessageListener {
+
+    private static final float VIEW_WEIGHT = 1f;
+
+    private static final float UPVOTE_WEIGHT = 3f;
+
+    private static final float COLLECTION_WEIGHT = 4f;
+
+    /**
+     * 待执行增量任务的队列上限
+     */
+    private static final int UPDATE_QUEUE_CAPACITY = 10000;
+
+    @Resource
+    private InteractionMapper interactionMapper;
+
+    @Resource
+    private MultiLevelCacheService multiLevelCacheService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 每个美食保留的相似美食数
+     */
+    @Value("${app.recommend.neighbor-count:50}")
+    private int neighborCount;
+
+    /**
+     * 推荐时使用的用户最近互动美食数
+     */
+    @Value("${app.recommend.history-length:50}")
+    private int historyLength;
+
+    /**
+     * 当前模型，首次构建前为null
+     */
+    private volatile ItemCfModel model;
+
+    /**
+     * 当前模型的构建时间
+     */
+    private volatile long builtAt;
+
+    /**
+     * 重建期间收到的增量，新模型替换旧模型前重新应用，为null表示未在重建
+     */
+    private List<PendingUpdate> pendingUpdates;
+
+    private final Object updateLock = new Object();
+
+    private final ThreadPoolExecutor updateExecutor;
+
+    public RecommendModelService() {
+        updateExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(UPDATE_QUEUE_CAPACITY), r -> {
+            Thread thread = new Thread(r, "recommend-model-update");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this,
+                new ChannelTopic(CacheConstants.RECOMMEND_INTERACTION_CHANNEL));
+    }
+
+    @PreDestroy
+    public void stop() {
+        updateExecutor.shutdown();
+    }
+
+    /**
+     * 为用户推荐美食
+     *
+     * @param userId 用户ID
+     * @param count  推荐条数
+     * @return 推荐的美食ID，用户没有互动或模型不可用时为空
+     */
+    public List<Integer> recommend(Integer userId, int count) {
+        ItemCfModel current = model;
+        if (current == null) {
+            // 首次构建尚未完成或失败，不在请求线程中构建，由调用方返回热门美食
+            return Collections.emptyList();
+        }
+        return current.recommend(userId, count);
+    }
+
+    /**
+     * 用户对美食的评分、点赞或收藏发生变化后调用，在更新线程中重新计算权重并广播给所有节点
+     *
+     * @param userId    用户ID
+     * @param contentId 美食ID
+     */
+    public void publishInteraction(Integer userId, Integer contentId) {
+        if (userId == null || contentId == null) {
+            return;
+        }
+        submit(() -> computeAndPublish(userId, contentId));
+    }
+
+    private void computeAndPublish(Integer userId, Integer contentId) {
+        try {
+            InteractionQueryDto queryDto = new InteractionQueryDto();
+            queryDto.setUserId(userId);
+            queryDto.setContentId(contentId);
+            float weight = 0;
+            for (Interaction interaction : interactionMapper.query(queryDto)) {
+                weight = Math.max(weight, weightOf(interaction));
+            }
+            String message = userId + ":" + contentId + ":" + weight;
+            try {
+                stringRedisTemplate.convertAndSend(CacheConstants.RECOMMEND_INTERACTION_CHANNEL, message);
+            } catch (Exception e) {
+                // Redis不可用时至少保证本节点生效
+                log.warn("广播推荐模型增量失败，仅更新本节点: {}", e.getMessage());
+                applyUpdate(userId, contentId, weight);
+            }
+        } catch (Exception e) {
+            log.error("推荐模型增量更新失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        submit(() -> {
+            String[] parts = body.split(":");
+            try {
+                applyUpdate(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                        Float.parseFloat(parts[2]));
+            } catch (Exception e) {
+                log.warn("处理推荐模型增量失败: {}, {}", body, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 提交到更新线程，队列满或已停止时丢弃
+     */
+    private void submit(Runnable task) {
+        try {
+            updateExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("推荐模型增量队列已满，等待下次重建: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重新读取全部互动构建模型
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (updateLock) {
+            pendingUpdates = new ArrayList<>();
+        }
+        try {
+            List<Interaction> interactions = interactionMapper.queryForModel();
+            ItemCfModel.Builder builder = ItemCfModel.builder(neighborCount, historyLength);
+            for (Interaction interaction : interactions) {
+                builder.add(interaction.getUserId(), interaction.getContentId(),
+                        weightOf(interaction), timeOf(interaction));
+            }
+            ItemCfModel built = builder.build();
+            boolean first = model == null;
+            synchronized (updateLock) {
+                // 读取互动之后收到的增量不一定包含在新模型中
+                for (PendingUpdate update : pendingUpdates) {
+                    built.update(update.userId, update.contentId, update.weight);
+                }
+                model = built;
+            }
+            builtAt = System.currentTimeMillis();
+            if (first) {
+                // 构建成功前写入的是热门美食，首次构建后清除
+                multiLevelCacheService.evictAll(CacheConstants.USER_RECOMMENDATIONS_CACHE);
+            }
+            log.info("协同过滤模型构建完成，互动数: {}, 用户数: {}, 美食数: {}, 耗时: {}ms", interactions.size(),
+                    built.getUserCount(), built.getItemCount(), builtAt - start);
+        } catch (Exception e) {
+            log.error("协同过滤模型构建失败: {}", e.getMessage(), e);
+        } finally {
+            synchronized (updateLock) {
+                pendingUpdates = null;
+            }
+        }
+    }
+
+    /**
+     * 当前模型的构建时间
+     *
+     * @return 毫秒时间戳，未构建时为0
+     */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * 更新本节点的模型，并删除该用户的推荐缓存
+     * 每个节点在更新自身模型后都删除一次，避免其他节点在收到增量前用旧模型重新写入缓存
+     */
+    private void applyUpdate(int userId, int contentId, float weight) {
+        synchronized (updateLock) {
+            if (pendingUpdates != null) {
+                pendingUpdates.add(new PendingUpdate(userId, contentId, weight));
+            }
+            ItemCfModel current = model;
+            if (current != null) {
+                current.update(userId, contentId, weight);
+            }
+        }
+        multiLevelCacheService.evict(CacheConstants.USER_RECOMMENDATIONS_CACHE,
+                MultiLevelCacheService.buildKey(CacheConstants.USER_RECOMMENDATIONS_CACHE, userId));
+        log.debug("推荐模型增量更新: 用户{} 美食{} 权重{}", userId, contentId, weight);
+    }
+
+    private float weightOf(Interaction interaction) {
+        Integer type = interaction.getType();
+        if (InteractionTypeEnum.VIEW.getType().equals(type)) {
+            return VIEW_WEIGHT;
+        }
+        if (InteractionTypeEnum.UPVOTE.getType().equals(type)) {
+            return UPVOTE_WEIGHT;
+        }
+        if (InteractionTypeEnum.COLLECTION.getType().equals(type)) {
+            return COLLECTION_WEIGHT;
+        }
+        if (InteractionTypeEnum.RATING.getType().equals(type) && interaction.getScore() != null) {
+            return interaction.getScore();
+        }
+        return 0;
+    }
+
+    private long timeOf(Interaction interaction) {
+        return interaction.getCreateTime() == null ? 0
+                : interaction.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class PendingUpdate {
+
+        private final int userId;
+
+        private final int contentId;
+
+        private final float weight;
+
+        private PendingUpdate(int userId, int contentId, float weight) {
+            this.userId = userId;
+            this.contentId = contentId;
+            this.weight = weight;
+        }
+    }
+}
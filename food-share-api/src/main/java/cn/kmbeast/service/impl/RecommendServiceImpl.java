@@ -2,21 +2,15 @@ package cn.kmbeast.service.impl;
 
 import cn.kmbeast.context.LocalThreadHolder;
 import cn.kmbeast.mapper.GourmetMapper;
-import cn.kmbeast.mapper.InteractionMapper;
 import cn.kmbeast.pojo.api.ApiResult;
 import cn.kmbeast.pojo.api.Result;
 import cn.kmbeast.pojo.dto.query.extend.GourmetQueryDto;
-import cn.kmbeast.pojo.dto.query.extend.InteractionQueryDto;
-import cn.kmbeast.pojo.dto.query.extend.RatingDto;
-import cn.kmbeast.pojo.em.InteractionTypeEnum;
 import cn.kmbeast.pojo.vo.GourmetVO;
-import cn.kmbeast.pojo.vo.InteractionVO;
+import cn.kmbeast.service.GourmetService;
 import cn.kmbeast.service.RecommendService;
 import cn.kmbeast.utils.CacheConstants;
-import cn.kmbeast.utils.MahoutUtils;
 import cn.kmbeast.utils.RedisUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.mahout.cf.taste.recommender.RecommendedItem;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
@@ -24,7 +18,6 @@ import javax.annotation.Resource;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 推荐业务逻辑实现
@@ -34,14 +27,20 @@ import java.util.stream.Collectors;
 public class RecommendServiceImpl implements RecommendService {
 
     @Resource
-    private InteractionMapper interactionMapper;
+    private GourmetMapper gourmetMapper;
 
     @Resource
-    private GourmetMapper gourmetMapper;
+    private GourmetService gourmetService;
 
     @Resource
     private RedisUtil redisUtil;
 
+    @Resource
+    private MultiLevelCacheService multiLevelCacheService;
+
+    @Resource
+    private RecommendModelService recommendModelService;
+
     /**
      * 查询需要推荐给用户的美食做法帖子数据
      *
@@ -55,41 +54,36 @@ public class RecommendServiceImpl implements RecommendService {
             return ApiResult.error("用户未登录");
         }
 
-        // 1. 尝试从缓存获取用户推荐结果
-        String cacheKey = CacheConstants.USER_RECOMMENDATIONS_KEY_PREFIX + userId;
-        Object cachedData = redisUtil.get(cacheKey);
-
-        if (cachedData != null) {
-            try {
-                @SuppressWarnings("unchecked")
-                List<GourmetVO> cachedResult = (List<GourmetVO>) cachedData;
-                // 如果缓存结果足够，直接返回
-                if (cachedResult.size() >= item) {
-                    return ApiResult.success(cachedResult.subList(0, item));
-                }
-            } catch (Exception e) {
-                log.warn("Failed to parse cached recommendations: {}", e.getMessage());
-            }
+        if (item == null || item <= 0) {
+            return ApiResult.success(Collections.emptyList());
         }
+        if (item > CacheConstants.USER_RECOMMENDATIONS_CACHE_SIZE) {
+            return ApiResult.success(computeRecommendations(userId, item));
+        }
+
+        // 1. 从多级缓存获取用户推荐结果，过期后先返回旧结果并在后台重新计算
+        // 每个用户只缓存一份固定条数的结果，互动变化时按用户删除
+        String cacheKey = MultiLevelCacheService.buildKey(CacheConstants.USER_RECOMMENDATIONS_CACHE, userId);
+        @SuppressWarnings("unchecked")
+        List<GourmetVO> cached = (List<GourmetVO>) multiLevelCacheService.getUnchecked(
+                CacheConstants.USER_RECOMMENDATIONS_CACHE, cacheKey, CacheConstants.USER_RECOMMENDATIONS_LOCAL_EXPIRE,
+                () -> computeRecommendations(userId, CacheConstants.USER_RECOMMENDATIONS_CACHE_SIZE),
+                value -> CollectionUtils.isEmpty((List<?>) value) ? 0 : CacheConstants.USER_RECOMMENDATIONS_EXPIRE);
+        List<GourmetVO> result = cached == null ? Collections.emptyList()
+                : new ArrayList<>(cached.subList(0, Math.min(item, cached.size())));
+        return ApiResult.success(result);
+    }
 
-        // 2. 缓存不存在或不足，计算推荐结果
-        // 获取用户关于物品的评分数据
-        InteractionQueryDto queryDto = new InteractionQueryDto();
-        queryDto.setType(InteractionTypeEnum.RATING.getType());
-        List<InteractionVO> interactionVOS = interactionMapper.query(queryDto);
-        List<RatingDto> ratingDtoList = interactionVOS.stream().map(interactionVO -> new RatingDto(
-                interactionVO.getUserId(),
-                interactionVO.getContentId(),
-                interactionVO.getScore())).collect(Collectors.toList());
-
-        List<RecommendedItem> recommenderList = MahoutUtils.recommender(
-                ratingDtoList,
-                (long) userId,
-                item);
-
-        List<Long> gourmetIds = recommenderList.stream()
-                .map(RecommendedItem::getItemID)
-                .collect(Collectors.toList());
+    /**
+     * 计算用户推荐结果
+     *
+     * @param userId 用户ID
+     * @param item   需要的条数
+     * @return 推荐结果
+     */
+    private List<GourmetVO> computeRecommendations(Integer userId, Integer item) {
+        // 2. 缓存不存在或不足，从内存中的协同过滤模型计算推荐结果
+        List<Integer> gourmetIds = recommendModelService.recommend(userId, item);
 
         List<GourmetVO> result;
 
@@ -98,7 +92,7 @@ public class RecommendServiceImpl implements RecommendService {
             // 尝试从热门排行榜获取
             Result<List<GourmetVO>> trendingResult = getTrendingFoods(item);
             if (trendingResult.isSuccess() && !CollectionUtils.isEmpty(trendingResult.getData())) {
-                return trendingResult;
+                return trendingResult.getData();
             }
 
             // 热门排行榜也没有，直接查询数据库
@@ -107,21 +101,10 @@ public class RecommendServiceImpl implements RecommendService {
             gourmetQueryDto.setSize(item);
             result = gourmetMapper.queryByView(gourmetQueryDto);
         } else {
-            // 将Long类型的ID转换为Integer
-            List<Integer> ids = new ArrayList<>();
-            for (Long gourmetId : gourmetIds) {
-                ids.add(Integer.parseInt(String.valueOf(gourmetId)));
-            }
             // 获取推荐的美食信息
-            result = gourmetMapper.queryByIds(ids);
+            result = gourmetService.getGourmetsByIds(gourmetIds);
         }
-
-        // 4. 缓存推荐结果
-        if (!CollectionUtils.isEmpty(result)) {
-            redisUtil.set(cacheKey, result, CacheConstants.USER_RECOMMENDATIONS_EXPIRE);
-        }
-
-        return ApiResult.success(result);
+        return result;
     }
 
     /**
@@ -170,21 +153,10 @@ public class RecommendServiceImpl implements RecommendService {
 
             // 3. 查询美食详情
             if (!gourmetIds.isEmpty()) {
-                List<GourmetVO> gourmetList = gourmetMapper.queryByIds(gourmetIds);
-
-                // 4. 按照排行榜顺序排序
-                Map<Integer, GourmetVO> gourmetMap = gourmetList.stream()
-                        .collect(Collectors.toMap(GourmetVO::getId, vo -> vo));
-
-                List<GourmetVO> sortedResult = new ArrayList<>();
-                for (Integer id : gourmetIds) {
-                    GourmetVO vo = gourmetMap.get(id);
-                    if (vo != null) {
-                        sortedResult.add(vo);
-                    }
-                }
+                // 结果与排行榜顺序一致
+                List<GourmetVO> gourmetList = gourmetService.getGourmetsByIds(gourmetIds);
 
-                return ApiResult.success(sortedResult);
+                return ApiResult.success(gourmetList);
             }
 
             return ApiResult.success(Collections.emptyList());
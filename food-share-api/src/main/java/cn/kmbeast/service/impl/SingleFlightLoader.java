@@ -0,0 +1,183 @@
+package cn.kmbeast.service.impl;
+
+import cn.kmbeast.utils.CacheConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 缓存未命中时的合并加载
+ * 同一节点内相同key的并发请求只有一个线程执行，其余线程等待并共享其结果；
+ * 跨节点通过Redis短期租约保证只有一个节点重新计算，未拿到租约的节点轮询缓存，等待超时后自行加载
+ */
+@Slf4j
+@Service
+public class SingleFlightLoader {
+
+    /**
+     * 租约轮询缓存的间隔（毫秒）
+     */
+    private static final long POLL_INTERVAL = 50;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private DefaultRedisScript<Long> cacheLeaseReleaseScript;
+
+    /**
+     * 租约有效期（秒），需大于最慢一次加载的耗时
+     */
+    @Value("${app.cache.flight-lease:10}")
+    private long leaseSeconds;
+
+    /**
+     * 未拿到租约时等待其他节点写入缓存的最长时间（毫秒）
+     */
+    @Value("${app.cache.flight-wait:3000}")
+    private long waitMillis;
+
+    /**
+     * 本节点正在加载的key
+     */
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 加载器
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws Throwable;
+    }
+
+    /**
+     * 读取缓存，未命中时合并加载
+     *
+     * @param key         缓存key
+     * @param meters      缓存指标，记录等待耗时
+     * @param cacheReader 读取缓存，未命中返回null
+     * @param loader      加载数据并写入缓存
+     * @return 数据
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(String key, CacheMetrics.Meters meters, Supplier<T> cacheReader,
+                      Loader<T> loader) throws Throwable {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            long start = System.nanoTime();
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } finally {
+                meters.localWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        try {
+            T value = loadOnce(key, meters, cacheReader, loader);
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 拿到租约时执行任务，租约被其他节点持有时直接返回，用于后台刷新等无需等待结果的场景
+     *
+     * @param key  缓存key
+     * @param task 任务
+     * @return 是否执行了任务
+     */
+    public boolean tryRun(String key, Loader<?> task) throws Throwable {
+        String leaseKey = CacheConstants.CACHE_FLIGHT_LEASE_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        if (!tryAcquire(leaseKey, token)) {
+            return false;
+        }
+        try {
+            task.load();
+            return true;
+        } finally {
+            release(leaseKey, token);
+        }
+    }
+
+    /**
+     * 本节点的加载线程：先读缓存，未命中时争抢租约，拿到租约的节点加载，其余节点等待缓存写入
+     */
+    private <T> T loadOnce(String key, CacheMetrics.Meters meters, Supplier<T> cacheReader,
+                           Loader<T> loader) throws Throwable {
+        T cached = cacheReader.get();
+        if (cached != null) {
+            return cached;
+        }
+
+        String leaseKey = CacheConstants.CACHE_FLIGHT_LEASE_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        long start = System.nanoTime();
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (!tryAcquire(leaseKey, token)) {
+            if (System.currentTimeMillis() >= deadline) {
+                // 持有租约的节点过慢或已宕机，不再等待
+                log.debug("等待缓存加载超时，直接加载: {}", key);
+                meters.remoteWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                meters.flightTimeouts.increment();
+                return loader.load();
+            }
+            TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL);
+            cached = cacheReader.get();
+            if (cached != null) {
+                meters.remoteWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return cached;
+            }
+        }
+
+        try {
+            // 拿到租约前其他节点可能刚写入缓存
+            cached = cacheReader.get();
+            return cached != null ? cached : loader.load();
+        } finally {
+            release(leaseKey, token);
+        }
+    }
+
+    /**
+     * 获取租约，Redis不可用时视为获取成功，退化为仅本节点合并
+     */
+    private boolean tryAcquire(String leaseKey, String token) {
+        try {
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(leaseKey, token, leaseSeconds, TimeUnit.SECONDS);
+            return !Boolean.FALSE.equals(acquired);
+        } catch (Exception e) {
+            log.warn("获取缓存加载租约失败: {}, {}", leaseKey, e.getMessage());
+            return true;
+        }
+    }
+
+    private void release(String leaseKey, String token) {
+        try {
+            stringRedisTemplate.execute(cacheLeaseReleaseScript, Collections.singletonList(leaseKey), token);
+        } catch (Exception e) {
+            log.warn("释放缓存加载租约失败: {}, {}", leaseKey, e.getMessage());
+        }
+    }
+}
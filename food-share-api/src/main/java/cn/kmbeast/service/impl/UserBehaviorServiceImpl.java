@@ -14,6 +14,7 @@ import cn.kmbeast.pojo.entity.Category;
 import cn.kmbeast.pojo.entity.Interaction;
 import cn.kmbeast.pojo.vo.GourmetVO;
 import cn.kmbeast.pojo.vo.UserPreferenceVO;
+import cn.kmbeast.service.GourmetService;
 import cn.kmbeast.service.UserBehaviorService;
 import cn.kmbeast.utils.CacheConstants;
 import cn.kmbeast.utils.RedisUtil;
@@ -25,6 +26,8 @@ import org.springframework.util.CollectionUtils;
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -34,12 +37,28 @@ import java.util.stream.Collectors;
 @Service
 public class UserBehaviorServiceImpl implements UserBehaviorService {
 
+    /**
+     * 行为数据同步时每批遍历的用户数
+     */
+    private static final int SYNC_SCAN_COUNT = 200;
+
+    /**
+     * 行为数据同步时最多同时处理的批次
+     */
+    private static final int SYNC_PARALLELISM = 4;
+
     @Resource
     private RedisUtil redisUtil;
 
+    @Resource(name = "taskExecutor")
+    private Executor taskExecutor;
+
     @Resource
     private GourmetMapper gourmetMapper;
 
+    @Resource
+    private GourmetService gourmetService;
+
     @Resource
     private CategoryMapper categoryMapper;
 
@@ -124,18 +143,10 @@ public class UserBehaviorServiceImpl implements UserBehaviorService {
                     .map(Integer::parseInt)
                     .collect(Collectors.toList());
 
-            List<GourmetVO> gourmetVOList = gourmetMapper.queryByIds(ids);
+            // 结果与Redis中的顺序一致
+            List<GourmetVO> gourmetVOList = gourmetService.getGourmetsByIds(ids);
 
-            // 按照Redis中的顺序重新排序结果
-            Map<Integer, GourmetVO> gourmetMap = gourmetVOList.stream()
-                    .collect(Collectors.toMap(GourmetVO::getId, gourmet -> gourmet));
-
-            List<GourmetVO> sortedResult = ids.stream()
-                    .map(gourmetMap::get)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
-            return ApiResult.success(sortedResult);
+            return ApiResult.success(gourmetVOList);
         } catch (Exception e) {
             log.error("获取用户浏览历史失败: {}", e.getMessage(), e);
             return ApiResult.error("获取用户浏览历史失败");
@@ -170,18 +181,10 @@ public class UserBehaviorServiceImpl implements UserBehaviorService {
                     .map(Integer::parseInt)
                     .collect(Collectors.toList());
 
-            List<GourmetVO> gourmetVOList = gourmetMapper.queryByIds(ids);
+            // 结果与Redis中的顺序一致
+            List<GourmetVO> gourmetVOList = gourmetService.getGourmetsByIds(ids);
 
-            // 按照Redis中的顺序重新排序结果
-            Map<Integer, GourmetVO> gourmetMap = gourmetVOList.stream()
-                    .collect(Collectors.toMap(GourmetVO::getId, gourmet -> gourmet));
-
-            List<GourmetVO> sortedResult = ids.stream()
-                    .map(gourmetMap::get)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
-            return ApiResult.success(sortedResult);
+            return ApiResult.success(gourmetVOList);
         } catch (Exception e) {
             log.error("获取用户最近浏览失败: {}", e.getMessage(), e);
             return ApiResult.error("获取用户最近浏览失败");
@@ -341,67 +344,75 @@ public class UserBehaviorServiceImpl implements UserBehaviorService {
         try {
             log.info("开始同步用户行为数据到数据库...");
 
-            // 获取所有用户历史记录的键
-            Set<String> historyKeys = redisUtil.keys(CacheConstants.USER_HISTORY_KEY_PREFIX + "*");
-            if (CollectionUtils.isEmpty(historyKeys)) {
+            // 分批遍历所有用户历史记录的键，批次并行同步
+            AtomicInteger totalSynced = new AtomicInteger();
+            long userCount = redisUtil.scan(CacheConstants.USER_HISTORY_KEY_PREFIX + "*", SYNC_SCAN_COUNT,
+                    SYNC_PARALLELISM, taskExecutor,
+                    historyKeys -> historyKeys.forEach(historyKey -> totalSynced.addAndGet(syncUserHistory(historyKey))));
+            if (userCount == 0) {
                 log.info("没有用户行为数据需要同步");
                 return ApiResult.success();
             }
 
-            int totalSynced = 0;
+            log.info("用户行为数据同步完成，共{}个用户，同步{}条记录", userCount, totalSynced.get());
+            return ApiResult.success();
+        } catch (Exception e) {
+            log.error("同步用户行为数据到数据库失败: {}", e.getMessage(), e);
+            return ApiResult.error("同步用户行为数据到数据库失败");
+        }
+    }
 
-            // 遍历每个用户的历史记录
-            for (String historyKey : historyKeys) {
-                try {
-                    // 从键中提取用户ID
-                    String userIdStr = historyKey.substring(CacheConstants.USER_HISTORY_KEY_PREFIX.length());
-                    Integer userId = Integer.parseInt(userIdStr);
-
-                    // 获取用户浏览历史
-                    Set<String> gourmetIdsWithScores = redisUtil.zRangeWithScores(historyKey);
-
-                    for (String entry : gourmetIdsWithScores) {
-                        String[] parts = entry.split(":");
-                        if (parts.length == 2) {
-                            String gourmetIdStr = parts[0];
-                            String scoreStr = parts[1];
-
-                            try {
-                                Integer gourmetId = Integer.parseInt(gourmetIdStr);
-                                Long timestamp = Long.parseLong(scoreStr);
-
-                                // 检查数据库中是否已存在该记录
-                                boolean exists = checkInteractionExists(userId, gourmetId);
-
-                                if (!exists) {
-                                    // 创建新的交互记录
-                                    Interaction interaction = new Interaction();
-                                    interaction.setUserId(userId);
-                                    interaction.setContentId(gourmetId);
-                                    interaction.setType(InteractionTypeEnum.VIEW.getType());
-                                    interaction.setContentType("VIEW");
-                                    interaction.setCreateTime(LocalDateTime.now());
-
-                                    // 保存到数据库
-                                    interactionMapper.save(interaction);
-                                    totalSynced++;
-                                }
-                            } catch (NumberFormatException e) {
-                                log.warn("解析浏览记录失败: gourmetId={}, score={}", gourmetIdStr, scoreStr);
-                            }
+    /**
+     * 同步单个用户的浏览历史
+     *
+     * @param historyKey 用户历史记录键
+     * @return 新增的记录数
+     */
+    private int syncUserHistory(String historyKey) {
+        int synced = 0;
+        try {
+            // 从键中提取用户ID
+            String userIdStr = historyKey.substring(CacheConstants.USER_HISTORY_KEY_PREFIX.length());
+            Integer userId = Integer.parseInt(userIdStr);
+
+            // 获取用户浏览历史
+            Set<String> gourmetIdsWithScores = redisUtil.zRangeWithScores(historyKey);
+
+            for (String entry : gourmetIdsWithScores) {
+                String[] parts = entry.split(":");
+                if (parts.length == 2) {
+                    String gourmetIdStr = parts[0];
+                    String scoreStr = parts[1];
+
+                    try {
+                        Integer gourmetId = Integer.parseInt(gourmetIdStr);
+                        Long timestamp = Long.parseLong(scoreStr);
+
+                        // 检查数据库中是否已存在该记录
+                        boolean exists = checkInteractionExists(userId, gourmetId);
+
+                        if (!exists) {
+                            // 创建新的交互记录
+                            Interaction interaction = new Interaction();
+                            interaction.setUserId(userId);
+                            interaction.setContentId(gourmetId);
+                            interaction.setType(InteractionTypeEnum.VIEW.getType());
+                            interaction.setContentType("VIEW");
+                            interaction.setCreateTime(LocalDateTime.now());
+
+                            // 保存到数据库
+                            interactionMapper.save(interaction);
+                            synced++;
                         }
+                    } catch (NumberFormatException e) {
+                        log.warn("解析浏览记录失败: gourmetId={}, score={}", gourmetIdStr, scoreStr);
                     }
-                } catch (Exception e) {
-                    log.error("同步用户{}的行为数据失败: {}", historyKey, e.getMessage());
                 }
             }
-
-            log.info("用户行为数据同步完成，共同步{}条记录", totalSynced);
-            return ApiResult.success();
         } catch (Exception e) {
-            log.error("同步用户行为数据到数据库失败: {}", e.getMessage(), e);
-            return ApiResult.error("同步用户行为数据到数据库失败");
+            log.error("同步用户{}的行为数据失败: {}", historyKey, e.getMessage());
         }
+        return synced;
     }
 
     /**
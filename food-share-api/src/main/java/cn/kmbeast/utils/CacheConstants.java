@@ -16,6 +16,16 @@ public class CacheConstants {
      */
     public static final String GOURMET_DETAIL_KEY_PREFIX = "gourmet:detail:";
 
+    /**
+     * 美食详情缓存名称，详情缓存key为"gourmet:detail:美食ID"
+     */
+    public static final String GOURMET_DETAIL_CACHE = "gourmet:detail";
+
+    /**
+     * 单条美食多级缓存名称，供按ID批量查询使用，key为"gourmet:item:美食ID"
+     */
+    public static final String GOURMET_ITEM_CACHE = "gourmet:item";
+
     /**
      * 美食列表缓存键
      */
@@ -81,6 +91,16 @@ public class CacheConstants {
      */
     public static final String USER_RECOMMENDATIONS_KEY_PREFIX = "user:{recommendations}:";
 
+    /**
+     * 用户个性化推荐多级缓存名称，key为"名称:用户ID"，与USER_RECOMMENDATIONS_KEY_PREFIX + 用户ID一致
+     */
+    public static final String USER_RECOMMENDATIONS_CACHE = "user:{recommendations}";
+
+    /**
+     * 用户个性化推荐缓存的条数，请求条数不超过该值时从缓存结果中截取
+     */
+    public static final int USER_RECOMMENDATIONS_CACHE_SIZE = 50;
+
     /**
      * 热门美食排行榜缓存键
      */
@@ -95,9 +115,9 @@ public class CacheConstants {
 
     /**
      * 秒杀商品库存缓存前缀
-     * 使用hash tag确保秒杀相关的key在同一个slot
+     * 以商品ID作为hash tag，通过getFlashSaleStockKey生成完整key
      */
-    public static final String FLASH_SALE_STOCK_PREFIX = "flash:{stock}:";
+    public static final String FLASH_SALE_STOCK_PREFIX = "flash:stock:";
 
     /**
      * 秒杀商品信息缓存前缀
@@ -118,9 +138,9 @@ public class CacheConstants {
 
     /**
      * 秒杀接口访问限流前缀
-     * 使用hash tag确保秒杀相关的key在同一个slot
+     * 以商品ID作为hash tag，通过getFlashSaleRateLimitKey生成完整key
      */
-    public static final String FLASH_SALE_RATE_LIMIT_PREFIX = "flash:{limit}:";
+    public static final String FLASH_SALE_RATE_LIMIT_PREFIX = "flash:limit:";
 
     /**
      * 秒杀订单缓存前缀
@@ -128,11 +148,42 @@ public class CacheConstants {
      */
     public static final String FLASH_SALE_ORDER_PREFIX = "flash:{order}:";
 
+    /**
+     * 秒杀订单持久化队列（Redis Stream）
+     */
+    public static final String FLASH_SALE_ORDER_STREAM_KEY = "flash:{order}:stream";
+
+    /**
+     * 秒杀订单持久化消费者组
+     */
+    public static final String FLASH_SALE_ORDER_GROUP = "flash-order-persist";
+
+    /**
+     * 秒杀订单支付截止时间（ZSet，score为截止时间戳）
+     */
+    public static final String FLASH_SALE_RESERVATION_KEY = "flash:{order}:reservation";
+
+    /**
+     * 待同步到数据库的商品库存增量（Hash，field为商品ID）
+     */
+    public static final String FLASH_SALE_STOCK_DELTA_KEY = "flash:{item}:stockDelta";
+
+    /**
+     * 同步中的库存增量批次，与FLASH_SALE_STOCK_DELTA_KEY位于同一slot
+     */
+    public static final String FLASH_SALE_STOCK_SYNCING_KEY = "flash:{item}:stockDelta:syncing";
+
     /**
      * 用户秒杀记录前缀（防止重复下单）
-     * 使用hash tag确保秒杀相关的key在同一个slot
+     * 以商品ID作为hash tag，通过getFlashSaleUserRecordKey生成完整key
      */
-    public static final String FLASH_SALE_USER_RECORD_PREFIX = "flash:{record}:";
+    public static final String FLASH_SALE_USER_RECORD_PREFIX = "flash:record:";
+
+    /**
+     * 秒杀排队放行前缀
+     * 以"admission:商品ID"作为hash tag，与库存key分散到不同slot，通过getFlashSaleAdmission*Key生成完整key
+     */
+    public static final String FLASH_SALE_ADMISSION_PREFIX = "flash:";
 
     // ==================== 过期时间设置 ====================
 
@@ -141,6 +192,11 @@ public class CacheConstants {
      */
     public static final long GOURMET_DETAIL_EXPIRE = 7200;
 
+    /**
+     * 美食详情本地缓存过期时间（秒）
+     */
+    public static final long GOURMET_DETAIL_LOCAL_EXPIRE = 300;
+
     /**
      * 美食列表缓存过期时间（秒）- 30分钟
      */
@@ -151,6 +207,16 @@ public class CacheConstants {
      */
     public static final long GOURMET_HOT_EXPIRE = 600;
 
+    /**
+     * 单条美食缓存过期时间（秒）- 10分钟，浏览数等统计字段允许短时间不一致
+     */
+    public static final long GOURMET_ITEM_EXPIRE = 600;
+
+    /**
+     * 单条美食本地缓存过期时间（秒）
+     */
+    public static final long GOURMET_ITEM_LOCAL_EXPIRE = 60;
+
     /**
      * 分类缓存过期时间（秒）- 1天
      */
@@ -196,6 +262,11 @@ public class CacheConstants {
      */
     public static final long USER_RECOMMENDATIONS_EXPIRE = 3600;
 
+    /**
+     * 用户个性化推荐本地缓存过期时间（秒）
+     */
+    public static final long USER_RECOMMENDATIONS_LOCAL_EXPIRE = 60;
+
     /**
      * 热门排行榜缓存过期时间（秒）- 5分钟
      */
@@ -278,6 +349,41 @@ public class CacheConstants {
      */
     public static final String FLASH_SALE_NOTIFICATION_CHANNEL = "flash:sale:notification";
 
+    /**
+     * 秒杀商品状态变更频道，用于同步各节点的本地状态表
+     */
+    public static final String FLASH_SALE_STATUS_CHANNEL = "flash:sale:status";
+
+    /**
+     * 缓存标签前缀，标签集合记录同一组缓存的key，按组删除时无需扫描键空间
+     */
+    public static final String CACHE_TAG_PREFIX = "cache:tag:";
+
+    /**
+     * 缓存合并加载的跨节点租约前缀
+     */
+    public static final String CACHE_FLIGHT_LEASE_PREFIX = "lock:flight:";
+
+    /**
+     * 本地缓存失效广播频道
+     */
+    public static final String CACHE_INVALIDATION_CHANNEL = "cache:invalidation";
+
+    /**
+     * 本地缓存失效版本号
+     */
+    public static final String CACHE_INVALIDATION_VERSION_KEY = "cache:invalidation:version";
+
+    /**
+     * 热点key提升广播频道
+     */
+    public static final String CACHE_HOT_KEY_CHANNEL = "cache:hotkey";
+
+    /**
+     * 推荐模型互动增量广播频道
+     */
+    public static final String RECOMMEND_INTERACTION_CHANNEL = "recommend:interaction";
+
     /**
      * 美食推荐频道前缀
      */
@@ -313,4 +419,114 @@ public class CacheConstants {
     public static long getRandomizedGourmetListExpire() {
         return getRandomizedExpire(GOURMET_LIST_EXPIRE);
     }
+
+    /**
+     * 获取缓存标签key
+     *
+     * @param tag 标签，如多级缓存名称
+     * @return 标签集合key
+     */
+    public static String getCacheTagKey(String tag) {
+        return CACHE_TAG_PREFIX + tag;
+    }
+
+    /**
+     * 获取秒杀库存key
+     * 库存、用户记录、限流key共用商品ID hash tag，保证秒杀Lua脚本涉及的key在同一slot
+     *
+     * @param itemId 商品ID
+     * @return 库存key
+     */
+    public static String getFlashSaleStockKey(Integer itemId) {
+        return FLASH_SALE_STOCK_PREFIX + "{" + itemId + "}";
+    }
+
+    /**
+     * 获取分段库存key
+     * 每个分段使用独立的hash tag，使同一商品的库存分散到集群不同slot
+     *
+     * @param itemId 商品ID
+     * @param bucket 分段序号
+     * @return 分段库存key
+     */
+    public static String getFlashSaleStockBucketKey(Integer itemId, int bucket) {
+        return FLASH_SALE_STOCK_PREFIX + "{" + itemId + ":" + bucket + "}";
+    }
+
+    /**
+     * 获取用户秒杀记录key
+     *
+     * @param userId 用户ID
+     * @param itemId 商品ID
+     * @return 用户秒杀记录key
+     */
+    public static String getFlashSaleUserRecordKey(Integer userId, Integer itemId) {
+        return FLASH_SALE_USER_RECORD_PREFIX + "{" + itemId + "}:" + userId;
+    }
+
+    /**
+     * 获取分段模式下的用户秒杀记录key，与用户所属分段的库存key位于同一slot
+     *
+     * @param userId 用户ID
+     * @param itemId 商品ID
+     * @param bucket 用户所属分段序号
+     * @return 用户秒杀记录key
+     */
+    public static String getFlashSaleUserRecordKey(Integer userId, Integer itemId, int bucket) {
+        return FLASH_SALE_USER_RECORD_PREFIX + "{" + itemId + ":" + bucket + "}:" + userId;
+    }
+
+    /**
+     * 获取秒杀限流key
+     *
+     * @param userId 用户ID
+     * @param itemId 商品ID
+     * @return 限流key
+     */
+    public static String getFlashSaleRateLimitKey(Integer userId, Integer itemId) {
+        return FLASH_SALE_RATE_LIMIT_PREFIX + "{" + itemId + "}:" + userId;
+    }
+
+    /**
+     * 获取分段模式下的秒杀限流key，与用户所属分段的库存key位于同一slot
+     *
+     * @param userId 用户ID
+     * @param itemId 商品ID
+     * @param bucket 用户所属分段序号
+     * @return 限流key
+     */
+    public static String getFlashSaleRateLimitKey(Integer userId, Integer itemId, int bucket) {
+        return FLASH_SALE_RATE_LIMIT_PREFIX + "{" + itemId + ":" + bucket + "}:" + userId;
+    }
+
+    /**
+     * 获取秒杀排队闸门key（Hash：已发号数、已放行号、上次放行时间）
+     *
+     * @param itemId 商品ID
+     * @return 闸门key
+     */
+    public static String getFlashSaleAdmissionGateKey(Integer itemId) {
+        return FLASH_SALE_ADMISSION_PREFIX + "{admission:" + itemId + "}:gate";
+    }
+
+    /**
+     * 获取秒杀排队号码key（Hash：用户ID -> 排队号）
+     *
+     * @param itemId 商品ID
+     * @return 排队号码key
+     */
+    public static String getFlashSaleAdmissionTicketKey(Integer itemId) {
+        return FLASH_SALE_ADMISSION_PREFIX + "{admission:" + itemId + "}:tickets";
+    }
+
+    /**
+     * 获取秒杀购买令牌key，与闸门key位于同一slot
+     *
+     * @param userId 用户ID
+     * @param itemId 商品ID
+     * @return 购买令牌key
+     */
+    public static String getFlashSaleAdmissionTokenKey(Integer userId, Integer itemId) {
+        return FLASH_SALE_ADMISSION_PREFIX + "{admission:" + itemId + "}:token:" + userId;
+    }
 }
\ No newline at end of file
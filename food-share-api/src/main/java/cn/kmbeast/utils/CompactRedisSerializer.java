@@ -0,0 +1,123 @@
+package cn.kmbeast.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Redis值的紧凑二进制序列化
+ * 对象使用Smile二进制格式写入，超过阈值时再用LZ4压缩，字符串、数字、布尔值仍写为JSON，
+ * 保证INCR计数、Lua脚本和集合成员比较与原来一致
+ * 读取时根据首字节区分格式，旧的JSON数据可以继续读取
+ *
+ * 二进制格式: 0x00 | 标记 | [LZ4时为原始长度4字节] | Smile数据
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * 二进制格式首字节，JSON不会以0x00开头
+     */
+    private static final byte MAGIC = 0x00;
+
+    private static final byte FLAG_PLAIN = 0x01;
+
+    private static final byte FLAG_LZ4 = 0x02;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ObjectMapper jsonMapper;
+
+    private final ObjectMapper smileMapper;
+
+    /**
+     * 达到该字节数的数据使用LZ4压缩，小于等于0时不压缩
+     */
+    private final int compressThreshold;
+
+    /**
+     * 是否写入二进制格式，关闭时只写JSON，用于回滚时保证写入的数据旧版本仍可读取
+     */
+    private final boolean writeCompact;
+
+    private final LZ4Compressor compressor;
+
+    private final LZ4FastDecompressor decompressor;
+
+    /**
+     * @param jsonMapper        JSON格式的ObjectMapper，用于标量值和旧数据
+     * @param smileMapper       Smile格式的ObjectMapper，配置需与jsonMapper一致
+     * @param compressThreshold 压缩阈值（字节）
+     * @param writeCompact      是否写入二进制格式
+     */
+    public CompactRedisSerializer(ObjectMapper jsonMapper, ObjectMapper smileMapper,
+                                  int compressThreshold, boolean writeCompact) {
+        this.jsonMapper = jsonMapper;
+        this.smileMapper = smileMapper;
+        this.compressThreshold = compressThreshold;
+        this.writeCompact = writeCompact;
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.fastDecompressor();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY;
+        }
+        try {
+            if (!writeCompact || isScalar(value)) {
+                return jsonMapper.writeValueAsBytes(value);
+            }
+            byte[] smile = smileMapper.writeValueAsBytes(value);
+            if (compressThreshold <= 0 || smile.length < compressThreshold) {
+                ByteBuffer buffer = ByteBuffer.allocate(2 + smile.length);
+                buffer.put(MAGIC).put(FLAG_PLAIN).put(smile);
+                return buffer.array();
+            }
+            byte[] compressed = new byte[compressor.maxCompressedLength(smile.length)];
+            int compressedLength = compressor.compress(smile, 0, smile.length, compressed, 0, compressed.length);
+            ByteBuffer buffer = ByteBuffer.allocate(6 + compressedLength);
+            buffer.put(MAGIC).put(FLAG_LZ4).putInt(smile.length).put(compressed, 0, compressedLength);
+            return buffer.array();
+        } catch (Exception e) {
+            throw new SerializationException("Could not serialize: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (bytes[0] != MAGIC) {
+                // 旧版本或标量的JSON数据
+                return jsonMapper.readValue(bytes, Object.class);
+            }
+            if (bytes[1] == FLAG_PLAIN) {
+                return smileMapper.readValue(bytes, 2, bytes.length - 2, Object.class);
+            }
+            if (bytes[1] == FLAG_LZ4) {
+                int length = ByteBuffer.wrap(bytes, 2, 4).getInt();
+                byte[] smile = new byte[length];
+                decompressor.decompress(bytes, 6, smile, 0, length);
+                return smileMapper.readValue(smile, Object.class);
+            }
+            throw new SerializationException("Unknown compact format flag: " + bytes[1]);
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException("Could not deserialize: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean isScalar(Object value) {
+        return value instanceof CharSequence || value instanceof Number || value instanceof Boolean;
+    }
+}
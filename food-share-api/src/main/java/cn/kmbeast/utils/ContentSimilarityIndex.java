@@ -0,0 +1,258 @@
+package cn.kmbeast.utils;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 内容相似度批量计算
+ * 特征矩阵的行为物品、列为特征词，按列存储即为词 -> 物品的倒排表；行为矩阵的行为物品、列为用户
+ * 对每个源物品，沿其特征词和互动用户的倒排表累加点积，只有共享特征词或互动用户的物品才会被计算，
+ * 相似度 = 内容权重 × 特征余弦相似度 + 行为权重 × 行为点积 / sqrt(两物品互动用户数之积)
+ * 源物品按区间拆分为Fork/Join任务并行计算，每个物品保留相似度最高的K个；
+ * 按物品下标的累加数组每个工作线程只分配一组，同一线程上的任务复用
+ */
+public class ContentSimilarityIndex {
+
+    /**
+     * 单个任务最多计算的源物品数
+     */
+    private static final int TASK_SIZE = 32;
+
+    private final SparseMatrix features;
+
+    private final SparseMatrix behaviors;
+
+    private final float contentWeight;
+
+    private final float behaviorWeight;
+
+    private final float[] featureNorms;
+
+    /**
+     * 物品在两个矩阵中的行下标互相映射，不存在时为-1
+     */
+    private final int[] itemToBehavior;
+
+    private final int[] behaviorToItem;
+
+    /**
+     * @param features       物品×特征词矩阵，其中的物品为全部候选物品
+     * @param behaviors      物品×用户行为分数矩阵，不在特征矩阵中的物品被忽略
+     * @param contentWeight  特征相似度权重
+     * @param behaviorWeight 行为相似度权重
+     */
+    public ContentSimilarityIndex(SparseMatrix features, SparseMatrix behaviors,
+                                  float contentWeight, float behaviorWeight) {
+        this.features = features;
+        this.behaviors = behaviors;
+        this.contentWeight = contentWeight;
+        this.behaviorWeight = behaviorWeight;
+        this.featureNorms = features.rowNorms();
+        this.itemToBehavior = new int[features.getRowCount()];
+        this.behaviorToItem = new int[behaviors.getRowCount()];
+        for (int item = 0; item < itemToBehavior.length; item++) {
+            itemToBehavior[item] = behaviors.rowIndex(features.rowId(item));
+        }
+        for (int row = 0; row < behaviorToItem.length; row++) {
+            behaviorToItem[row] = features.rowIndex(behaviors.rowId(row));
+        }
+    }
+
+    /**
+     * 计算源物品各自最相似的K个物品
+     *
+     * @param sourceIds   源物品ID
+     * @param k           每个物品保留的相似物品数
+     * @param parallelism 并行度
+     * @return 与sourceIds一一对应的结果，源物品不在特征矩阵中时结果为空
+     */
+    public Neighbors[] topK(int[] sourceIds, int k, int parallelism) {
+        Neighbors[] result = new Neighbors[sourceIds.length];
+        ThreadLocal<Accumulators> accumulators = ThreadLocal.withInitial(() -> new Accumulators(getItemCount()));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.invoke(new TopKTask(sourceIds, k, result, accumulators, 0, sourceIds.length));
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    public int getItemCount() {
+        return features.getRowCount();
+    }
+
+    /**
+     * 单个源物品的相似物品，按相似度降序
+     */
+    public static final class Neighbors {
+
+        private final int[] ids;
+
+        private final float[] scores;
+
+        private Neighbors(int[] ids, float[] scores) {
+            this.ids = ids;
+            this.scores = scores;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public int getId(int n) {
+            return ids[n];
+        }
+
+        public float getScore(int n) {
+            return scores[n];
+        }
+    }
+
+    /**
+     * 按物品下标的累加数组，每次计算后只清零被访问过的位置，可在同一线程上重复使用
+     */
+    private static final class Accumulators {
+
+        private final float[] contentDots;
+
+        private final float[] behaviorDots;
+
+        private final boolean[] seen;
+
+        private final int[] touched;
+
+        private final float[] similarities;
+
+        private Accumulators(int itemCount) {
+            contentDots = new float[itemCount];
+            behaviorDots = new float[itemCount];
+            seen = new boolean[itemCount];
+            touched = new int[itemCount];
+            similarities = new float[itemCount];
+        }
+    }
+
+    private final class TopKTask extends RecursiveAction {
+
+        private final int[] sourceIds;
+
+        private final int k;
+
+        private final Neighbors[] result;
+
+        private final ThreadLocal<Accumulators> accumulators;
+
+        private final int from;
+
+        private final int to;
+
+        private TopKTask(int[] sourceIds, int k, Neighbors[] result, ThreadLocal<Accumulators> accumulators,
+                         int from, int to) {
+            this.sourceIds = sourceIds;
+            this.k = k;
+            this.result = result;
+            this.accumulators = accumulators;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TopKTask(sourceIds, k, result, accumulators, from, middle),
+                        new TopKTask(sourceIds, k, result, accumulators, middle, to));
+                return;
+            }
+            Accumulators local = accumulators.get();
+            for (int s = from; s < to; s++) {
+                int source = features.rowIndex(sourceIds[s]);
+                result[s] = source < 0 ? new Neighbors(new int[0], new float[0]) : score(source, local);
+            }
+        }
+
+        private Neighbors score(int source, Accumulators local) {
+            float[] contentDots = local.contentDots;
+            float[] behaviorDots = local.behaviorDots;
+            boolean[] seen = local.seen;
+            int[] touched = local.touched;
+            float[] similarities = local.similarities;
+            int touchedCount = 0;
+            for (int p = features.rowStart(source); p < features.rowEnd(source); p++) {
+                int term = features.columnAt(p);
+                float weight = features.rowValueAt(p);
+                for (int q = features.columnStart(term); q < features.columnEnd(term); q++) {
+                    int item = features.rowAt(q);
+                    if (item == source) {
+                        continue;
+                    }
+                    if (!seen[item]) {
+                        seen[item] = true;
+                        touched[touchedCount++] = item;
+                    }
+                    contentDots[item] += weight * features.columnValueAt(q);
+                }
+            }
+            int sourceBehavior = itemToBehavior[source];
+            if (sourceBehavior >= 0) {
+                for (int p = behaviors.rowStart(sourceBehavior); p < behaviors.rowEnd(sourceBehavior); p++) {
+                    int user = behaviors.columnAt(p);
+                    float score = behaviors.rowValueAt(p);
+                    for (int q = behaviors.columnStart(user); q < behaviors.columnEnd(user); q++) {
+                        int item = behaviorToItem[behaviors.rowAt(q)];
+                        if (item < 0 || item == source) {
+                            continue;
+                        }
+                        if (!seen[item]) {
+                            seen[item] = true;
+                            touched[touchedCount++] = item;
+                        }
+                        behaviorDots[item] += score * behaviors.columnValueAt(q);
+                    }
+                }
+            }
+
+            PriorityQueue<Integer> top = new PriorityQueue<>(
+                    Math.max(1, k), Comparator.comparingDouble(item -> similarities[item]));
+            for (int t = 0; t < touchedCount; t++) {
+                int item = touched[t];
+                float similarity = 0;
+                if (contentDots[item] != 0) {
+                    similarity += contentWeight * contentDots[item] / (featureNorms[source] * featureNorms[item]);
+                }
+                if (behaviorDots[item] != 0) {
+                    similarity += behaviorWeight * behaviorDots[item] / (float) Math.sqrt(
+                            (double) behaviorUsers(source) * behaviorUsers(item));
+                }
+                similarities[item] = similarity;
+                if (similarity > 0) {
+                    top.offer(item);
+                    if (top.size() > k) {
+                        top.poll();
+                    }
+                }
+                contentDots[item] = 0;
+                behaviorDots[item] = 0;
+                seen[item] = false;
+            }
+
+            int size = top.size();
+            int[] ids = new int[size];
+            float[] scores = new float[size];
+            for (int n = size - 1; n >= 0; n--) {
+                int item = top.poll();
+                ids[n] = features.rowId(item);
+                scores[n] = similarities[item];
+            }
+            return new Neighbors(ids, scores);
+        }
+
+        private int behaviorUsers(int item) {
+            int row = itemToBehavior[item];
+            return row < 0 ? 0 : behaviors.rowEnd(row) - behaviors.rowStart(row);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package cn.kmbeast.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch，用固定大小的计数器估计元素出现次数
+ * 估计值不小于真实次数，误差随宽度增大而减小，计数器线程安全
+ */
+public class CountMinSketch {
+
+    private final int depth;
+
+    private final int mask;
+
+    private final AtomicLongArray counters;
+
+    /**
+     * @param depth 哈希函数个数
+     * @param width 每行计数器个数，向上取整为2的幂
+     */
+    public CountMinSketch(int depth, int width) {
+        int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counters = new AtomicLongArray(depth * size);
+    }
+
+    /**
+     * 增加元素计数
+     *
+     * @param item  元素
+     * @param count 增加的次数
+     */
+    public void add(Object item, long count) {
+        int hash = spread(item.hashCode());
+        int step = step(hash);
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(index(hash, step, row), count);
+        }
+    }
+
+    /**
+     * 估计元素出现次数
+     *
+     * @param item 元素
+     * @return 估计次数
+     */
+    public long estimate(Object item) {
+        int hash = spread(item.hashCode());
+        int step = step(hash);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(index(hash, step, row)));
+        }
+        return min;
+    }
+
+    /**
+     * 清空全部计数
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    /**
+     * 第row行的下标，各行由两个哈希值线性组合得到
+     */
+    private int index(int hash, int step, int row) {
+        return row * (mask + 1) + ((hash + row * step) & mask);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static int step(int hash) {
+        return (Integer.rotateLeft(hash * 0xc2b2ae35, 16)) | 1;
+    }
+}
@@ -0,0 +1,621 @@
+package cn.kmbeast.utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于物品的协同过滤模型
+ * 用户对物品的偏好取各次互动权重的最大值，物品相似度为加权余弦相似度乘以共现收缩系数 n/(n+SHRINK)，
+ * 共同互动用户少的物品对相似度被压低，稀疏数据上更稳定
+ * 用户×物品偏好保存在SparseMatrix中，按列遍历物品的互动用户、按行遍历用户的物品累加共现；
+ * 每个物品只保留最相似的K个邻居，邻居和用户最近互动的物品都保存在连续的基本类型数组中，
+ * 推荐时累加用户最近H个物品的邻居得分，耗时O(H×K)
+ * 构建后可通过update增量更新单个用户对单个物品的偏好，变化的用户偏好、物品邻居写入覆盖层，
+ * 读取时覆盖层优先；更新串行执行，推荐可与更新同时进行
+ */
+public class ItemCfModel {
+
+    /**
+     * 相似度收缩系数
+     */
+    private static final float SHRINK = 5f;
+
+    /**
+     * 每个用户最多保留的最近物品数，避免少数重度用户使构建耗时平方增长
+     */
+    private static final int MAX_COOCCURRENCE_ITEMS = 500;
+
+    private final int neighborCount;
+
+    private final int historyLength;
+
+    /**
+     * 用户×物品偏好矩阵，行为用户、列为物品，物品下标即列下标
+     */
+    private final SparseMatrix preferences;
+
+    /**
+     * 第i个物品的邻居为neighborIndexes[neighborOffsets[i], neighborOffsets[i + 1])，按相似度降序
+     */
+    private final int[] neighborOffsets;
+
+    private final int[] neighborIndexes;
+
+    private final float[] neighborScores;
+
+    /**
+     * 物品向量的模
+     */
+    private final float[] norms;
+
+    /**
+     * 第u个用户最近互动的物品为historyItems[historyOffsets[u], historyOffsets[u + 1])，按时间倒序
+     */
+    private final int[] historyOffsets;
+
+    private final int[] historyItems;
+
+    private final float[] historyWeights;
+
+    /**
+     * 增量更新后的用户偏好及最近互动，key为用户ID
+     */
+    private final Map<Integer, Row> updatedUsers = new ConcurrentHashMap<>();
+
+    private final Map<Integer, Row> updatedHistories = new ConcurrentHashMap<>();
+
+    /**
+     * 增量更新后的物品邻居，key为物品下标
+     */
+    private final Map<Integer, Row> updatedNeighbors = new ConcurrentHashMap<>();
+
+    /**
+     * 构建后新增的物品，下标从偏好矩阵的列数开始
+     */
+    private final Map<Integer, Integer> addedItemIds = new ConcurrentHashMap<>();
+
+    private final Map<Integer, Integer> addedItemIndexes = new HashMap<>();
+
+    /**
+     * 构建后新增的物品 -> 用户关系及变化后的物品模，只在更新时使用
+     */
+    private final Map<Integer, Set<Integer>> addedItemUsers = new HashMap<>();
+
+    private final Map<Integer, Float> updatedNorms = new HashMap<>();
+
+    private int addedUserCount;
+
+    private ItemCfModel(int neighborCount, int historyLength, SparseMatrix preferences, int[] neighborOffsets,
+                        int[] neighborIndexes, float[] neighborScores,
+                        int[] historyOffsets, int[] historyItems, float[] historyWeights) {
+        this.neighborCount = neighborCount;
+        this.historyLength = historyLength;
+        this.preferences = preferences;
+        this.neighborOffsets = neighborOffsets;
+        this.neighborIndexes = neighborIndexes;
+        this.neighborScores = neighborScores;
+        this.norms = preferences.columnNorms();
+        this.historyOffsets = historyOffsets;
+        this.historyItems = historyItems;
+        this.historyWeights = historyWeights;
+    }
+
+    /**
+     * @param neighborCount 每个物品保留的邻居数K
+     * @param historyLength 每个用户保留的最近物品数H
+     * @return 模型构建器
+     */
+    public static Builder builder(int neighborCount, int historyLength) {
+        return new Builder(neighborCount, historyLength);
+    }
+
+    /**
+     * 为用户推荐物品，排除用户最近已互动的物品
+     *
+     * @param userId 用户ID
+     * @param count  推荐条数
+     * @return 物品ID，按得分降序，用户不在模型中时为空
+     */
+    public List<Integer> recommend(int userId, int count) {
+        Row history = historyRow(userId);
+        if (history == null || count <= 0) {
+            return Collections.emptyList();
+        }
+        Set<Integer> seen = new HashSet<>();
+        for (int item : history.indexes) {
+            seen.add(item);
+        }
+
+        Map<Integer, Float> scores = new HashMap<>();
+        for (int h = 0; h < history.indexes.length; h++) {
+            int item = history.indexes[h];
+            float weight = history.scores[h];
+            Row updated = updatedNeighbors.get(item);
+            if (updated != null) {
+                for (int n = 0; n < updated.indexes.length; n++) {
+                    if (!seen.contains(updated.indexes[n])) {
+                        scores.merge(updated.indexes[n], weight * updated.scores[n], Float::sum);
+                    }
+                }
+            } else if (item < preferences.getColumnCount()) {
+                for (int n = neighborOffsets[item]; n < neighborOffsets[item + 1]; n++) {
+                    if (!seen.contains(neighborIndexes[n])) {
+                        scores.merge(neighborIndexes[n], weight * neighborScores[n], Float::sum);
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<Integer, Float>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> Float.compare(b.getValue(), a.getValue()));
+        List<Integer> result = new ArrayList<>(Math.min(count, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < count; i++) {
+            result.add(itemId(ranked.get(i).getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * 物品的相似物品
+     *
+     * @param itemId 物品ID
+     * @return 相似物品ID，按相似度降序
+     */
+    public List<Integer> similarItems(int itemId) {
+        Integer item = itemIndex(itemId);
+        if (item == null) {
+            return Collections.emptyList();
+        }
+        Row neighbors = neighborRow(item);
+        List<Integer> result = new ArrayList<>(neighbors.indexes.length);
+        for (int index : neighbors.indexes) {
+            result.add(itemId(index));
+        }
+        return result;
+    }
+
+    /**
+     * 增量更新用户对物品的偏好
+     * 该物品的模和邻居按全部互动用户重新累加点积与共现次数得出，
+     * 与该物品共现的物品在各自邻居中更新与该物品的相似度；
+     * 其他物品之间的相似度不变，邻居截断带来的误差由定时全量重建修正
+     *
+     * @param userId 用户ID
+     * @param itemId 物品ID
+     * @param weight 更新后的偏好权重，0表示用户已不再与该物品有互动
+     */
+    public synchronized void update(int userId, int itemId, float weight) {
+        Integer item = itemIndex(itemId);
+        if (item == null) {
+            if (weight <= 0) {
+                return;
+            }
+            item = preferences.getColumnCount() + addedItemIds.size();
+            addedItemIds.put(item, itemId);
+            addedItemIndexes.put(itemId, item);
+        }
+
+        Row before = userRow(userId);
+        if (before == null) {
+            if (weight <= 0) {
+                return;
+            }
+            addedUserCount++;
+        }
+        updatedUsers.put(userId, moveToFront(before, item, weight, MAX_COOCCURRENCE_ITEMS));
+        updatedHistories.put(userId, moveToFront(historyRow(userId), item, weight, historyLength));
+        if (weight > 0 && (before == null || before.indexOf(item) < 0)) {
+            addedItemUsers.computeIfAbsent(item, i -> new HashSet<>()).add(userId);
+        }
+
+        // 重新累加该物品与共现物品的点积和共现次数
+        Map<Integer, float[]> accumulators = new HashMap<>();
+        float norm = 0;
+        for (int user : usersOf(item)) {
+            Row row = userRow(user);
+            int pos = row == null ? -1 : row.indexOf(item);
+            if (pos < 0) {
+                continue;
+            }
+            float w = row.scores[pos];
+            norm += w * w;
+            for (int q = 0; q < row.indexes.length; q++) {
+                if (q != pos) {
+                    float[] accumulator = accumulators.computeIfAbsent(row.indexes[q], j -> new float[2]);
+                    accumulator[0] += w * row.scores[q];
+                    accumulator[1]++;
+                }
+            }
+        }
+        norm = (float) Math.sqrt(norm);
+        updatedNorms.put(item, norm);
+
+        Map<Integer, Float> similarities = new HashMap<>();
+        for (Map.Entry<Integer, float[]> entry : accumulators.entrySet()) {
+            float[] accumulator = entry.getValue();
+            float similarity = accumulator[0] / (norm * normOf(entry.getKey()))
+                    * accumulator[1] / (accumulator[1] + SHRINK);
+            similarities.put(entry.getKey(), similarity);
+        }
+        updatedNeighbors.put(item, topNeighbors(similarities));
+
+        // 原先与该物品共现、现在不再共现的物品需移除该物品
+        if (before != null) {
+            for (int j : before.indexes) {
+                if (j != item) {
+                    similarities.putIfAbsent(j, 0f);
+                }
+            }
+        }
+        for (Map.Entry<Integer, Float> entry : similarities.entrySet()) {
+            upsertNeighbor(entry.getKey(), item, entry.getValue());
+        }
+    }
+
+    public int getItemCount() {
+        return preferences.getColumnCount() + addedItemIds.size();
+    }
+
+    public int getUserCount() {
+        return preferences.getRowCount() + addedUserCount;
+    }
+
+    private Integer itemIndex(int itemId) {
+        int item = preferences.columnIndex(itemId);
+        return item >= 0 ? Integer.valueOf(item) : addedItemIndexes.get(itemId);
+    }
+
+    private int itemId(int item) {
+        return item < preferences.getColumnCount() ? preferences.columnId(item) : addedItemIds.get(item);
+    }
+
+    /**
+     * 用户的全部偏好，不保证顺序
+     */
+    private Row userRow(int userId) {
+        Row updated = updatedUsers.get(userId);
+        if (updated != null) {
+            return updated;
+        }
+        int user = preferences.rowIndex(userId);
+        if (user < 0) {
+            return null;
+        }
+        int from = preferences.rowStart(user);
+        int[] indexes = new int[preferences.rowEnd(user) - from];
+        float[] scores = new float[indexes.length];
+        for (int n = 0; n < indexes.length; n++) {
+            indexes[n] = preferences.columnAt(from + n);
+            scores[n] = preferences.rowValueAt(from + n);
+        }
+        return new Row(indexes, scores);
+    }
+
+    /**
+     * 用户最近互动的物品，按时间倒序
+     */
+    private Row historyRow(int userId) {
+        Row updated = updatedHistories.get(userId);
+        if (updated != null) {
+            return updated;
+        }
+        int user = preferences.rowIndex(userId);
+        if (user < 0) {
+            return null;
+        }
+        int from = historyOffsets[user];
+        int to = historyOffsets[user + 1];
+        return new Row(Arrays.copyOfRange(historyItems, from, to), Arrays.copyOfRange(historyWeights, from, to));
+    }
+
+    private Row neighborRow(int item) {
+        Row updated = updatedNeighbors.get(item);
+        if (updated != null) {
+            return updated;
+        }
+        if (item >= preferences.getColumnCount()) {
+            return new Row(new int[0], new float[0]);
+        }
+        int from = neighborOffsets[item];
+        int to = neighborOffsets[item + 1];
+        return new Row(Arrays.copyOfRange(neighborIndexes, from, to), Arrays.copyOfRange(neighborScores, from, to));
+    }
+
+    private float normOf(int item) {
+        Float updated = updatedNorms.get(item);
+        return updated != null ? updated : norms[item];
+    }
+
+    /**
+     * 与物品互动过的用户ID，包含已取消互动的用户，由调用方按用户偏好过滤
+     */
+    private Set<Integer> usersOf(int item) {
+        Set<Integer> users = new HashSet<>();
+        if (item < preferences.getColumnCount()) {
+            for (int p = preferences.columnStart(item); p < preferences.columnEnd(item); p++) {
+                users.add(preferences.rowId(preferences.rowAt(p)));
+            }
+        }
+        users.addAll(addedItemUsers.getOrDefault(item, Collections.emptySet()));
+        return users;
+    }
+
+    /**
+     * 更新后的用户偏好，变化的物品移到最前，超过limit时截断末尾
+     */
+    private Row moveToFront(Row before, int item, float weight, int limit) {
+        int length = before == null ? 0 : before.indexes.length;
+        int pos = before == null ? -1 : before.indexOf(item);
+        int size = Math.min(length - (pos >= 0 ? 1 : 0) + (weight > 0 ? 1 : 0), limit);
+        int[] indexes = new int[size];
+        float[] scores = new float[size];
+        int n = 0;
+        if (weight > 0) {
+            indexes[n] = item;
+            scores[n++] = weight;
+        }
+        for (int q = 0; q < length && n < size; q++) {
+            if (q != pos) {
+                indexes[n] = before.indexes[q];
+                scores[n++] = before.scores[q];
+            }
+        }
+        return new Row(indexes, scores);
+    }
+
+    private Row topNeighbors(Map<Integer, Float> similarities) {
+        List<Map.Entry<Integer, Float>> ranked = new ArrayList<>(similarities.entrySet());
+        ranked.sort((a, b) -> Float.compare(b.getValue(), a.getValue()));
+        int size = Math.min(ranked.size(), neighborCount);
+        int[] indexes = new int[size];
+        float[] scores = new float[size];
+        for (int n = 0; n < size; n++) {
+            indexes[n] = ranked.get(n).getKey();
+            scores[n] = ranked.get(n).getValue();
+        }
+        return new Row(indexes, scores);
+    }
+
+    /**
+     * 更新物品邻居中另一物品的相似度，相似度为0时移除，邻居已满且相似度低于最后一个时不加入
+     */
+    private void upsertNeighbor(int item, int neighbor, float similarity) {
+        Row row = neighborRow(item);
+        int pos = row.indexOf(neighbor);
+        int length = row.indexes.length;
+        if (pos < 0 && (similarity <= 0
+                || (length >= neighborCount && similarity <= row.scores[length - 1]))) {
+            return;
+        }
+        int size = Math.min(length - (pos >= 0 ? 1 : 0) + (similarity > 0 ? 1 : 0), neighborCount);
+        int[] indexes = new int[size];
+        float[] scores = new float[size];
+        int n = 0;
+        boolean inserted = similarity <= 0;
+        for (int q = 0; q < length && n < size; q++) {
+            if (q == pos) {
+                continue;
+            }
+            if (!inserted && similarity > row.scores[q]) {
+                indexes[n] = neighbor;
+                scores[n++] = similarity;
+                inserted = true;
+                if (n == size) {
+                    break;
+                }
+            }
+            indexes[n] = row.indexes[q];
+            scores[n++] = row.scores[q];
+        }
+        if (!inserted && n < size) {
+            indexes[n] = neighbor;
+            scores[n] = similarity;
+        }
+        updatedNeighbors.put(item, new Row(indexes, scores));
+    }
+
+    /**
+     * 模型构建器，互动保存在可扩容的基本类型数组中，逐条添加后一次构建，非线程安全
+     */
+    public static class Builder {
+
+        private final int neighborCount;
+
+        private final int historyLength;
+
+        private int[] users = new int[1024];
+
+        private int[] items = new int[1024];
+
+        private float[] weights = new float[1024];
+
+        private long[] times = new long[1024];
+
+        private int size;
+
+        private Builder(int neighborCount, int historyLength) {
+            this.neighborCount = neighborCount;
+            this.historyLength = historyLength;
+        }
+
+        /**
+         * 添加一次互动，同一用户对同一物品取最大权重和最近时间
+         *
+         * @param userId 用户ID
+         * @param itemId 物品ID
+         * @param weight 互动权重，需大于0
+         * @param time   互动时间（毫秒时间戳）
+         * @return 构建器
+         */
+        public Builder add(int userId, int itemId, float weight, long time) {
+            if (weight <= 0) {
+                return this;
+            }
+            if (size == users.length) {
+                int capacity = size + (size >> 1);
+                users = Arrays.copyOf(users, capacity);
+                items = Arrays.copyOf(items, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                times = Arrays.copyOf(times, capacity);
+            }
+            users[size] = userId;
+            items[size] = itemId;
+            weights[size] = weight;
+            times[size] = time;
+            size++;
+            return this;
+        }
+
+        public ItemCfModel build() {
+            SparseMatrix.Builder matrixBuilder = SparseMatrix.builder(SparseMatrix.Merge.MAX);
+            for (int i = 0; i < size; i++) {
+                matrixBuilder.add(users[i], items[i], weights[i]);
+            }
+            SparseMatrix all = matrixBuilder.build();
+
+            // 每个偏好的最近互动时间，与矩阵按行存储的位置对应
+            long[] latest = new long[all.getNonZeroCount()];
+            for (int i = 0; i < size; i++) {
+                int position = all.positionOf(all.rowIndex(users[i]), all.columnIndex(items[i]));
+                latest[position] = Math.max(latest[position], times[i]);
+            }
+
+            // 每个用户的偏好按时间倒序，只保留最近的MAX_COOCCURRENCE_ITEMS个参与相似度计算
+            int[][] recent = new int[all.getRowCount()][];
+            boolean truncated = false;
+            for (int u = 0; u < all.getRowCount(); u++) {
+                recent[u] = sortByTimeDesc(all.rowStart(u), all.rowEnd(u), latest);
+                truncated |= recent[u].length > MAX_COOCCURRENCE_ITEMS;
+            }
+            SparseMatrix matrix = all;
+            if (truncated) {
+                matrixBuilder = SparseMatrix.builder(SparseMatrix.Merge.MAX);
+                for (int u = 0; u < all.getRowCount(); u++) {
+                    for (int n = 0; n < recent[u].length && n < MAX_COOCCURRENCE_ITEMS; n++) {
+                        int p = recent[u][n];
+                        matrixBuilder.add(all.rowId(u), all.columnId(all.columnAt(p)), all.rowValueAt(p));
+                    }
+                }
+                matrix = matrixBuilder.build();
+            }
+
+            // 用户最近H个物品，物品下标为最终矩阵的列下标
+            int[] historyOffsets = new int[matrix.getRowCount() + 1];
+            for (int u = 0; u < all.getRowCount(); u++) {
+                historyOffsets[u + 1] = historyOffsets[u] + Math.min(recent[u].length, historyLength);
+            }
+            int[] historyItems = new int[historyOffsets[matrix.getRowCount()]];
+            float[] historyWeights = new float[historyItems.length];
+            for (int u = 0; u < all.getRowCount(); u++) {
+                for (int h = historyOffsets[u]; h < historyOffsets[u + 1]; h++) {
+                    int p = recent[u][h - historyOffsets[u]];
+                    historyItems[h] = matrix.columnIndex(all.columnId(all.columnAt(p)));
+                    historyWeights[h] = all.rowValueAt(p);
+                }
+            }
+
+            // 逐个物品按列遍历互动用户、按行遍历用户的物品，累加点积和共现次数，保留相似度最高的K个
+            int itemCount = matrix.getColumnCount();
+            float[] norms = matrix.columnNorms();
+            int[] neighborOffsets = new int[itemCount + 1];
+            int[] neighborIndexes = new int[itemCount * neighborCount];
+            float[] neighborScores = new float[itemCount * neighborCount];
+            float[] dots = new float[itemCount];
+            int[] cooccurrences = new int[itemCount];
+            int[] touched = new int[itemCount];
+            float[] similarities = new float[itemCount];
+            int neighborSize = 0;
+            for (int i = 0; i < itemCount; i++) {
+                int touchedCount = 0;
+                for (int p = matrix.columnStart(i); p < matrix.columnEnd(i); p++) {
+                    int u = matrix.rowAt(p);
+                    float weight = matrix.columnValueAt(p);
+                    for (int q = matrix.rowStart(u); q < matrix.rowEnd(u); q++) {
+                        int j = matrix.columnAt(q);
+                        if (j == i) {
+                            continue;
+                        }
+                        if (cooccurrences[j] == 0) {
+                            touched[touchedCount++] = j;
+                        }
+                        cooccurrences[j]++;
+                        dots[j] += weight * matrix.rowValueAt(q);
+                    }
+                }
+
+                PriorityQueue<Integer> top = new PriorityQueue<>(
+                        Math.max(1, neighborCount), Comparator.comparingDouble(j -> similarities[j]));
+                for (int t = 0; t < touchedCount; t++) {
+                    int j = touched[t];
+                    similarities[j] = dots[j] / (norms[i] * norms[j])
+                            * cooccurrences[j] / (cooccurrences[j] + SHRINK);
+                    top.offer(j);
+                    if (top.size() > neighborCount) {
+                        top.poll();
+                    }
+                }
+                int count = top.size();
+                for (int n = count - 1; n >= 0; n--) {
+                    int j = top.poll();
+                    neighborIndexes[neighborSize + n] = j;
+                    neighborScores[neighborSize + n] = similarities[j];
+                }
+                neighborSize += count;
+                neighborOffsets[i + 1] = neighborSize;
+
+                for (int t = 0; t < touchedCount; t++) {
+                    int j = touched[t];
+                    dots[j] = 0;
+                    cooccurrences[j] = 0;
+                }
+            }
+
+            return new ItemCfModel(neighborCount, historyLength, matrix, neighborOffsets,
+                    Arrays.copyOf(neighborIndexes, neighborSize), Arrays.copyOf(neighborScores, neighborSize),
+                    historyOffsets, historyItems, historyWeights);
+        }
+
+        /**
+         * 将[from, to)内的位置按时间倒序排列，时间与行内序号合并为一个long排序，避免装箱
+         */
+        private static int[] sortByTimeDesc(int from, int to, long[] latest) {
+            int length = to - from;
+            int shift = 32 - Integer.numberOfLeadingZeros(Math.max(1, length));
+            long[] keys = new long[length];
+            for (int n = 0; n < length; n++) {
+                keys[n] = (latest[from + n] << shift) | n;
+            }
+            Arrays.sort(keys);
+            int[] positions = new int[length];
+            long mask = (1L << shift) - 1;
+            for (int n = 0; n < length; n++) {
+                positions[n] = from + (int) (keys[length - 1 - n] & mask);
+            }
+            return positions;
+        }
+    }
+
+    /**
+     * 物品下标及对应的权重或相似度，创建后不再修改
+     */
+    private static final class Row {
+
+        private final int[] indexes;
+
+        private final float[] scores;
+
+        private Row(int[] indexes, float[] scores) {
+            this.indexes = indexes;
+            this.scores = scores;
+        }
+
+        private int indexOf(int index) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] == index) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
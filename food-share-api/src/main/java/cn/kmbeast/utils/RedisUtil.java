@@ -1,25 +1,52 @@
 package cn.kmbeast.utils;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.LinkedHashMap;
 import java.util.HashSet;
 
 /**
  * Redis工具类
  */
+@Slf4j
 @Component
 public class RedisUtil {
 
+    /**
+     * 按标签删除时每批删除的key数量
+     */
+    private static final int TAG_DELETE_BATCH = 500;
+
+    /**
+     * keys遍历时每次SCAN的COUNT提示
+     */
+    public static final int SCAN_COUNT = 500;
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -84,17 +111,69 @@ public class RedisUtil {
     }
 
     /**
-     * 删除指定前缀的key
+     * 将key登记到标签集合，标签过期时间不短于登记的key
      * 
-     * @param prefix 前缀
+     * @param tagKey 标签集合键
+     * @param key    被登记的键
+     * @param time   被登记键的过期时间(秒)
      */
-    public void delByPrefix(String prefix) {
-        Set<String> keys = redisTemplate.keys(prefix + "*");
-        if (!CollectionUtils.isEmpty(keys)) {
-            redisTemplate.delete(keys);
+    public void tagAdd(String tagKey, String key, long time) {
+        tagAddAll(tagKey, Collections.singletonList(key), time);
+    }
+
+    /**
+     * 将多个key一次登记到标签集合，标签过期时间不短于登记的key
+     *
+     * @param tagKey 标签集合键
+     * @param keys   被登记的键
+     * @param time   被登记键的过期时间(秒)
+     */
+    public void tagAddAll(String tagKey, Collection<String> keys, long time) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return;
+        }
+        redisTemplate.opsForSet().add(tagKey, keys.toArray());
+        Long tagExpire = redisTemplate.getExpire(tagKey, TimeUnit.SECONDS);
+        if (tagExpire == null || tagExpire < time) {
+            redisTemplate.expire(tagKey, time, TimeUnit.SECONDS);
         }
     }
 
+    /**
+     * 删除标签下登记的全部key，只访问标签集合，不扫描整个键空间
+     * 删除后从标签中移除对应成员，删除期间新登记的key保留在标签中
+     * 
+     * @param tagKey 标签集合键
+     * @return 删除的key数量
+     */
+    public long delByTag(String tagKey) {
+        Set<Object> members = redisTemplate.opsForSet().members(tagKey);
+        if (CollectionUtils.isEmpty(members)) {
+            return 0;
+        }
+        List<Object> batch = new ArrayList<>(TAG_DELETE_BATCH);
+        for (Object member : members) {
+            batch.add(member);
+            if (batch.size() == TAG_DELETE_BATCH) {
+                delTagBatch(tagKey, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            delTagBatch(tagKey, batch);
+        }
+        return members.size();
+    }
+
+    private void delTagBatch(String tagKey, List<Object> batch) {
+        List<String> keys = new ArrayList<>(batch.size());
+        for (Object member : batch) {
+            keys.add(String.valueOf(member));
+        }
+        redisTemplate.delete(keys);
+        redisTemplate.opsForSet().remove(tagKey, batch.toArray());
+    }
+
     /**
      * 普通缓存获取
      * 
@@ -105,6 +184,18 @@ public class RedisUtil {
         return key == null ? null : redisTemplate.opsForValue().get(key);
     }
 
+    /**
+     * 读取序列化后的值，不反序列化
+     *
+     * @param key 键
+     * @return 序列化后的值，不存在返回null
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] getRaw(String key) {
+        byte[] rawKey = ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+        return redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+    }
+
     /**
      * 普通缓存放入
      * 
@@ -144,6 +235,47 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 批量获取缓存，一次MGET完成
+     *
+     * @param keys 键列表
+     * @return 值列表，与键的顺序一致，不存在的键对应null
+     */
+    public List<Object> multiGet(List<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        return values != null ? values : new ArrayList<>(Collections.nCopies(keys.size(), null));
+    }
+
+    /**
+     * 批量放入缓存并设置时间，通过管道一次提交
+     *
+     * @param map  键值对
+     * @param time 时间(秒) 要大于0
+     * @return true成功 false失败
+     */
+    public boolean multiSet(Map<String, Object> map, long time) {
+        if (map == null || map.isEmpty()) {
+            return true;
+        }
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    map.forEach((key, value) -> operations.opsForValue().set(key, value, time, TimeUnit.SECONDS));
+                    return null;
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * 递增
      * 
@@ -811,20 +943,113 @@ public class RedisUtil {
     }
 
     /**
-     * 模糊查询键
+     * 模糊查询键，基于SCAN实现，不阻塞Redis，但结果全部加载到内存，key较多时使用scan分批处理
      *
      * @param pattern 模式
      * @return 匹配的键集合
      */
     public Set<String> keys(String pattern) {
         try {
-            return redisTemplate.keys(pattern);
+            Set<String> keys = new HashSet<>();
+            scan(pattern, SCAN_COUNT, keys::addAll);
+            return keys;
         } catch (Exception e) {
             e.printStackTrace();
             return Collections.emptySet();
         }
     }
 
+    /**
+     * 使用SCAN分批遍历匹配的键，每批处理完成后才继续扫描，内存占用与批大小相关
+     * 集群模式下依次遍历每个主节点；遍历期间新增或删除的键可能遗漏，同一个键可能被返回多次
+     *
+     * @param pattern  模式
+     * @param count    每次SCAN的COUNT提示，同时是每批的键数量
+     * @param consumer 批处理
+     * @return 遍历的键数量
+     */
+    public long scan(String pattern, int count, Consumer<List<String>> consumer) {
+        Long total = redisTemplate.execute((RedisCallback<Long>) connection -> {
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(count).build();
+            if (!(connection instanceof RedisClusterConnection)) {
+                return drain(connection.scan(options), count, consumer);
+            }
+            RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+            long scanned = 0;
+            for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                if (node.isMaster()) {
+                    scanned += drain(clusterConnection.scan(node, options), count, consumer);
+                }
+            }
+            return scanned;
+        });
+        return total == null ? 0 : total;
+    }
+
+    /**
+     * 使用SCAN分批遍历匹配的键，批次交给线程池并行处理
+     * 同时处理的批次不超过parallelism，达到上限时暂停扫描，全部批次处理完成后返回
+     *
+     * @param pattern     模式
+     * @param count       每次SCAN的COUNT提示，同时是每批的键数量
+     * @param parallelism 最多同时处理的批次
+     * @param executor    线程池
+     * @param consumer    批处理，需线程安全
+     * @return 遍历的键数量
+     */
+    public long scan(String pattern, int count, int parallelism, Executor executor, Consumer<List<String>> consumer) {
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long total = scan(pattern, count, batch -> {
+            permits.acquireUninterruptibly();
+            try {
+                executor.execute(() -> {
+                    try {
+                        consumer.accept(batch);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        });
+        permits.acquireUninterruptibly(parallelism);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return total;
+    }
+
+    private long drain(Cursor<byte[]> cursor, int count, Consumer<List<String>> consumer) {
+        long scanned = 0;
+        try {
+            List<String> batch = new ArrayList<>(count);
+            while (cursor.hasNext()) {
+                batch.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                if (batch.size() >= count) {
+                    consumer.accept(batch);
+                    scanned += batch.size();
+                    batch = new ArrayList<>(count);
+                }
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+                scanned += batch.size();
+            }
+        } finally {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                log.warn("关闭SCAN游标失败: {}", e.getMessage());
+            }
+        }
+        return scanned;
+    }
+
     /**
      * HyperLogLog添加元素
      * 
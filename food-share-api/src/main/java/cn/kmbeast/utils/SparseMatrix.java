@@ -0,0 +1,405 @@
+package cn.kmbeast.utils;
+
+import java.util.Arrays;
+
+/**
+ * 只读稀疏矩阵，同时保存按行压缩（CSR）和按列压缩（CSC）两份数据，行列都可按稠密下标顺序遍历
+ * 行ID、列ID升序映射为稠密下标，行内按列下标升序、列内按行下标升序，
+ * 全部数据保存在基本类型数组中，每个非零元素约占16字节，不产生装箱对象
+ * 用于用户×物品互动矩阵、物品×词项特征矩阵等
+ */
+public class SparseMatrix {
+
+    /**
+     * 重复元素的合并方式
+     */
+    public enum Merge {
+        /**
+         * 取最大值
+         */
+        MAX,
+        /**
+         * 求和
+         */
+        SUM
+    }
+
+    private final int[] rowIds;
+
+    private final int[] columnIds;
+
+    /**
+     * 第r行的元素为rowColumns/rowValues[rowOffsets[r], rowOffsets[r + 1])
+     */
+    private final int[] rowOffsets;
+
+    private final int[] rowColumns;
+
+    private final float[] rowValues;
+
+    /**
+     * 第c列的元素为columnRows/columnValues[columnOffsets[c], columnOffsets[c + 1])
+     */
+    private final int[] columnOffsets;
+
+    private final int[] columnRows;
+
+    private final float[] columnValues;
+
+    private SparseMatrix(int[] rowIds, int[] columnIds, int[] rowOffsets, int[] rowColumns, float[] rowValues,
+                         int[] columnOffsets, int[] columnRows, float[] columnValues) {
+        this.rowIds = rowIds;
+        this.columnIds = columnIds;
+        this.rowOffsets = rowOffsets;
+        this.rowColumns = rowColumns;
+        this.rowValues = rowValues;
+        this.columnOffsets = columnOffsets;
+        this.columnRows = columnRows;
+        this.columnValues = columnValues;
+    }
+
+    /**
+     * @param merge 同一位置重复添加时的合并方式
+     * @return 矩阵构建器
+     */
+    public static Builder builder(Merge merge) {
+        return new Builder(merge);
+    }
+
+    public int getRowCount() {
+        return rowIds.length;
+    }
+
+    public int getColumnCount() {
+        return columnIds.length;
+    }
+
+    public int getNonZeroCount() {
+        return rowColumns.length;
+    }
+
+    /**
+     * @param rowId 行ID
+     * @return 行下标，不存在时为-1
+     */
+    public int rowIndex(int rowId) {
+        int row = Arrays.binarySearch(rowIds, rowId);
+        return row < 0 ? -1 : row;
+    }
+
+    /**
+     * @param columnId 列ID
+     * @return 列下标，不存在时为-1
+     */
+    public int columnIndex(int columnId) {
+        int column = Arrays.binarySearch(columnIds, columnId);
+        return column < 0 ? -1 : column;
+    }
+
+    public int rowId(int row) {
+        return rowIds[row];
+    }
+
+    public int columnId(int column) {
+        return columnIds[column];
+    }
+
+    /**
+     * 第row行元素的起始位置，与rowEnd一起用于遍历columnAt、rowValueAt
+     */
+    public int rowStart(int row) {
+        return rowOffsets[row];
+    }
+
+    public int rowEnd(int row) {
+        return rowOffsets[row + 1];
+    }
+
+    public int columnAt(int position) {
+        return rowColumns[position];
+    }
+
+    public float rowValueAt(int position) {
+        return rowValues[position];
+    }
+
+    /**
+     * 第column列元素的起始位置，与columnEnd一起用于遍历rowAt、columnValueAt
+     */
+    public int columnStart(int column) {
+        return columnOffsets[column];
+    }
+
+    public int columnEnd(int column) {
+        return columnOffsets[column + 1];
+    }
+
+    public int rowAt(int position) {
+        return columnRows[position];
+    }
+
+    public float columnValueAt(int position) {
+        return columnValues[position];
+    }
+
+    /**
+     * 元素在CSR中的位置
+     *
+     * @return 位置，元素不存在时为-1
+     */
+    public int positionOf(int row, int column) {
+        int position = Arrays.binarySearch(rowColumns, rowOffsets[row], rowOffsets[row + 1], column);
+        return position < 0 ? -1 : position;
+    }
+
+    /**
+     * 元素值，不存在时为0
+     */
+    public float get(int row, int column) {
+        int position = positionOf(row, column);
+        return position < 0 ? 0 : rowValues[position];
+    }
+
+    /**
+     * 两行的点积
+     */
+    public float rowDot(int a, int b) {
+        return dot(rowColumns, rowValues, rowOffsets[a], rowOffsets[a + 1], rowOffsets[b], rowOffsets[b + 1]);
+    }
+
+    /**
+     * 两列的点积
+     */
+    public float columnDot(int a, int b) {
+        return dot(columnRows, columnValues, columnOffsets[a], columnOffsets[a + 1],
+                columnOffsets[b], columnOffsets[b + 1]);
+    }
+
+    /**
+     * 两行的余弦相似度，任一行全为0时为0
+     */
+    public float rowCosine(int a, int b) {
+        return cosine(rowDot(a, b), rowNorm(a), rowNorm(b));
+    }
+
+    /**
+     * 两列的余弦相似度，任一列全为0时为0
+     */
+    public float columnCosine(int a, int b) {
+        return cosine(columnDot(a, b), columnNorm(a), columnNorm(b));
+    }
+
+    public float rowNorm(int row) {
+        return norm(rowValues, rowOffsets[row], rowOffsets[row + 1]);
+    }
+
+    public float columnNorm(int column) {
+        return norm(columnValues, columnOffsets[column], columnOffsets[column + 1]);
+    }
+
+    /**
+     * @return 各行的模，按行下标
+     */
+    public float[] rowNorms() {
+        float[] norms = new float[rowIds.length];
+        for (int row = 0; row < norms.length; row++) {
+            norms[row] = rowNorm(row);
+        }
+        return norms;
+    }
+
+    /**
+     * @return 各列的模，按列下标
+     */
+    public float[] columnNorms() {
+        float[] norms = new float[columnIds.length];
+        for (int column = 0; column < norms.length; column++) {
+            norms[column] = columnNorm(column);
+        }
+        return norms;
+    }
+
+    /**
+     * 两个按下标升序的稀疏向量的点积，双指针归并，耗时O(a + b)
+     *
+     * @param indexes 下标数组
+     * @param values  值数组
+     * @return 点积
+     */
+    public static float dot(int[] indexes, float[] values, int aFrom, int aTo, int bFrom, int bTo) {
+        float sum = 0;
+        int a = aFrom;
+        int b = bFrom;
+        while (a < aTo && b < bTo) {
+            int ia = indexes[a];
+            int ib = indexes[b];
+            if (ia == ib) {
+                sum += values[a++] * values[b++];
+            } else if (ia < ib) {
+                a++;
+            } else {
+                b++;
+            }
+        }
+        return sum;
+    }
+
+    private static float norm(float[] values, int from, int to) {
+        float sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i] * values[i];
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    private static float cosine(float dot, float normA, float normB) {
+        return normA == 0 || normB == 0 ? 0 : dot / (normA * normB);
+    }
+
+    /**
+     * 矩阵构建器，元素保存在可扩容的基本类型数组中，非线程安全
+     */
+    public static class Builder {
+
+        private final Merge merge;
+
+        private int[] rows = new int[1024];
+
+        private int[] columns = new int[1024];
+
+        private float[] values = new float[1024];
+
+        private int size;
+
+        private Builder(Merge merge) {
+            this.merge = merge;
+        }
+
+        /**
+         * 添加元素，值为0时忽略
+         *
+         * @param rowId    行ID
+         * @param columnId 列ID
+         * @param value    值
+         * @return 构建器
+         */
+        public Builder add(int rowId, int columnId, float value) {
+            if (value == 0) {
+                return this;
+            }
+            if (size == rows.length) {
+                int capacity = size + (size >> 1);
+                rows = Arrays.copyOf(rows, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            rows[size] = rowId;
+            columns[size] = columnId;
+            values[size] = value;
+            size++;
+            return this;
+        }
+
+        public SparseMatrix build() {
+            int[] rowIds = distinctSorted(rows, size);
+            int[] columnIds = distinctSorted(columns, size);
+            int[] denseRows = new int[size];
+            int[] denseColumns = new int[size];
+            for (int i = 0; i < size; i++) {
+                denseRows[i] = Arrays.binarySearch(rowIds, rows[i]);
+                denseColumns[i] = Arrays.binarySearch(columnIds, columns[i]);
+            }
+
+            // 先按列再按行做两次稳定的计数排序，得到行内按列升序的顺序
+            int[] byColumn = countingSort(identity(size), denseColumns, columnIds.length);
+            int[] order = countingSort(byColumn, denseRows, rowIds.length);
+
+            // 合并同一位置的重复元素
+            int[] rowOffsets = new int[rowIds.length + 1];
+            int[] rowColumns = new int[size];
+            float[] rowValues = new float[size];
+            int nonZero = 0;
+            int lastRow = -1;
+            int lastColumn = -1;
+            for (int i : order) {
+                int row = denseRows[i];
+                int column = denseColumns[i];
+                if (row == lastRow && column == lastColumn) {
+                    rowValues[nonZero - 1] = merge == Merge.MAX
+                            ? Math.max(rowValues[nonZero - 1], values[i]) : rowValues[nonZero - 1] + values[i];
+                    continue;
+                }
+                rowColumns[nonZero] = column;
+                rowValues[nonZero] = values[i];
+                nonZero++;
+                rowOffsets[row + 1]++;
+                lastRow = row;
+                lastColumn = column;
+            }
+            for (int r = 0; r < rowIds.length; r++) {
+                rowOffsets[r + 1] += rowOffsets[r];
+            }
+            rowColumns = Arrays.copyOf(rowColumns, nonZero);
+            rowValues = Arrays.copyOf(rowValues, nonZero);
+
+            // 由CSR按行顺序分发到各列，列内自然按行升序
+            int[] columnOffsets = new int[columnIds.length + 1];
+            for (int column : rowColumns) {
+                columnOffsets[column + 1]++;
+            }
+            for (int c = 0; c < columnIds.length; c++) {
+                columnOffsets[c + 1] += columnOffsets[c];
+            }
+            int[] next = Arrays.copyOf(columnOffsets, columnIds.length);
+            int[] columnRows = new int[nonZero];
+            float[] columnValues = new float[nonZero];
+            for (int r = 0; r < rowIds.length; r++) {
+                for (int p = rowOffsets[r]; p < rowOffsets[r + 1]; p++) {
+                    int position = next[rowColumns[p]]++;
+                    columnRows[position] = r;
+                    columnValues[position] = rowValues[p];
+                }
+            }
+            return new SparseMatrix(rowIds, columnIds, rowOffsets, rowColumns, rowValues,
+                    columnOffsets, columnRows, columnValues);
+        }
+
+        private static int[] distinctSorted(int[] ids, int size) {
+            int[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, distinct);
+        }
+
+        private static int[] identity(int size) {
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = i;
+            }
+            return result;
+        }
+
+        /**
+         * 按keys[order[i]]稳定排序order
+         */
+        private static int[] countingSort(int[] order, int[] keys, int keyCount) {
+            int[] offsets = new int[keyCount + 1];
+            for (int i : order) {
+                offsets[keys[i] + 1]++;
+            }
+            for (int k = 0; k < keyCount; k++) {
+                offsets[k + 1] += offsets[k];
+            }
+            int[] sorted = new int[order.length];
+            for (int i : order) {
+                sorted[offsets[keys[i]]++] = i;
+            }
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- 为flash_sale_item表的状态字段添加索引
+-- 秒杀生命周期调度只加载未结束（status < 2）的商品，避免全表扫描
+-- 执行时间：2026-10-17
+
+ALTER TABLE flash_sale_item ADD INDEX idx_status_start_time (status, start_time);
@@ -0,0 +1,8 @@
+-- 为flash_sale_order表的订单号添加唯一索引
+-- 秒杀订单异步批量写库时依赖该索引实现幂等（INSERT IGNORE）
+-- 执行时间：2026-10-17
+
+-- 添加前可先检查是否存在重复订单号
+-- SELECT order_id, COUNT(1) FROM flash_sale_order GROUP BY order_id HAVING COUNT(1) > 1;
+
+ALTER TABLE flash_sale_order ADD UNIQUE INDEX uk_order_id (order_id);
@@ -0,0 +1,9 @@
+-- 秒杀库存同步批次表
+-- 库存与销量增量按批次写入flash_sale_item，批次号与库存更新在同一事务中写入，重复提交的批次直接忽略
+-- 执行时间：2026-10-17
+
+CREATE TABLE `flash_sale_stock_sync` (
+  `batch_id` varchar(64) NOT NULL COMMENT '同步批次号',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '同步时间',
+  PRIMARY KEY (`batch_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='秒杀库存同步批次表';
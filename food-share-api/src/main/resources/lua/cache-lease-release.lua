@@ -0,0 +1,10 @@
+-- 缓存加载租约释放Lua脚本，只删除自己持有的租约，避免租约过期后误删其他节点的租约
+-- 也用于释放批量计算等按令牌持有的分布式锁
+-- KEYS[1]: 租约key
+-- ARGV[1]: 租约令牌
+-- 返回值: 1 释放成功; 0 租约已过期或被其他节点持有
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
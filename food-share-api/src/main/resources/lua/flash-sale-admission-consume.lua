@@ -0,0 +1,15 @@
+-- 秒杀购买令牌核销Lua脚本，令牌一致时删除令牌和排队号，一个令牌只能下单一次
+-- 核销后用户再次进入队列需重新排队
+-- KEYS[1]: 用户购买令牌key
+-- KEYS[2]: 排队号hash
+-- ARGV[1]: 购买令牌
+-- ARGV[2]: 用户ID
+-- 返回值: 1 核销成功; 0 令牌无效或已过期
+
+if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+    return 0
+end
+
+redis.call('DEL', KEYS[1])
+redis.call('HDEL', KEYS[2], ARGV[2])
+return 1
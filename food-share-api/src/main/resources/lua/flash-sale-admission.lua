@@ -0,0 +1,43 @@
+-- 秒杀排队放行Lua脚本，按叫号方式限速放行
+-- 每个用户进入队列时领取递增的排队号，闸门按放行速率随时间推进已放行号，排队号不大于已放行号的用户获得购买令牌
+-- KEYS[1]: 闸门hash（seq 已发号数; admitted 已放行号; last 上次推进时间）
+-- KEYS[2]: 排队号hash（field为用户ID）
+-- KEYS[3]: 用户购买令牌key
+-- ARGV[1]: 用户ID
+-- ARGV[2]: 当前时间（毫秒）
+-- ARGV[3]: 放行速率（个/秒）
+-- ARGV[4]: 购买令牌
+-- ARGV[5]: 购买令牌有效期（秒）
+-- ARGV[6]: 闸门与排队号过期时间（秒）
+-- 返回值: 0 已放行，令牌已写入; >0 前方等待人数
+
+local now = tonumber(ARGV[2])
+local rate = tonumber(ARGV[3])
+local seq = tonumber(redis.call('HGET', KEYS[1], 'seq') or '0')
+-- 闸门首次创建时先放行1秒的量
+local admitted = tonumber(redis.call('HGET', KEYS[1], 'admitted') or ARGV[3])
+local last = tonumber(redis.call('HGET', KEYS[1], 'last') or ARGV[2])
+
+-- 按经过的时间推进放行号，队列空闲时最多积累1秒的放行量，避免空闲后瞬间放行大量请求
+if now > last then
+    admitted = math.min(admitted + (now - last) * rate / 1000, seq + rate)
+    last = now
+end
+
+local ticket = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+if ticket == 0 then
+    seq = seq + 1
+    ticket = seq
+    redis.call('HSET', KEYS[2], ARGV[1], ticket)
+    redis.call('EXPIRE', KEYS[2], ARGV[6])
+end
+
+redis.call('HMSET', KEYS[1], 'seq', seq, 'admitted', tostring(admitted), 'last', last)
+redis.call('EXPIRE', KEYS[1], ARGV[6])
+
+if ticket <= admitted then
+    redis.call('SET', KEYS[3], ARGV[4], 'EX', ARGV[5])
+    return 0
+end
+
+return math.ceil(ticket - admitted)
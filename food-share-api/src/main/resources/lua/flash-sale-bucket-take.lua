@@ -0,0 +1,13 @@
+-- 分段库存借用Lua脚本，本段库存耗尽的请求依次向相邻分段扣减库存
+-- KEYS[1]: 分段库存key
+-- 返回值: >=0 剩余库存; -3 本段已售罄; -4 库存未预热
+
+local stock = redis.call('GET', KEYS[1])
+if not stock then
+    return -4
+end
+if tonumber(stock) <= 0 then
+    return -3
+end
+
+return redis.call('DECR', KEYS[1])
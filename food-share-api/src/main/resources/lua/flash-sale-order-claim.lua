@@ -0,0 +1,22 @@
+-- 秒杀订单待确认消息接管Lua脚本，将其他消费者空闲超时的待确认消息转移给当前消费者
+-- 消费者宕机或改名后，其已读取未确认的消息由存活的消费者重新处理
+-- KEYS[1]: 订单Stream key
+-- ARGV[1]: 消费者组
+-- ARGV[2]: 当前消费者
+-- ARGV[3]: 最小空闲时间（毫秒）
+-- ARGV[4]: 单次检查的待确认消息数
+-- 返回值: 接管的消息数
+
+local pending = redis.call('XPENDING', KEYS[1], ARGV[1], '-', '+', ARGV[4])
+local minIdle = tonumber(ARGV[3])
+local claimed = 0
+
+for _, entry in ipairs(pending) do
+    -- entry: {消息ID, 消费者, 空闲时间, 投递次数}
+    if entry[2] ~= ARGV[2] and tonumber(entry[3]) >= minIdle then
+        local ids = redis.call('XCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[3], entry[1], 'JUSTID')
+        claimed = claimed + #ids
+    end
+end
+
+return claimed
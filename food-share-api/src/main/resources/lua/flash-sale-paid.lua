@@ -0,0 +1,14 @@
+-- 秒杀订单支付Lua脚本，记录待同步的库存增量并累加销量缓存
+-- KEYS[1]: 待同步库存增量hash（field为商品ID）
+-- KEYS[2]: 商品销量缓存key
+-- ARGV[1]: 商品ID
+-- 返回值: 该商品待同步的增量
+
+local delta = redis.call('HINCRBY', KEYS[1], ARGV[1], 1)
+
+-- 销量缓存不存在时不创建，由列表查询重新计算，避免从0开始累加
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    redis.call('INCR', KEYS[2])
+end
+
+return delta
@@ -0,0 +1,15 @@
+-- 秒杀库存归还Lua脚本，删除用户秒杀记录与归还库存一次完成
+-- 只有用户记录仍存在且属于该订单时才归还库存，重复取消、超时回收重试或与手动取消并发时不会多归还，
+-- 也不会误删用户之后新订单的记录
+-- KEYS[1]: 库存key（分段模式为用户所属分段）
+-- KEYS[2]: 用户记录key
+-- ARGV[1]: 订单ID
+-- 返回值: >=0 归还后的库存; -1 用户记录不存在或不属于该订单，未归还
+
+if redis.call('GET', KEYS[2]) ~= cjson.encode(ARGV[1]) then
+    return -1
+end
+
+redis.call('DEL', KEYS[2])
+
+return redis.call('INCR', KEYS[1])
@@ -0,0 +1,11 @@
+-- 秒杀库存同步完成Lua脚本，批次号一致时才删除同步中的批次
+-- 避免多个节点同时同步时误删其他节点新转移的批次
+-- KEYS[1]: 同步中的批次hash
+-- ARGV[1]: 已完成的批次号
+-- 返回值: 1 已删除; 0 批次已变化
+
+if redis.call('HGET', KEYS[1], '_batch') == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+
+return 0
@@ -0,0 +1,16 @@
+-- 秒杀库存同步取批Lua脚本，将待同步增量转移到同步中的批次
+-- 上一批次未完成时（进程中断或写库失败）继续使用原批次，批次号不变，由数据库批次表保证幂等
+-- KEYS[1]: 待同步库存增量hash
+-- KEYS[2]: 同步中的批次hash
+-- ARGV[1]: 新批次号
+-- 返回值: 1 有待同步批次; 0 无数据
+
+if redis.call('EXISTS', KEYS[2]) == 0 then
+    if redis.call('EXISTS', KEYS[1]) == 0 then
+        return 0
+    end
+    redis.call('RENAME', KEYS[1], KEYS[2])
+    redis.call('HSET', KEYS[2], '_batch', ARGV[1])
+end
+
+return 1
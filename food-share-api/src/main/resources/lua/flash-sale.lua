@@ -1,43 +1,46 @@
--- 秒杀原子操作Lua脚本
+-- 秒杀原子操作Lua脚本（限流、防重、库存校验、扣减、用户记录一次完成）
+-- 所有key使用同一个hash tag（商品ID或商品分段），保证集群模式下落在同一slot
 -- KEYS[1]: 库存key
--- KEYS[2]: 锁key  
--- KEYS[3]: 用户记录key
--- ARGV[1]: 用户ID
--- ARGV[2]: 锁过期时间
--- ARGV[3]: 用户记录过期时间
+-- KEYS[2]: 用户记录key
+-- KEYS[3]: 限流key
+-- ARGV[1]: 订单ID（写入用户记录）
+-- ARGV[2]: 用户记录过期时间（秒）
+-- ARGV[3]: 限流时间窗口（秒）
+-- ARGV[4]: 限流窗口内最大请求数
+-- ARGV[5]: 分段库存模式标记，为1时本段库存耗尽会先写入用户记录占位，再由调用方向相邻分段借库存
+-- 返回值: >=0 剩余库存; -1 重复下单; -2 请求过于频繁; -3 已售罄; -4 库存未预热; -5 本段库存耗尽
 
--- 检查用户是否已经参与过秒杀
-if redis.call('EXISTS', KEYS[3]) == 1 then
-    return {-1, '用户已参与过此秒杀'}
+-- 接口限流
+local accessCount = redis.call('INCR', KEYS[3])
+if accessCount == 1 then
+    redis.call('EXPIRE', KEYS[3], ARGV[3])
+end
+if accessCount > tonumber(ARGV[4]) then
+    return -2
 end
 
--- 尝试获取分布式锁
-local lockResult = redis.call('SET', KEYS[2], ARGV[1], 'PX', ARGV[2], 'NX')
-if not lockResult then
-    return {-2, '系统繁忙，请稍后再试'}
+-- 检查用户是否已经参与过秒杀
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return -1
 end
 
 -- 检查库存
 local stock = redis.call('GET', KEYS[1])
-if not stock or tonumber(stock) <= 0 then
-    -- 释放锁
-    redis.call('DEL', KEYS[2])
-    return {-3, '商品已售罄'}
+if not stock then
+    return -4
+end
+if tonumber(stock) <= 0 then
+    if ARGV[5] == '1' then
+        redis.call('SET', KEYS[2], cjson.encode(ARGV[1]), 'EX', ARGV[2])
+        return -5
+    end
+    return -3
 end
 
 -- 扣减库存
 local remainingStock = redis.call('DECR', KEYS[1])
-if remainingStock < 0 then
-    -- 库存不足，恢复库存并释放锁
-    redis.call('INCR', KEYS[1])
-    redis.call('DEL', KEYS[2])
-    return {-3, '商品已售罄'}
-end
-
--- 记录用户参与记录
-redis.call('SET', KEYS[3], ARGV[1], 'EX', ARGV[3])
 
--- 释放锁
-redis.call('DEL', KEYS[2])
+-- 记录用户参与记录，值按JSON字符串写入，RedisTemplate经CompactRedisSerializer的JSON兼容读取
+redis.call('SET', KEYS[2], cjson.encode(ARGV[1]), 'EX', ARGV[2])
 
-return {1, '秒杀成功', remainingStock}
+return remainingStock
@@ -0,0 +1,189 @@
+package cn.kmbeast.config;
+
+import cn.kmbeast.service.impl.FlashSaleStockService;
+import cn.kmbeast.utils.CacheConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 秒杀Lua脚本返回值测试
+ * 在真实Redis上执行LuaScriptConfig中的脚本，逐个验证各返回码及对应的数据变化
+ * 每个用例会清空指定的数据库，不要指向业务使用的库；连接不上Redis时跳过
+ * 指定Redis：-Dredis.host=127.0.0.1 -Dredis.port=6379 -Dredis.database=15
+ */
+public class FlashSaleScriptTest {
+
+    private static final Integer ITEM_ID = 9999;
+
+    private static final String EXPIRE = "60";
+
+    private final LuaScriptConfig scripts = new LuaScriptConfig();
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final String stockKey = CacheConstants.getFlashSaleStockKey(ITEM_ID);
+
+    @BeforeEach
+    public void setUp() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "127.0.0.1"), Integer.getInteger("redis.port", 6379));
+        configuration.setDatabase(Integer.getInteger("redis.database", 15));
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        try {
+            flushDb();
+        } catch (Exception e) {
+            connectionFactory.destroy();
+            connectionFactory = null;
+            Assumptions.assumeTrue(false, "Redis不可用，跳过: " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (connectionFactory == null) {
+            return;
+        }
+        flushDb();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    public void testFlashSaleResultCodes() {
+        assertEquals(FlashSaleStockService.RESULT_NOT_PRELOADED, flashSale(1, "order-1", 10, false));
+
+        stringRedisTemplate.opsForValue().set(stockKey, "2");
+        assertEquals(1L, flashSale(1, "order-1", 10, false));
+        // 用户记录按JSON字符串写入
+        assertEquals("\"order-1\"", stringRedisTemplate.opsForValue().get(recordKey(1)));
+        assertEquals(FlashSaleStockService.RESULT_DUPLICATE, flashSale(1, "order-2", 10, false));
+        assertEquals(0L, flashSale(2, "order-3", 10, false));
+        assertEquals(FlashSaleStockService.RESULT_SOLD_OUT, flashSale(3, "order-4", 10, false));
+        assertNull(stringRedisTemplate.opsForValue().get(recordKey(3)));
+        assertEquals("0", stringRedisTemplate.opsForValue().get(stockKey));
+    }
+
+    @Test
+    public void testFlashSaleBucketEmptyHoldsRecord() {
+        stringRedisTemplate.opsForValue().set(stockKey, "0");
+        // 分段耗尽时先写入用户记录占位，防止借库存期间重复下单
+        assertEquals(-5L, flashSale(1, "order-1", 10, true));
+        assertEquals("\"order-1\"", stringRedisTemplate.opsForValue().get(recordKey(1)));
+        assertEquals(FlashSaleStockService.RESULT_DUPLICATE, flashSale(1, "order-1", 10, true));
+    }
+
+    @Test
+    public void testFlashSaleRateLimited() {
+        stringRedisTemplate.opsForValue().set(stockKey, "10");
+        assertEquals(9L, flashSale(1, "order-1", 2, false));
+        assertEquals(FlashSaleStockService.RESULT_DUPLICATE, flashSale(1, "order-1", 2, false));
+        assertEquals(FlashSaleStockService.RESULT_RATE_LIMITED, flashSale(1, "order-1", 2, false));
+        assertEquals("9", stringRedisTemplate.opsForValue().get(stockKey));
+    }
+
+    @Test
+    public void testBucketTake() {
+        DefaultRedisScript<Long> script = scripts.flashSaleBucketTakeScript();
+        List<String> keys = Collections.singletonList(stockKey);
+        assertEquals(FlashSaleStockService.RESULT_NOT_PRELOADED, (long) stringRedisTemplate.execute(script, keys));
+        stringRedisTemplate.opsForValue().set(stockKey, "1");
+        assertEquals(0L, (long) stringRedisTemplate.execute(script, keys));
+        assertEquals(FlashSaleStockService.RESULT_SOLD_OUT, (long) stringRedisTemplate.execute(script, keys));
+        assertEquals("0", stringRedisTemplate.opsForValue().get(stockKey));
+    }
+
+    @Test
+    public void testReleaseOnlyOwnOrderOnce() {
+        stringRedisTemplate.opsForValue().set(stockKey, "1");
+        assertEquals(0L, flashSale(1, "order-1", 10, false));
+
+        // 记录属于其他订单时不归还、不删除
+        assertEquals(-1L, release(1, "order-0"));
+        assertEquals("0", stringRedisTemplate.opsForValue().get(stockKey));
+        assertEquals("\"order-1\"", stringRedisTemplate.opsForValue().get(recordKey(1)));
+
+        assertEquals(1L, release(1, "order-1"));
+        assertFalse(stringRedisTemplate.hasKey(recordKey(1)));
+        // 重复归还不会多加库存
+        assertEquals(-1L, release(1, "order-1"));
+        assertEquals("1", stringRedisTemplate.opsForValue().get(stockKey));
+    }
+
+    @Test
+    public void testPaidCountsDeltaAndExistingSoldCount() {
+        DefaultRedisScript<Long> script = scripts.flashSalePaidScript();
+        String soldKey = CacheConstants.FLASH_SALE_ITEM_PREFIX + ITEM_ID + ":soldCount";
+        List<String> keys = Arrays.asList(CacheConstants.FLASH_SALE_STOCK_DELTA_KEY, soldKey);
+        assertEquals(1L, (long) stringRedisTemplate.execute(script, keys, String.valueOf(ITEM_ID)));
+        // 销量缓存不存在时不创建
+        assertFalse(stringRedisTemplate.hasKey(soldKey));
+        stringRedisTemplate.opsForValue().set(soldKey, "5");
+        assertEquals(2L, (long) stringRedisTemplate.execute(script, keys, String.valueOf(ITEM_ID)));
+        assertEquals("6", stringRedisTemplate.opsForValue().get(soldKey));
+    }
+
+    @Test
+    public void testOrderClaimTakesIdlePendingOfOtherConsumers() {
+        String stream = CacheConstants.FLASH_SALE_ORDER_STREAM_KEY;
+        String group = "order-group";
+        stringRedisTemplate.opsForStream().add(stream, Collections.singletonMap("orderId", "order-1"));
+        stringRedisTemplate.opsForStream().createGroup(stream, ReadOffset.from("0"), group);
+        // 消费者读取后未确认即宕机
+        stringRedisTemplate.opsForStream().read(Consumer.from(group, "dead"), StreamReadOptions.empty().count(10),
+                StreamOffset.create(stream, ReadOffset.lastConsumed()));
+
+        DefaultRedisScript<Long> script = scripts.flashSaleOrderClaimScript();
+        List<String> keys = Collections.singletonList(stream);
+        // 未达到空闲时间不接管
+        assertEquals(0L, (long) stringRedisTemplate.execute(script, keys, group, "alive", "60000", "100"));
+        assertEquals(1L, (long) stringRedisTemplate.execute(script, keys, group, "alive", "0", "100"));
+        // 已属于当前消费者的消息不再接管
+        assertEquals(0L, (long) stringRedisTemplate.execute(script, keys, group, "alive", "0", "100"));
+    }
+
+    private long flashSale(int userId, String orderId, int limitCount, boolean bucketMode) {
+        Long result = stringRedisTemplate.execute(scripts.flashSaleScript(),
+                Arrays.asList(stockKey, recordKey(userId), CacheConstants.getFlashSaleRateLimitKey(userId, ITEM_ID)),
+                orderId, EXPIRE, EXPIRE, String.valueOf(limitCount), bucketMode ? "1" : "0");
+        return result == null ? FlashSaleStockService.RESULT_NOT_PRELOADED : result;
+    }
+
+    private long release(int userId, String orderId) {
+        Long result = stringRedisTemplate.execute(scripts.flashSaleReleaseScript(),
+                Arrays.asList(stockKey, recordKey(userId)), orderId);
+        return result == null ? -1 : result;
+    }
+
+    private String recordKey(int userId) {
+        return CacheConstants.getFlashSaleUserRecordKey(userId, ITEM_ID);
+    }
+
+    private void flushDb() {
+        stringRedisTemplate.execute((RedisConnection connection) -> {
+            connection.flushDb();
+            return null;
+        });
+    }
+}
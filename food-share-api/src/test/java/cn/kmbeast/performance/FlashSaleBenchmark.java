@@ -0,0 +1,232 @@
+package cn.kmbeast.performance;
+
+import cn.kmbeast.config.LuaScriptConfig;
+import cn.kmbeast.service.impl.FlashSaleStockService;
+import cn.kmbeast.utils.CacheConstants;
+import cn.kmbeast.utils.RedisUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 秒杀扣减库存JMH基准测试
+ * 在真实Redis上对比三种扣减方式的吞吐量、延迟分位数（p50/p99/p999）与分配速率：
+ * 1. LOCK_DECR：原实现，SETNX加商品锁后逐条执行GET/DECR/SET，每条命令一次往返
+ * 2. LUA：单key库存，限流、防重、扣减在一个脚本中完成，一次往返
+ * 3. BUCKETS：分段库存，同一商品的请求分散到不同分段
+ * LUA与BUCKETS直接调用{@link FlashSaleStockService#tryAcquire}，执行的是{@link LuaScriptConfig}中的脚本
+ * 单机Redis上各分段位于同一节点，BUCKETS只体现脚本本身的开销，分段分散的收益需在集群中观察
+ * <p>
+ * 每轮迭代会清空指定的数据库，不要指向业务使用的库
+ * 运行：mvn test-compile 后执行本类的main方法，或
+ * java -Dredis.host=127.0.0.1 -Dredis.port=6379 -Dredis.database=15
+ * -cp target/test-classes:target/classes:依赖 org.openjdk.jmh.Main FlashSaleBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class FlashSaleBenchmark {
+
+    private static final Integer ITEM_ID = 9999;
+
+    /**
+     * 扣减结果：商品锁被占用（仅LOCK_DECR）
+     */
+    private static final long RESULT_BUSY = -6;
+
+    @Param({"LOCK_DECR", "LUA", "BUCKETS"})
+    private String variant;
+
+    /**
+     * 每轮迭代的初始库存
+     */
+    @Param({"10000"})
+    private int stock;
+
+    /**
+     * 参与秒杀的用户数，请求按顺序轮流使用，用户重复请求时命中防重或限流
+     */
+    @Param({"100000"})
+    private int users;
+
+    /**
+     * 分段数量（仅BUCKETS）
+     */
+    @Param({"8"})
+    private int buckets;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private FlashSaleStockService stockService;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "127.0.0.1"), Integer.getInteger("redis.port", 6379));
+        configuration.setDatabase(Integer.getInteger("redis.database", 15));
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setDefaultSerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+        RedisUtil redisUtil = new RedisUtil() {
+            @Override
+            public void del(String... keys) {
+                stringRedisTemplate.delete(Arrays.asList(keys));
+            }
+        };
+
+        LuaScriptConfig scripts = new LuaScriptConfig();
+        stockService = new FlashSaleStockService();
+        ReflectionTestUtils.setField(stockService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(stockService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(stockService, "redisUtil", redisUtil);
+        ReflectionTestUtils.setField(stockService, "flashSaleScript", scripts.flashSaleScript());
+        ReflectionTestUtils.setField(stockService, "flashSaleBucketTakeScript", scripts.flashSaleBucketTakeScript());
+        ReflectionTestUtils.setField(stockService, "flashSaleReleaseScript", scripts.flashSaleReleaseScript());
+        ReflectionTestUtils.setField(stockService, "stockBuckets", "BUCKETS".equals(variant) ? buckets : 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        flushDb();
+        connectionFactory.destroy();
+    }
+
+    /**
+     * 每轮迭代清空数据库并重新预热库存，保证各轮的成功、售罄比例一致
+     */
+    @Setup(Level.Iteration)
+    public void resetStock() {
+        flushDb();
+        sequence.set(0);
+        stockService.preload(ITEM_ID, stock);
+    }
+
+    @Benchmark
+    public long flashSale(Outcome outcome) {
+        int userId = sequence.getAndIncrement() % users + 1;
+        String orderId = String.valueOf(userId);
+        long result = "LOCK_DECR".equals(variant)
+                ? lockAndDecr(userId, orderId)
+                : stockService.tryAcquire(ITEM_ID, userId, orderId);
+        outcome.record(result);
+        return result;
+    }
+
+    /**
+     * 原实现的命令序列：限流、防重、商品锁、扣减、回补、写用户记录、释放锁
+     */
+    private long lockAndDecr(Integer userId, String orderId) {
+        String limitKey = CacheConstants.getFlashSaleRateLimitKey(userId, ITEM_ID);
+        Long accessCount = stringRedisTemplate.opsForValue().increment(limitKey);
+        if (accessCount != null && accessCount == 1) {
+            stringRedisTemplate.expire(limitKey, CacheConstants.FLASH_SALE_RATE_LIMIT_PERIOD, TimeUnit.SECONDS);
+        }
+        if (accessCount != null && accessCount > CacheConstants.FLASH_SALE_RATE_LIMIT_COUNT) {
+            return FlashSaleStockService.RESULT_RATE_LIMITED;
+        }
+        String recordKey = CacheConstants.getFlashSaleUserRecordKey(userId, ITEM_ID);
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(recordKey))) {
+            return FlashSaleStockService.RESULT_DUPLICATE;
+        }
+
+        String lockKey = CacheConstants.FLASH_SALE_LOCK_PREFIX + ITEM_ID;
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(lockKey, String.valueOf(userId)))) {
+            return RESULT_BUSY;
+        }
+        try {
+            String stockKey = CacheConstants.getFlashSaleStockKey(ITEM_ID);
+            if (stringRedisTemplate.opsForValue().get(stockKey) == null) {
+                return FlashSaleStockService.RESULT_NOT_PRELOADED;
+            }
+            Long remaining = stringRedisTemplate.opsForValue().decrement(stockKey);
+            if (remaining == null || remaining < 0) {
+                stringRedisTemplate.opsForValue().increment(stockKey);
+                return FlashSaleStockService.RESULT_SOLD_OUT;
+            }
+            stringRedisTemplate.opsForValue().set(recordKey, orderId,
+                    CacheConstants.FLASH_SALE_USER_RECORD_EXPIRE, TimeUnit.SECONDS);
+            return remaining;
+        } finally {
+            stringRedisTemplate.delete(lockKey);
+        }
+    }
+
+    private void flushDb() {
+        stringRedisTemplate.execute((RedisConnection connection) -> {
+            connection.flushDb();
+            return null;
+        });
+    }
+
+    /**
+     * 每个线程的扣减结果计数，随基准结果一起输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+
+        public long success;
+
+        public long soldOut;
+
+        public long duplicate;
+
+        public long rateLimited;
+
+        public long busy;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            success = soldOut = duplicate = rateLimited = busy = 0;
+        }
+
+        private void record(long result) {
+            if (result >= 0) {
+                success++;
+            } else if (result == FlashSaleStockService.RESULT_SOLD_OUT) {
+                soldOut++;
+            } else if (result == FlashSaleStockService.RESULT_DUPLICATE) {
+                duplicate++;
+            } else if (result == FlashSaleStockService.RESULT_RATE_LIMITED) {
+                rateLimited++;
+            } else if (result == RESULT_BUSY) {
+                busy++;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FlashSaleBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,141 @@
+package cn.kmbeast.utils;
+
+import cn.kmbeast.pojo.api.ApiResult;
+import cn.kmbeast.pojo.api.Result;
+import cn.kmbeast.pojo.vo.GourmetVO;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Redis紧凑序列化测试
+ * 旧版本Jackson2JsonRedisSerializer写入的JSON数据可以继续读取，二进制格式可往返，标量仍写为JSON
+ */
+public class CompactRedisSerializerTest {
+
+    private static final int COMPRESS_THRESHOLD = 1024;
+
+    private final CompactRedisSerializer compact = serializer(true);
+
+    @Test
+    public void testReadsLegacyJson() {
+        Jackson2JsonRedisSerializer<Object> legacy = legacySerializer();
+        List<GourmetVO> gourmets = gourmets(3);
+        Result<List<GourmetVO>> result = ApiResult.success(gourmets);
+
+        assertEquals(gourmets, compact.deserialize(legacy.serialize(gourmets)));
+        Object read = compact.deserialize(legacy.serialize(result));
+        assertEquals(result.getClass(), read.getClass());
+        assertEquals(result.getCode(), ((Result<?>) read).getCode());
+        assertEquals(gourmets, ((Result<?>) read).getData());
+        assertEquals(100, compact.deserialize(legacy.serialize(100)));
+        assertEquals("value", compact.deserialize(legacy.serialize("value")));
+    }
+
+    @Test
+    public void testCompactRoundTrip() {
+        // 小对象不压缩，大对象LZ4压缩
+        List<GourmetVO> small = gourmets(1);
+        List<GourmetVO> large = gourmets(50);
+        byte[] plain = compact.serialize(small);
+        byte[] compressed = compact.serialize(large);
+        assertEquals(0x00, plain[0]);
+        assertEquals(0x01, plain[1]);
+        assertEquals(0x00, compressed[0]);
+        assertEquals(0x02, compressed[1]);
+        assertEquals(small, compact.deserialize(plain));
+        assertEquals(large, compact.deserialize(compressed));
+    }
+
+    @Test
+    public void testScalarsWrittenAsJson() {
+        // INCR、Lua脚本依赖标量的JSON文本
+        assertArrayEquals("100".getBytes(StandardCharsets.UTF_8), compact.serialize(100));
+        assertArrayEquals("\"value\"".getBytes(StandardCharsets.UTF_8), compact.serialize("value"));
+        assertArrayEquals("true".getBytes(StandardCharsets.UTF_8), compact.serialize(true));
+        assertEquals(101L, ((Number) compact.deserialize("101".getBytes(StandardCharsets.UTF_8))).longValue());
+    }
+
+    @Test
+    public void testJsonModeReadableByLegacy() {
+        // 关闭二进制格式后写入的数据，回滚到旧版本仍可读取
+        List<GourmetVO> gourmets = gourmets(3);
+        byte[] json = serializer(false).serialize(gourmets);
+        assertEquals(gourmets, legacySerializer().deserialize(json));
+        assertEquals(gourmets, compact.deserialize(json));
+    }
+
+    @Test
+    public void testNullAndUnknownFlag() {
+        assertArrayEquals(new byte[0], compact.serialize(null));
+        assertNull(compact.deserialize(null));
+        assertNull(compact.deserialize(new byte[0]));
+        assertThrows(SerializationException.class, () -> compact.deserialize(new byte[]{0x00, 0x09, 0x01}));
+    }
+
+    private static List<GourmetVO> gourmets(int count) {
+        List<GourmetVO> gourmets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            GourmetVO gourmetVO = new GourmetVO();
+            gourmetVO.setId(i + 1);
+            gourmetVO.setTitle("美食" + i);
+            gourmetVO.setContent("做法说明，第" + i + "步");
+            gourmetVO.setCreateTime(LocalDateTime.of(2024, 1, 1, 12, 0, i % 60));
+            gourmetVO.setIsPublish(true);
+            gourmetVO.setCategoryName("家常菜");
+            gourmetVO.setViewCount(i * 10);
+            gourmetVO.setRating(4.5);
+            gourmets.add(gourmetVO);
+        }
+        return gourmets;
+    }
+
+    /**
+     * 与RedisConfig相同配置的序列化器
+     */
+    private static CompactRedisSerializer serializer(boolean writeCompact) {
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        return new CompactRedisSerializer(valueMapper(new ObjectMapper()), valueMapper(new ObjectMapper(smileFactory)),
+                COMPRESS_THRESHOLD, writeCompact);
+    }
+
+    private static ObjectMapper valueMapper(ObjectMapper mapper) {
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
+
+    /**
+     * 改用紧凑序列化之前RedisTemplate使用的序列化器
+     */
+    private static Jackson2JsonRedisSerializer<Object> legacySerializer() {
+        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(Object.class);
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        mapper.registerModule(new JavaTimeModule());
+        serializer.setObjectMapper(mapper);
+        return serializer;
+    }
+}
@@ -0,0 +1,161 @@
+package cn.kmbeast.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 内容相似度批量计算测试
+ * 3000个物品计算全部TopK，抽样源物品与逐对暴力计算的相似度比较
+ */
+public class ContentSimilarityIndexTest {
+
+    private static final int ITEMS = 3000;
+
+    private static final int TERMS = 8000;
+
+    private static final int USERS = 2000;
+
+    private static final int K = 50;
+
+    private static final float CONTENT_WEIGHT = 0.7f;
+
+    private static final float BEHAVIOR_WEIGHT = 0.3f;
+
+    private static final double DELTA = 1e-5;
+
+    private final List<Map<Integer, Float>> features = new ArrayList<>();
+
+    private final List<Map<Integer, Float>> behaviors = new ArrayList<>();
+
+    @Test
+    public void testTopKMatchesBruteForce() {
+        Random random = new Random(5);
+        ContentSimilarityIndex index = buildIndex(random);
+        int[] ids = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            ids[i] = itemId(i);
+        }
+        ContentSimilarityIndex.Neighbors[] result = index.topK(ids, K, 4);
+
+        for (int t = 0; t < 50; t++) {
+            int source = random.nextInt(ITEMS);
+            double[] expected = new double[ITEMS];
+            for (int item = 0; item < ITEMS; item++) {
+                expected[item] = item == source ? Double.NEGATIVE_INFINITY : similarity(source, item);
+            }
+            ContentSimilarityIndex.Neighbors neighbors = result[source];
+            assertEquals(K, neighbors.size());
+            for (int n = 0; n < neighbors.size(); n++) {
+                assertEquals(expected[neighbors.getId(n) - 1], neighbors.getScore(n), DELTA);
+                if (n > 0) {
+                    assertTrue(neighbors.getScore(n - 1) >= neighbors.getScore(n));
+                }
+            }
+            double[] sorted = expected.clone();
+            Arrays.sort(sorted);
+            // 第K个的得分与暴力结果一致，说明没有遗漏得分更高的物品
+            assertEquals(sorted[ITEMS - K], neighbors.getScore(K - 1), DELTA);
+        }
+    }
+
+    @Test
+    public void testResultIndependentOfParallelism() {
+        ContentSimilarityIndex index = buildIndex(new Random(9));
+        // 包含不在特征矩阵中的物品
+        int[] ids = new int[ITEMS / 3 + 1];
+        for (int i = 0; i < ids.length - 1; i++) {
+            ids[i] = itemId(i * 3);
+        }
+        ids[ids.length - 1] = -1;
+        ContentSimilarityIndex.Neighbors[] serial = index.topK(ids, K, 1);
+        ContentSimilarityIndex.Neighbors[] parallel = index.topK(ids, K, 8);
+        assertEquals(0, serial[ids.length - 1].size());
+        for (int s = 0; s < ids.length; s++) {
+            assertArrayEquals(idsOf(serial[s]), idsOf(parallel[s]));
+        }
+    }
+
+    private ContentSimilarityIndex buildIndex(Random random) {
+        features.clear();
+        behaviors.clear();
+        SparseMatrix.Builder featureBuilder = SparseMatrix.builder(SparseMatrix.Merge.SUM);
+        SparseMatrix.Builder behaviorBuilder = SparseMatrix.builder(SparseMatrix.Merge.SUM);
+        for (int i = 0; i < ITEMS; i++) {
+            int item = i;
+            Map<Integer, Float> terms = new HashMap<>();
+            // 每个物品带一个分类词，保证都有足够多的候选
+            terms.put(TERMS + random.nextInt(20), 2f);
+            for (int n = 0; n < 40; n++) {
+                // 词频偏斜，少数词出现在大量物品中
+                terms.merge((int) (Math.pow(random.nextDouble(), 2) * TERMS), random.nextFloat(), Float::sum);
+            }
+            features.add(terms);
+            terms.forEach((term, weight) -> featureBuilder.add(itemId(item), term, weight));
+
+            Map<Integer, Float> users = new HashMap<>();
+            int count = random.nextInt(10);
+            for (int n = 0; n < count; n++) {
+                users.merge(random.nextInt(USERS), 0.3f * (1 + random.nextInt(3)), Float::sum);
+            }
+            behaviors.add(users);
+            users.forEach((user, score) -> behaviorBuilder.add(itemId(item), user, score));
+        }
+        // 行为矩阵中不在候选物品内的物品被忽略
+        behaviorBuilder.add(999999, 1, 1f);
+        return new ContentSimilarityIndex(featureBuilder.build(), behaviorBuilder.build(),
+                CONTENT_WEIGHT, BEHAVIOR_WEIGHT);
+    }
+
+    private double similarity(int a, int b) {
+        double dot = 0;
+        for (Map.Entry<Integer, Float> entry : features.get(a).entrySet()) {
+            Float weight = features.get(b).get(entry.getKey());
+            if (weight != null) {
+                dot += entry.getValue() * weight;
+            }
+        }
+        double behaviorDot = 0;
+        for (Map.Entry<Integer, Float> entry : behaviors.get(a).entrySet()) {
+            Float score = behaviors.get(b).get(entry.getKey());
+            if (score != null) {
+                behaviorDot += entry.getValue() * score;
+            }
+        }
+        double similarity = CONTENT_WEIGHT * dot / Math.sqrt(squareSum(features.get(a)) * squareSum(features.get(b)));
+        if (behaviorDot != 0) {
+            similarity += BEHAVIOR_WEIGHT * behaviorDot
+                    / Math.sqrt((double) behaviors.get(a).size() * behaviors.get(b).size());
+        }
+        return similarity;
+    }
+
+    private static double squareSum(Map<Integer, Float> values) {
+        double sum = 0;
+        for (float value : values.values()) {
+            sum += value * value;
+        }
+        return sum;
+    }
+
+    private static int itemId(int item) {
+        return item + 1;
+    }
+
+    private static int[] idsOf(ContentSimilarityIndex.Neighbors neighbors) {
+        int[] ids = new int[neighbors.size()];
+        for (int n = 0; n < ids.length; n++) {
+            ids[n] = neighbors.getId(n);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,79 @@
+package cn.kmbeast.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Count-Min Sketch测试
+ * 估计值不小于真实次数，误差在宽度决定的范围内，并发增加不丢失计数
+ */
+public class CountMinSketchTest {
+
+    @Test
+    public void testEstimateBounds() {
+        int width = 4096;
+        CountMinSketch sketch = new CountMinSketch(4, width);
+        Map<String, Long> actual = new HashMap<>();
+        Random random = new Random(3);
+        long total = 0;
+        // 少数热点key加大量长尾key
+        for (int i = 0; i < 200000; i++) {
+            String key = random.nextInt(10) == 0 ? "hot:" + random.nextInt(5) : "cold:" + random.nextInt(20000);
+            sketch.add(key, 1);
+            actual.merge(key, 1L, Long::sum);
+            total++;
+        }
+        // 单行误差期望为total/width，4行取最小值后绝大多数key误差不超过e倍期望
+        long bound = (long) (Math.E * total / width);
+        int exceeded = 0;
+        for (Map.Entry<String, Long> entry : actual.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), entry.getKey());
+            if (estimate - entry.getValue() > bound) {
+                exceeded++;
+            }
+        }
+        assertTrue(exceeded < actual.size() / 100, "超出误差范围的key: " + exceeded);
+        for (int i = 0; i < 5; i++) {
+            String key = "hot:" + i;
+            assertTrue(sketch.estimate(key) - actual.get(key) <= bound, key);
+        }
+    }
+
+    @Test
+    public void testClear() {
+        CountMinSketch sketch = new CountMinSketch(4, 100);
+        sketch.add("key", 5);
+        sketch.add(42, 3);
+        assertEquals(5, sketch.estimate("key"));
+        assertEquals(3, sketch.estimate(42));
+        sketch.clear();
+        assertEquals(0, sketch.estimate("key"));
+        assertEquals(0, sketch.estimate(42));
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    sketch.add("shared", 1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(80000, sketch.estimate("shared"));
+    }
+}
@@ -0,0 +1,213 @@
+package cn.kmbeast.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 协同过滤模型测试
+ * 随机生成互动，与按定义逐对计算相似度的暴力实现比较邻居和推荐结果，增量更新与全量重建比较
+ */
+public class ItemCfModelTest {
+
+    private static final int USERS = 300;
+
+    private static final int ITEMS = 80;
+
+    private static final int NEIGHBORS = 10;
+
+    private static final int HISTORY = 5;
+
+    private static final float SHRINK = 5f;
+
+    private static final double DELTA = 1e-4;
+
+    @Test
+    public void testBuildMatchesBruteForce() {
+        Random random = new Random(7);
+        ItemCfModel.Builder builder = ItemCfModel.builder(NEIGHBORS, HISTORY);
+        // 用户 -> 物品 -> 偏好（最大权重）及最近时间
+        Map<Integer, Map<Integer, Float>> preferences = new HashMap<>();
+        Map<Integer, Map<Integer, Long>> times = new HashMap<>();
+        for (int k = 0; k < 4000; k++) {
+            int user = random.nextInt(USERS);
+            int item = random.nextInt(ITEMS) * 7;
+            float weight = 1 + random.nextFloat() * 4;
+            long time = k;
+            builder.add(user, item, weight, time);
+            preferences.computeIfAbsent(user, u -> new HashMap<>()).merge(item, weight, Math::max);
+            times.computeIfAbsent(user, u -> new HashMap<>()).merge(item, time, Math::max);
+        }
+        ItemCfModel model = builder.build();
+        BruteForce expected = new BruteForce(preferences);
+
+        assertEquals(preferences.size(), model.getUserCount());
+        for (int item : expected.items()) {
+            assertEquals(expected.similarItems(item), model.similarItems(item), "物品" + item + "的邻居");
+        }
+        for (int user : preferences.keySet()) {
+            List<Integer> history = expected.recentItems(times.get(user));
+            Map<Integer, Double> scores = expected.recommendScores(history, preferences.get(user));
+            List<Integer> actual = model.recommend(user, 10);
+            List<Double> expectedScores = new ArrayList<>(scores.values());
+            expectedScores.sort(Collections.reverseOrder());
+            assertEquals(Math.min(10, expectedScores.size()), actual.size());
+            // 得分相近的物品顺序可能因累加顺序不同而交换，按得分比较
+            for (int n = 0; n < actual.size(); n++) {
+                assertEquals(expectedScores.get(n), scores.get(actual.get(n)), DELTA, "用户" + user + "第" + n + "个推荐");
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateMatchesRebuild() {
+        Random random = new Random(1);
+        Map<Integer, Map<Integer, Float>> preferences = new HashMap<>();
+        Map<Integer, Map<Integer, Long>> times = new HashMap<>();
+        long time = 0;
+        for (int k = 0; k < 3000; k++) {
+            int user = random.nextInt(USERS);
+            int item = random.nextInt(ITEMS);
+            preferences.computeIfAbsent(user, u -> new HashMap<>()).merge(item, 1 + random.nextFloat() * 4, Math::max);
+            times.computeIfAbsent(user, u -> new HashMap<>()).put(item, time++);
+        }
+        ItemCfModel model = build(preferences, times);
+
+        // 包含新用户、新物品和取消互动
+        for (int step = 0; step < 200; step++) {
+            int user = random.nextInt(USERS + 20);
+            int item = random.nextInt(ITEMS + 5);
+            float weight = random.nextInt(4) == 0 ? 0 : 1 + random.nextFloat() * 4;
+            if (weight > 0) {
+                preferences.computeIfAbsent(user, u -> new HashMap<>()).put(item, weight);
+                times.computeIfAbsent(user, u -> new HashMap<>()).put(item, time++);
+            } else if (preferences.containsKey(user)) {
+                preferences.get(user).remove(item);
+                times.get(user).remove(item);
+            }
+            model.update(user, item, weight);
+
+            // 被更新物品的邻居按全部互动重新计算，与重建结果一致
+            List<Integer> expected = build(preferences, times).similarItems(item);
+            List<Integer> actual = model.similarItems(item);
+            assertEquals(expected.size(), actual.size(), "第" + step + "次更新物品" + item);
+            BruteForce bruteForce = new BruteForce(preferences);
+            for (int n = 0; n < actual.size(); n++) {
+                assertEquals(bruteForce.similarity(item, expected.get(n)), bruteForce.similarity(item, actual.get(n)),
+                        DELTA, "第" + step + "次更新物品" + item + "第" + n + "个邻居");
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownUserAndItem() {
+        ItemCfModel model = ItemCfModel.builder(NEIGHBORS, HISTORY)
+                .add(1, 10, 1f, 1)
+                .add(1, 20, 2f, 2)
+                .add(2, 10, 3f, 3)
+                .build();
+        assertTrue(model.recommend(3, 10).isEmpty());
+        assertTrue(model.similarItems(30).isEmpty());
+        assertEquals(Collections.singletonList(20), model.similarItems(10));
+        assertEquals(Collections.singletonList(20), model.recommend(2, 10));
+    }
+
+    private static ItemCfModel build(Map<Integer, Map<Integer, Float>> preferences,
+                                     Map<Integer, Map<Integer, Long>> times) {
+        ItemCfModel.Builder builder = ItemCfModel.builder(NEIGHBORS, HISTORY);
+        preferences.forEach((user, items) -> items.forEach((item, weight) ->
+                builder.add(user, item, weight, times.get(user).get(item))));
+        return builder.build();
+    }
+
+    /**
+     * 按定义计算的协同过滤结果，用户物品数不超过模型的截断上限
+     */
+    static final class BruteForce {
+
+        private final Map<Integer, Map<Integer, Float>> preferences;
+
+        private final Map<Integer, Map<Integer, Float>> itemUsers = new HashMap<>();
+
+        BruteForce(Map<Integer, Map<Integer, Float>> preferences) {
+            this.preferences = preferences;
+            preferences.forEach((user, items) -> items.forEach((item, weight) ->
+                    itemUsers.computeIfAbsent(item, i -> new HashMap<>()).put(user, weight)));
+        }
+
+        Set<Integer> items() {
+            return itemUsers.keySet();
+        }
+
+        double similarity(int a, int b) {
+            Map<Integer, Float> usersA = itemUsers.get(a);
+            Map<Integer, Float> usersB = itemUsers.get(b);
+            double dot = 0;
+            int cooccurrences = 0;
+            for (Map.Entry<Integer, Float> entry : usersA.entrySet()) {
+                Float weight = usersB.get(entry.getKey());
+                if (weight != null) {
+                    dot += entry.getValue() * weight;
+                    cooccurrences++;
+                }
+            }
+            return dot / (norm(usersA) * norm(usersB)) * cooccurrences / (cooccurrences + SHRINK);
+        }
+
+        /**
+         * 有共同用户的物品按相似度降序取前K个
+         */
+        List<Integer> similarItems(int item) {
+            Set<Integer> candidates = new HashSet<>();
+            for (int user : itemUsers.get(item).keySet()) {
+                candidates.addAll(preferences.get(user).keySet());
+            }
+            candidates.remove(item);
+            List<Integer> ranked = new ArrayList<>(candidates);
+            ranked.sort((a, b) -> Double.compare(similarity(item, b), similarity(item, a)));
+            return new ArrayList<>(ranked.subList(0, Math.min(NEIGHBORS, ranked.size())));
+        }
+
+        /**
+         * 用户最近的H个物品
+         */
+        List<Integer> recentItems(Map<Integer, Long> times) {
+            List<Integer> items = new ArrayList<>(times.keySet());
+            items.sort((a, b) -> Long.compare(times.get(b), times.get(a)));
+            return new ArrayList<>(items.subList(0, Math.min(HISTORY, items.size())));
+        }
+
+        /**
+         * 最近物品的邻居按偏好加权累加的得分，排除最近物品本身
+         */
+        Map<Integer, Double> recommendScores(List<Integer> history, Map<Integer, Float> weights) {
+            Map<Integer, Double> scores = new HashMap<>();
+            for (int item : history) {
+                for (int neighbor : similarItems(item)) {
+                    if (!history.contains(neighbor)) {
+                        scores.merge(neighbor, weights.get(item) * similarity(item, neighbor), Double::sum);
+                    }
+                }
+            }
+            return scores;
+        }
+
+        private static double norm(Map<Integer, Float> weights) {
+            double sum = 0;
+            for (float weight : weights.values()) {
+                sum += weight * weight;
+            }
+            return Math.sqrt(sum);
+        }
+    }
+}
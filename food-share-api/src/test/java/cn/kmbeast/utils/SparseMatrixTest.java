@@ -0,0 +1,156 @@
+package cn.kmbeast.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 稀疏矩阵测试
+ * 随机生成元素，与同样数据的稠密矩阵逐项比较取值、点积、余弦相似度以及行列两份存储
+ */
+public class SparseMatrixTest {
+
+    private static final int ROWS = 50;
+
+    private static final int COLUMNS = 40;
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void testSumMatchesDense() {
+        Random random = new Random(7);
+        SparseMatrix.Builder builder = SparseMatrix.builder(SparseMatrix.Merge.SUM);
+        float[][] dense = new float[ROWS][COLUMNS];
+        for (int k = 0; k < 3000; k++) {
+            int row = random.nextInt(ROWS);
+            int column = random.nextInt(COLUMNS);
+            float value = random.nextInt(3) == 0 ? 0 : random.nextFloat();
+            // 行列ID不连续，验证ID到下标的映射
+            builder.add(rowId(row), columnId(column), value);
+            dense[row][column] += value;
+        }
+        assertMatches(builder.build(), dense);
+    }
+
+    @Test
+    public void testMaxMatchesDense() {
+        Random random = new Random(11);
+        SparseMatrix.Builder builder = SparseMatrix.builder(SparseMatrix.Merge.MAX);
+        float[][] dense = new float[ROWS][COLUMNS];
+        for (int k = 0; k < 1500; k++) {
+            int row = random.nextInt(ROWS);
+            int column = random.nextInt(COLUMNS);
+            float value = 1 + random.nextInt(5);
+            builder.add(rowId(row), columnId(column), value);
+            dense[row][column] = Math.max(dense[row][column], value);
+        }
+        assertMatches(builder.build(), dense);
+    }
+
+    @Test
+    public void testMissingIds() {
+        SparseMatrix matrix = SparseMatrix.builder(SparseMatrix.Merge.SUM)
+                .add(1, 10, 2f)
+                .add(3, 30, 0f)
+                .build();
+        assertEquals(1, matrix.getRowCount());
+        assertEquals(1, matrix.getColumnCount());
+        assertEquals(-1, matrix.rowIndex(3));
+        assertEquals(-1, matrix.columnIndex(30));
+        assertEquals(-1, matrix.positionOf(0, 1));
+    }
+
+    private static void assertMatches(SparseMatrix matrix, float[][] dense) {
+        int nonZero = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                if (dense[row][column] != 0) {
+                    nonZero++;
+                }
+                assertEquals(dense[row][column], valueOf(matrix, row, column), DELTA);
+            }
+        }
+        assertEquals(nonZero, matrix.getNonZeroCount());
+
+        // 行内按列升序、列内按行升序，两份存储的元素一致
+        for (int r = 0; r < matrix.getRowCount(); r++) {
+            for (int p = matrix.rowStart(r); p < matrix.rowEnd(r); p++) {
+                if (p > matrix.rowStart(r)) {
+                    assertTrue(matrix.columnAt(p - 1) < matrix.columnAt(p));
+                }
+            }
+        }
+        for (int c = 0; c < matrix.getColumnCount(); c++) {
+            for (int p = matrix.columnStart(c); p < matrix.columnEnd(c); p++) {
+                if (p > matrix.columnStart(c)) {
+                    assertTrue(matrix.rowAt(p - 1) < matrix.rowAt(p));
+                }
+                assertEquals(matrix.get(matrix.rowAt(p), c), matrix.columnValueAt(p), 0f);
+            }
+        }
+
+        for (int a = 0; a < matrix.getRowCount(); a++) {
+            for (int b = 0; b < matrix.getRowCount(); b++) {
+                float[] x = dense[rowOf(matrix.rowId(a))];
+                float[] y = dense[rowOf(matrix.rowId(b))];
+                assertEquals(dot(x, y), matrix.rowDot(a, b), DELTA);
+                assertEquals(cosine(x, y), matrix.rowCosine(a, b), DELTA);
+            }
+        }
+        for (int a = 0; a < matrix.getColumnCount(); a++) {
+            for (int b = 0; b < matrix.getColumnCount(); b++) {
+                float[] x = column(dense, columnOf(matrix.columnId(a)));
+                float[] y = column(dense, columnOf(matrix.columnId(b)));
+                assertEquals(dot(x, y), matrix.columnDot(a, b), DELTA);
+                assertEquals(cosine(x, y), matrix.columnCosine(a, b), DELTA);
+            }
+        }
+    }
+
+    private static float valueOf(SparseMatrix matrix, int row, int column) {
+        int r = matrix.rowIndex(rowId(row));
+        int c = matrix.columnIndex(columnId(column));
+        return r < 0 || c < 0 ? 0 : matrix.get(r, c);
+    }
+
+    private static int rowId(int row) {
+        return row + 100;
+    }
+
+    private static int rowOf(int rowId) {
+        return rowId - 100;
+    }
+
+    private static int columnId(int column) {
+        return column * 3;
+    }
+
+    private static int columnOf(int columnId) {
+        return columnId / 3;
+    }
+
+    private static float[] column(float[][] dense, int column) {
+        float[] values = new float[dense.length];
+        for (int row = 0; row < dense.length; row++) {
+            values[row] = dense[row][column];
+        }
+        return values;
+    }
+
+    private static float dot(float[] x, float[] y) {
+        float sum = 0;
+        for (int i = 0; i < x.length; i++) {
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    private static float cosine(float[] x, float[] y) {
+        float normX = (float) Math.sqrt(dot(x, x));
+        float normY = (float) Math.sqrt(dot(y, y));
+        return normX == 0 || normY == 0 ? 0 : dot(x, y) / (normX * normY);
+    }
+}
@@ -25,15 +25,29 @@ export function getFlashSaleItemDetail(itemId) {
     });
 }
 
+/**
+ * 进入秒杀队列或查询排队进度
+ * @param {number} itemId 商品ID
+ * @returns {Promise<any>}
+ */
+export function enterFlashSaleQueue(itemId) {
+    return request({
+        url: `/flashSale/queue/${itemId}`,
+        method: 'post'
+    });
+}
+
 /**
  * 执行秒杀
  * @param {number} itemId 商品ID
+ * @param {string} token 排队放行后获得的购买令牌
  * @returns {Promise<any>}
  */
-export function doFlashSale(itemId) {
+export function doFlashSale(itemId, token) {
     return request({
         url: `/flashSale/doFlashSale/${itemId}`,
-        method: 'post'
+        method: 'post',
+        params: { token }
     });
 }
 